@@ -0,0 +1,261 @@
+package org.vosk.demo;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the microphone and fans captured PCM out to any number of consumers.
+ * <p>
+ * A single capture thread reads 16 kHz mono 16-bit audio from one {@link AudioRecord} and
+ * copies each chunk into a {@link PcmRingBuffer} per consumer; every consumer runs on its own
+ * thread, so a slow consumer never stalls capture or the others. If a consumer falls a full
+ * ring behind, chunks for it are dropped and counted as overruns. The microphone is opened
+ * when the first consumer subscribes and released when the last one leaves.
+ */
+class AudioCaptureEngine {
+
+    private static final String TAG = "AudioCaptureEngine";
+    private static final int RING_CAPACITY = 32;
+
+    /** Receives audio on its subscription's thread. */
+    interface Consumer {
+        /** {@code pcm} is only valid for the duration of the call. */
+        void onAudio(short[] pcm, int length);
+
+        /** Called once capture fails; the subscription stays open until unsubscribed. */
+        void onCaptureError(IOException e);
+
+        /** Called on the subscription's thread after its last {@link #onAudio}. */
+        void onStopped();
+    }
+
+    final class Subscription implements Runnable {
+        final String name;
+        private final Consumer consumer;
+        private final PcmRingBuffer ring;
+        private final Thread thread;
+        private volatile boolean active = true;
+
+        private final AtomicLong overruns = new AtomicLong();
+        private volatile long delivered;
+        private volatile int maxLag;
+
+        private Subscription(String name, Consumer consumer) {
+            this.name = name;
+            this.consumer = consumer;
+            this.ring = new PcmRingBuffer(RING_CAPACITY, chunkSamples);
+            this.thread = new Thread(this, "Audio-" + name);
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                short[] chunk = ring.peek();
+                if (chunk == null) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(50));
+                    continue;
+                }
+                consumer.onAudio(chunk, ring.peekLength());
+                ring.release();
+                delivered++;
+            }
+            consumer.onStopped();
+        }
+
+        /** Capture thread only. */
+        private void offer(short[] pcm, int length) {
+            short[] slot = ring.claim();
+            if (slot == null) {
+                overruns.incrementAndGet();
+                return;
+            }
+            System.arraycopy(pcm, 0, slot, 0, length);
+            ring.publish(length);
+            int lag = ring.size();
+            if (lag > maxLag) maxLag = lag;
+            LockSupport.unpark(thread);
+        }
+
+        private void stop() {
+            active = false;
+            LockSupport.unpark(thread);
+        }
+
+        long getOverruns() {
+            return overruns.get();
+        }
+
+        /** Chunks captured but not yet consumed. */
+        int getLag() {
+            return ring.size();
+        }
+
+        @Override
+        public String toString() {
+            return name + "{delivered=" + delivered + " overruns=" + overruns.get()
+                    + " lag=" + ring.size() + " maxLag=" + maxLag + "}";
+        }
+    }
+
+    private final int sampleRate;
+    private final int chunkSamples;
+    private final RecognitionMetrics metrics;
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private Thread captureThread; // guarded by this
+    private volatile boolean capturing;
+
+    private final AtomicLong chunksRead = new AtomicLong();
+    private final AtomicLong readErrors = new AtomicLong();
+    private volatile long lastStartLatencyMs = -1;
+
+    AudioCaptureEngine(int sampleRate, int chunkSamples, RecognitionMetrics metrics) {
+        this.sampleRate = sampleRate;
+        this.chunkSamples = chunkSamples;
+        this.metrics = metrics;
+        metrics.registerGauge("capture_max_lag", () -> {
+            long maxLag = 0;
+            for (Subscription subscription : subscriptions) maxLag = Math.max(maxLag, subscription.getLag());
+            return maxLag;
+        });
+        metrics.registerGauge("capture_overruns", () -> {
+            long overruns = 0;
+            for (Subscription subscription : subscriptions) overruns += subscription.getOverruns();
+            return overruns;
+        });
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Starts delivering audio to {@code consumer}, opening the microphone if needed. */
+    synchronized Subscription subscribe(String name, Consumer consumer) {
+        Subscription subscription = new Subscription(name, consumer);
+        subscription.thread.start();
+        subscriptions.add(subscription);
+        if (!capturing) startCapture();
+        Log.d(TAG, "Subscribed " + name + " (" + subscriptions.size() + " consumers)");
+        return subscription;
+    }
+
+    /**
+     * Stops delivering audio to a subscription; its consumer gets {@link Consumer#onStopped}
+     * on its own thread. The microphone is released once no subscriptions remain. Safe to call
+     * from a consumer's own thread.
+     */
+    synchronized void unsubscribe(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) return;
+        subscription.stop();
+        Log.d(TAG, "Unsubscribed " + subscription + " (" + subscriptions.size() + " consumers)");
+        if (subscriptions.isEmpty()) stopCapture();
+    }
+
+    synchronized void shutdown() {
+        for (Subscription subscription : subscriptions) unsubscribe(subscription);
+        stopCapture();
+    }
+
+    private void startCapture() {
+        capturing = true;
+        captureThread = new Thread(this::captureLoop, "AudioCapture");
+        captureThread.start();
+    }
+
+    private void stopCapture() {
+        capturing = false;
+        Thread thread = captureThread;
+        captureThread = null;
+        if (thread == null || thread == Thread.currentThread()) return;
+        try {
+            // One read is at most a chunk long; wait so the next start can reopen the mic.
+            thread.join(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        AudioRecord audioRecord = null;
+        try {
+            long start = System.nanoTime();
+            int bufferSize = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            bufferSize = Math.max(bufferSize, chunkSamples * 2) * 2;
+            audioRecord = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, sampleRate,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                throw new IOException("AudioRecord init failed. State: " + audioRecord.getState());
+            }
+            audioRecord.startRecording();
+            if (audioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+                throw new IOException("AudioRecord failed to start recording. State: " + audioRecord.getRecordingState());
+            }
+            lastStartLatencyMs = (System.nanoTime() - start) / 1_000_000;
+            Log.i(TAG, "Capture started in " + lastStartLatencyMs + " ms");
+
+            short[] buffer = new short[chunkSamples];
+            while (capturing) {
+                long readStart = System.nanoTime();
+                int shortsRead = audioRecord.read(buffer, 0, buffer.length);
+                metrics.recordNanos(RecognitionMetrics.Timer.AUDIO_READ, System.nanoTime() - readStart);
+                if (shortsRead < 0) {
+                    readErrors.incrementAndGet();
+                    throw new IOException("AudioRecord read error: " + shortsRead);
+                }
+                if (shortsRead == 0) continue;
+                chunksRead.incrementAndGet();
+                metrics.increment(RecognitionMetrics.Counter.CHUNKS_CAPTURED);
+                for (Subscription subscription : subscriptions) {
+                    subscription.offer(buffer, shortsRead);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Audio capture failed", e);
+            IOException error = e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+            for (Subscription subscription : subscriptions) {
+                subscription.consumer.onCaptureError(error);
+            }
+        } finally {
+            if (audioRecord != null) {
+                try {
+                    if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                        audioRecord.stop();
+                    }
+                } catch (IllegalStateException ignored) {
+                    Log.e(TAG, "IllegalStateException on AudioRecord.stop().");
+                } finally {
+                    audioRecord.release();
+                }
+            }
+            Log.d(TAG, "Capture stopped, AudioRecord released.");
+            // After a failure nobody called stopCapture(); clear the state so the next
+            // subscribe() starts a new capture thread. A normal stop has already cleared
+            // capturing, and its caller holds the lock while it joins this thread.
+            if (capturing) {
+                synchronized (this) {
+                    if (captureThread == Thread.currentThread()) {
+                        capturing = false;
+                        captureThread = null;
+                    }
+                }
+            }
+        }
+    }
+
+    // --- Metrics ---
+    String metricsSummary() {
+        return "chunksRead=" + chunksRead.get() + " readErrors=" + readErrors.get()
+                + " startLatency=" + lastStartLatencyMs + "ms consumers=" + subscriptions;
+    }
+}
@@ -0,0 +1,174 @@
+package org.vosk.demo;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the captured audio to disk, in segments written by a {@link SegmentedAudioWriter}.
+ * <p>
+ * The recorder is one more {@link AudioCaptureEngine} consumer: encoding and file writes run
+ * on its own subscription thread behind the engine's bounded ring, so a slow disk costs
+ * dropped chunks here and never stalls capture or recognition. Chunks dropped for the
+ * recorder are written as silence, which keeps the segment timeline in step with the
+ * wall clock and the transcript; they are counted in {@code recorder_dropped_chunks}. Nothing
+ * is recorded while paused, and recording resumes in a new segment.
+ * <p>
+ * A write error ends the recording until the next {@link #start}. Segments are never deleted.
+ */
+class AudioRecorder {
+
+    private static final String TAG = "AudioRecorder";
+    private static final int BUFFER_BYTES = 256 * 1024; // 8 s of WAV per write
+
+    private final File directory;
+    private final int sampleRate;
+    private final int chunkSamples;
+    private final SegmentedAudioWriter.Format format;
+    private final long segmentMillis;
+
+    private AudioCaptureEngine engine;
+    private Recording recording; // Null while not recording
+    private volatile boolean paused;
+
+    // Totals over all recordings, for the metrics gauges.
+    private final AtomicLong samplesWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong droppedChunks = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    AudioRecorder(File directory, int sampleRate, int chunkSamples, SegmentedAudioWriter.Format format,
+                  long segmentMillis, RecognitionMetrics metrics) {
+        this.directory = directory;
+        this.sampleRate = sampleRate;
+        this.chunkSamples = chunkSamples;
+        this.format = format;
+        this.segmentMillis = segmentMillis;
+        metrics.registerGauge("recorder_bytes_written", bytesWritten::get);
+        metrics.registerGauge("recorder_write_kb_per_s", this::getWriteKbPerSecond);
+        metrics.registerGauge("recorder_dropped_chunks", droppedChunks::get);
+        metrics.registerGauge("recorder_segments", segments::get);
+    }
+
+    /** Starts recording the engine's audio; the microphone opens if nothing else uses it. */
+    void start(AudioCaptureEngine engine) {
+        if (recording != null) return;
+        this.engine = engine;
+        recording = new Recording(new SegmentedAudioWriter(directory, sampleRate, format, segmentMillis, BUFFER_BYTES));
+        recording.subscription = engine.subscribe("recorder", recording);
+    }
+
+    /** Stops recording; the current segment is finished on the recorder's thread. */
+    void stop() {
+        if (recording == null) return;
+        engine.unsubscribe(recording.subscription);
+        recording = null;
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    boolean isRecording() {
+        return recording != null;
+    }
+
+    private final class Recording implements AudioCaptureEngine.Consumer {
+        private final SegmentedAudioWriter writer;
+        volatile AudioCaptureEngine.Subscription subscription; // Set right after subscribing
+        private boolean failed;
+        private long seenOverruns;
+        private long publishedSamples;
+        private long publishedBytes;
+        private long publishedWriteNanos;
+        private int publishedSegments;
+
+        Recording(SegmentedAudioWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void onAudio(short[] pcm, int length) {
+            if (failed) return;
+            AudioCaptureEngine.Subscription sub = subscription;
+            long overruns = sub != null ? sub.getOverruns() : seenOverruns;
+            long dropped = overruns - seenOverruns;
+            seenOverruns = overruns;
+            try {
+                if (paused) {
+                    writer.endSegment();
+                } else {
+                    // The chunk was captured about a ring's lag ago.
+                    int lag = sub != null ? sub.getLag() : 0;
+                    long timeMillis = System.currentTimeMillis() - (lag + 1) * chunkMillis();
+                    if (dropped > 0) {
+                        droppedChunks.addAndGet(dropped);
+                        writer.writeSilence((int) (dropped * chunkSamples), timeMillis - dropped * chunkMillis());
+                    }
+                    writer.write(pcm, length, timeMillis);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to record to " + writer.getSegmentFile() + ", recording stopped", e);
+                writeErrors.incrementAndGet();
+                failed = true;
+                close();
+            }
+            publishStats();
+        }
+
+        private long chunkMillis() {
+            return chunkSamples * 1000L / sampleRate;
+        }
+
+        @Override
+        public void onCaptureError(IOException e) {
+            // The service stops listening, which ends the recording.
+        }
+
+        @Override
+        public void onStopped() {
+            close();
+            publishStats();
+            Log.i(TAG, "Recording stopped: " + summary());
+        }
+
+        private void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to finish " + writer.getSegmentFile(), e);
+                writeErrors.incrementAndGet();
+            }
+        }
+
+        private void publishStats() {
+            samplesWritten.addAndGet(writer.getSamplesWritten() - publishedSamples);
+            publishedSamples = writer.getSamplesWritten();
+            bytesWritten.addAndGet(writer.getBytesWritten() - publishedBytes);
+            publishedBytes = writer.getBytesWritten();
+            writeNanos.addAndGet(writer.getWriteNanos() - publishedWriteNanos);
+            publishedWriteNanos = writer.getWriteNanos();
+            segments.addAndGet(writer.getSegmentCount() - publishedSegments);
+            publishedSegments = writer.getSegmentCount();
+        }
+    }
+
+    // --- Metrics ---
+    /** Disk throughput while writing, i.e. bytes over the time spent in writes. */
+    long getWriteKbPerSecond() {
+        long nanos = writeNanos.get();
+        return nanos == 0 ? 0 : bytesWritten.get() * 1_000_000L / nanos;
+    }
+
+    String summary() {
+        double seconds = samplesWritten.get() / (double) sampleRate;
+        return String.format(Locale.ROOT, "%s %.1f s in %d segments, %d kB (%.1f kB/s of audio), write %d kB/s, dropped=%d chunks, errors=%d",
+                format, seconds, segments.get(), bytesWritten.get() / 1024, seconds > 0 ? bytesWritten.get() / 1024.0 / seconds : 0.0,
+                getWriteKbPerSecond(), droppedChunks.get(), writeErrors.get());
+    }
+}
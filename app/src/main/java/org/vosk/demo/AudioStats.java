@@ -0,0 +1,164 @@
+package org.vosk.demo;
+
+import java.util.Arrays;
+
+/**
+ * One-pass signal statistics over 16-bit PCM buffers.
+ * <p>
+ * {@link #process} computes RMS, peak and zero-crossing rate of a buffer in a single loop
+ * over the samples using integer accumulators, and folds the buffer into session totals: the
+ * mean buffer RMS, overall peak and zero-crossing rate, and a histogram of buffer RMS levels
+ * (0.5 dB bins) from which noise-floor percentiles are read. Nothing is allocated per buffer.
+ * <p>
+ * RMS values use the same scale the calibration has always stored: the RMS of samples
+ * normalized to [-1, 1), multiplied by 1000. This class has no Android dependencies and is
+ * not thread-safe.
+ */
+public final class AudioStats {
+
+    private static final double FULL_SCALE = 32768.0;
+    private static final double RMS_SCALE = 1000.0;
+    private static final double MIN_DB = -100.0;
+    private static final int BINS_PER_DB = 2;
+    private static final int BIN_COUNT = (int) (-MIN_DB * BINS_PER_DB);
+
+    private final double minSessionRms;
+
+    // Last buffer.
+    private double lastRms;
+    private int lastPeak;
+    private double lastZeroCrossingRate;
+
+    // Session totals over buffers with RMS >= minSessionRms.
+    private long bufferCount;
+    private double rmsSum;
+    private int peak;
+    private long sampleCount;
+    private long zeroCrossings;
+    private final long[] levelHistogram = new long[BIN_COUNT];
+
+    /** Creates statistics that include every buffer in the session totals. */
+    public AudioStats() {
+        this(0.0);
+    }
+
+    /** Creates statistics whose session totals skip buffers quieter than {@code minSessionRms}. */
+    public AudioStats(double minSessionRms) {
+        this.minSessionRms = minSessionRms;
+    }
+
+    /** Analyzes {@code length} samples and returns their RMS. */
+    public double process(short[] samples, int length) {
+        if (length <= 0) {
+            lastRms = 0.0;
+            lastPeak = 0;
+            lastZeroCrossingRate = 0.0;
+            return 0.0;
+        }
+        // Branch-free body without loop-carried state other than the accumulators, so the
+        // JIT can unroll and vectorize it.
+        long sumSquares = (long) samples[0] * samples[0];
+        int maxAbs = Math.abs(samples[0]);
+        int crossings = 0;
+        for (int i = 1; i < length; i++) {
+            int sample = samples[i];
+            sumSquares += sample * sample;
+            maxAbs = Math.max(maxAbs, Math.abs(sample));
+            crossings += (samples[i - 1] ^ sample) >>> 31;
+        }
+
+        lastRms = Math.sqrt((double) sumSquares / length) * (RMS_SCALE / FULL_SCALE);
+        lastPeak = maxAbs;
+        lastZeroCrossingRate = (double) crossings / length;
+
+        if (lastRms >= minSessionRms) {
+            bufferCount++;
+            rmsSum += lastRms;
+            if (maxAbs > peak) peak = maxAbs;
+            sampleCount += length;
+            zeroCrossings += crossings;
+            levelHistogram[binOf(lastRms)]++;
+        }
+        return lastRms;
+    }
+
+    /** RMS of {@code length} samples, on the calibration scale. */
+    public static double rms(short[] samples, int length) {
+        if (length <= 0) return 0.0;
+        long sumSquares = 0;
+        for (int i = 0; i < length; i++) {
+            int sample = samples[i];
+            sumSquares += sample * sample;
+        }
+        return Math.sqrt((double) sumSquares / length) * (RMS_SCALE / FULL_SCALE);
+    }
+
+    // --- Last buffer ---
+    public double lastRms() {
+        return lastRms;
+    }
+
+    public int lastPeak() {
+        return lastPeak;
+    }
+
+    public double lastZeroCrossingRate() {
+        return lastZeroCrossingRate;
+    }
+
+    // --- Session ---
+    public long bufferCount() {
+        return bufferCount;
+    }
+
+    public double meanRms() {
+        return bufferCount == 0 ? 0.0 : rmsSum / bufferCount;
+    }
+
+    public int peak() {
+        return peak;
+    }
+
+    public double zeroCrossingRate() {
+        return sampleCount == 0 ? 0.0 : (double) zeroCrossings / sampleCount;
+    }
+
+    /**
+     * Returns the buffer RMS below which {@code p} percent (0..100) of session buffers fall,
+     * to 0.5 dB resolution; e.g. {@code rmsPercentile(10)} is a robust noise-floor estimate.
+     */
+    public double rmsPercentile(double p) {
+        if (bufferCount == 0) return 0.0;
+        long target = Math.max(1, (long) Math.ceil(p / 100.0 * bufferCount));
+        long seen = 0;
+        for (int bin = 0; bin < BIN_COUNT; bin++) {
+            seen += levelHistogram[bin];
+            if (seen >= target) return upperRmsOf(bin);
+        }
+        return RMS_SCALE;
+    }
+
+    public void reset() {
+        lastRms = 0.0;
+        lastPeak = 0;
+        lastZeroCrossingRate = 0.0;
+        bufferCount = 0;
+        rmsSum = 0.0;
+        peak = 0;
+        sampleCount = 0;
+        zeroCrossings = 0;
+        Arrays.fill(levelHistogram, 0);
+    }
+
+    private static int binOf(double rms) {
+        if (rms <= 0.0) return 0;
+        double db = 20.0 * Math.log10(rms / RMS_SCALE);
+        int bin = (int) ((db - MIN_DB) * BINS_PER_DB);
+        return bin < 0 ? 0 : Math.min(bin, BIN_COUNT - 1);
+    }
+
+    private static double upperRmsOf(int bin) {
+        double db = MIN_DB + (bin + 1) / (double) BINS_PER_DB;
+        return RMS_SCALE * Math.pow(10.0, db / 20.0);
+    }
+}
@@ -0,0 +1,253 @@
+package org.vosk.demo;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transcribes WAV files offline, decoding several files in parallel.
+ * <p>
+ * Each worker thread owns one {@link Recognizer}; all of them share the same {@link Model},
+ * which is read-only once loaded. Workers pull files from a shared queue, so long and short
+ * files balance out. Audio is memory-mapped through {@link WavReader} and fed to the
+ * recognizer in large chunks from one reused buffer per worker. Per file and per batch the
+ * transcriber reports the real-time factor (decode time / audio time) and the throughput in
+ * audio seconds per wall-clock second.
+ * <p>
+ * Files of {@link #LONG_AUDIO_SECONDS} or more are handed to a {@link LongAudioTranscriber},
+ * when one is given, which splits them at silences and decodes the pieces on all cores.
+ */
+class BatchTranscriber {
+
+    private static final String TAG = "BatchTranscriber";
+    private static final int CHUNK_BYTES = 64 * 1024; // 2 s of 16 kHz mono audio
+    static final double LONG_AUDIO_SECONDS = 120.0;
+
+    /** An audio file to transcribe. */
+    interface Source {
+        String getName();
+
+        WavReader open() throws IOException;
+    }
+
+    /** Receives results on worker threads. */
+    interface Listener {
+        void onFileTranscribed(FileResult result);
+
+        void onFileFailed(String name, IOException e);
+
+        void onBatchFinished(BatchReport report);
+    }
+
+    static final class FileResult {
+        final String name;
+        final String text;
+        final double audioSeconds;
+        final long decodeNanos;
+
+        FileResult(String name, String text, double audioSeconds, long decodeNanos) {
+            this.name = name;
+            this.text = text;
+            this.audioSeconds = audioSeconds;
+            this.decodeNanos = decodeNanos;
+        }
+
+        double realTimeFactor() {
+            return audioSeconds == 0 ? 0.0 : decodeNanos / 1e9 / audioSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %.2f s audio in %d ms, RTF %.3f",
+                    name, audioSeconds, decodeNanos / 1_000_000, realTimeFactor());
+        }
+    }
+
+    static final class BatchReport {
+        final int files;
+        final int failures;
+        final int workers;
+        final double audioSeconds;
+        final long decodeNanos; // Summed over workers
+        final long wallNanos;
+
+        BatchReport(int files, int failures, int workers, double audioSeconds, long decodeNanos, long wallNanos) {
+            this.files = files;
+            this.failures = failures;
+            this.workers = workers;
+            this.audioSeconds = audioSeconds;
+            this.decodeNanos = decodeNanos;
+            this.wallNanos = wallNanos;
+        }
+
+        /** Per-core real-time factor. */
+        double realTimeFactor() {
+            return audioSeconds == 0 ? 0.0 : decodeNanos / 1e9 / audioSeconds;
+        }
+
+        /** Audio seconds transcribed per wall-clock second. */
+        double throughput() {
+            return wallNanos == 0 ? 0.0 : audioSeconds / (wallNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d files (%d failed) on %d workers: %.1f s audio in %d ms, RTF %.3f, throughput %.1fx real time",
+                    files, failures, workers, audioSeconds, wallNanos / 1_000_000, realTimeFactor(), throughput());
+        }
+    }
+
+    private final Model model;
+    private final int maxWorkers;
+    private final LongAudioTranscriber longAudio; // Null to decode long files sequentially too
+
+    BatchTranscriber(Model model, int maxWorkers, LongAudioTranscriber longAudio) {
+        this.model = model;
+        this.maxWorkers = Math.max(1, maxWorkers);
+        this.longAudio = longAudio;
+    }
+
+    /** Transcribes every source and blocks until all are done. */
+    BatchReport transcribe(List<? extends Source> sources, Listener listener) throws InterruptedException {
+        final ConcurrentLinkedQueue<Source> queue = new ConcurrentLinkedQueue<>(sources);
+        final int workerCount = Math.min(maxWorkers, Math.max(1, sources.size()));
+        final CountDownLatch done = new CountDownLatch(workerCount);
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong decodeNanos = new AtomicLong();
+        final AtomicLong audioMicros = new AtomicLong();
+
+        long start = System.nanoTime();
+        for (int w = 0; w < workerCount; w++) {
+            new Thread(() -> {
+                try {
+                    runWorker(queue, listener, failures, decodeNanos, audioMicros);
+                } finally {
+                    done.countDown();
+                }
+            }, "BatchTranscriber-" + w).start();
+        }
+        done.await();
+
+        BatchReport report = new BatchReport(sources.size(), (int) failures.get(), workerCount,
+                audioMicros.get() / 1e6, decodeNanos.get(), System.nanoTime() - start);
+        Log.i(TAG, "Batch finished: " + report);
+        listener.onBatchFinished(report);
+        return report;
+    }
+
+    private void runWorker(ConcurrentLinkedQueue<Source> queue, Listener listener, AtomicLong failures,
+                           AtomicLong decodeNanos, AtomicLong audioMicros) {
+        byte[] chunk = new byte[CHUNK_BYTES];
+        HypothesisParser parser = new HypothesisParser();
+        StringBuilder text = new StringBuilder();
+        Recognizer recognizer = null;
+        int recognizerRate = 0;
+        try {
+            Source source;
+            while ((source = queue.poll()) != null) {
+                try (WavReader reader = source.open()) {
+                    if (reader.getChannels() != 1) {
+                        throw new IOException("Only mono audio is supported, got " + reader.getChannels() + " channels");
+                    }
+                    long start = System.nanoTime();
+                    text.setLength(0);
+                    if (longAudio != null && reader.getDurationSeconds() >= LONG_AUDIO_SECONDS) {
+                        LongAudioTranscriber.Transcript transcript = longAudio.transcribe(reader);
+                        Log.i(TAG, "Long audio: " + transcript);
+                        text.append(transcript.text());
+                    } else {
+                        if (recognizer == null || recognizerRate != reader.getSampleRate()) {
+                            if (recognizer != null) recognizer.close();
+                            recognizerRate = reader.getSampleRate();
+                            recognizer = new Recognizer(model, recognizerRate);
+                        }
+                        int count;
+                        while ((count = reader.read(chunk)) > 0) {
+                            if (recognizer.acceptWaveForm(chunk, count)) {
+                                appendText(text, parser.extract(recognizer.getResult(), "text"));
+                            }
+                        }
+                        appendText(text, parser.extract(recognizer.getFinalResult(), "text"));
+                    }
+                    long elapsed = System.nanoTime() - start;
+
+                    FileResult result = new FileResult(source.getName(), text.toString(),
+                            reader.getDurationSeconds(), elapsed);
+                    decodeNanos.addAndGet(elapsed);
+                    audioMicros.addAndGet((long) (result.audioSeconds * 1e6));
+                    Log.d(TAG, "Transcribed " + result);
+                    listener.onFileTranscribed(result);
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    Log.e(TAG, "Transcription failed: " + source.getName(), e);
+                    listener.onFileFailed(source.getName(), e);
+                }
+            }
+        } finally {
+            if (recognizer != null) recognizer.close();
+        }
+    }
+
+    private static void appendText(StringBuilder text, CharSequence utterance) {
+        if (utterance.length() == 0) return;
+        if (text.length() > 0) text.append(' ');
+        text.append(utterance);
+    }
+
+    // --- Sources ---
+    static Source file(final File file) {
+        return new Source() {
+            @Override
+            public String getName() {
+                return file.getName();
+            }
+
+            @Override
+            public WavReader open() throws IOException {
+                return WavReader.open(file);
+            }
+        };
+    }
+
+    /** An APK asset; mapped in place when stored uncompressed, read into memory otherwise. */
+    static Source asset(final AssetManager assets, final String path) {
+        return new Source() {
+            @Override
+            public String getName() {
+                return path;
+            }
+
+            @Override
+            public WavReader open() throws IOException {
+                try (AssetFileDescriptor fd = assets.openFd(path)) {
+                    // The mapping stays valid after the descriptor is closed.
+                    return WavReader.open(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+                } catch (FileNotFoundException compressed) {
+                    try (InputStream in = assets.open(path)) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[CHUNK_BYTES];
+                        int count;
+                        while ((count = in.read(buffer)) != -1) out.write(buffer, 0, count);
+                        return WavReader.wrap(ByteBuffer.wrap(out.toByteArray()));
+                    }
+                }
+            }
+        };
+    }
+}
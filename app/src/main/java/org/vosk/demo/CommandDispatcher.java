@@ -0,0 +1,113 @@
+package org.vosk.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides when a command heard in an utterance is dispatched, so that each command fires
+ * exactly once per utterance however many partials repeat or extend it.
+ * <p>
+ * The recognizer delivers a partial for every audio chunk, so a match is only trusted once it
+ * has held for {@code stablePartials} consecutive partials (the earliest point at which the
+ * recognizer has not revised it); a partial that stops matching starts the count over. When
+ * the utterance ends, its result text is reconciled with what was dispatched: a command that
+ * never became stable in the partials but is in the result fires then, and a dispatched
+ * command the result no longer contains is counted as retracted. Dispatches, suppressed
+ * duplicates and the latency from the first matching partial to dispatch go to
+ * {@link RecognitionMetrics}.
+ * <p>
+ * This class has no Android dependencies and is not thread-safe; the pipeline worker owns it.
+ */
+final class CommandDispatcher {
+
+    private final CommandMatcher matcher;
+    private final int stablePartials;
+    private final RecognitionMetrics metrics;
+
+    // Current utterance.
+    private final List<CommandMatcher.Command> dispatched = new ArrayList<>();
+    private String lastText = "";
+    private CommandMatcher.Command lastMatch;
+    private CommandMatcher.Command candidate;
+    private int candidateCount;
+    private long candidateNanos;
+
+    /** @param stablePartials consecutive matching partials before a command is dispatched (>= 1) */
+    CommandDispatcher(CommandMatcher matcher, int stablePartials, RecognitionMetrics metrics) {
+        this.matcher = matcher;
+        this.stablePartials = Math.max(1, stablePartials);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Called for every partial of the current utterance, repeated ones included, with the time
+     * it was received; returns the command to dispatch now, or null.
+     */
+    CommandMatcher.Command onPartial(String text, long nowNanos) {
+        boolean changed = !text.equals(lastText);
+        CommandMatcher.Command command = match(text);
+        if (command == null || command != candidate) {
+            candidate = command;
+            candidateCount = 0;
+            candidateNanos = nowNanos;
+        }
+        if (command == null) return null;
+        candidateCount++;
+        if (dispatched.contains(command)) {
+            // Each new text would have fired the command again before.
+            if (changed) metrics.increment(RecognitionMetrics.Counter.COMMANDS_SUPPRESSED);
+            return null;
+        }
+        if (candidateCount < stablePartials) return null;
+        return dispatch(command, nowNanos);
+    }
+
+    /**
+     * Called with the text of an utterance's result; returns a command to dispatch that the
+     * partials did not, or null. Starts a new utterance either way.
+     */
+    CommandMatcher.Command onUtteranceEnd(String text, long nowNanos) {
+        CommandMatcher.Command command = text.isEmpty() ? null : match(text);
+        for (CommandMatcher.Command sent : dispatched) {
+            // The result may rank another command first and still contain this one.
+            if (sent != command && !matcher.matches(text, sent)) {
+                metrics.increment(RecognitionMetrics.Counter.COMMANDS_RETRACTED);
+            }
+        }
+        CommandMatcher.Command late = null;
+        if (command != null && !dispatched.contains(command)) {
+            if (candidate != command) candidateNanos = nowNanos;
+            late = dispatch(command, nowNanos);
+            metrics.increment(RecognitionMetrics.Counter.COMMANDS_RECONCILED);
+        }
+        reset();
+        return late;
+    }
+
+    /** Forgets the current utterance without reconciling it, e.g. when listening stops. */
+    void reset() {
+        dispatched.clear();
+        lastText = "";
+        lastMatch = null;
+        candidate = null;
+        candidateCount = 0;
+    }
+
+    // Repeated partials are the common case; match each distinct text once.
+    private CommandMatcher.Command match(String text) {
+        if (!text.equals(lastText)) {
+            lastText = text;
+            long start = System.nanoTime();
+            lastMatch = matcher.match(text);
+            metrics.recordNanos(RecognitionMetrics.Timer.COMMAND_MATCH, System.nanoTime() - start);
+        }
+        return lastMatch;
+    }
+
+    private CommandMatcher.Command dispatch(CommandMatcher.Command command, long nowNanos) {
+        dispatched.add(command);
+        metrics.increment(RecognitionMetrics.Counter.COMMANDS);
+        metrics.recordNanos(RecognitionMetrics.Timer.COMMAND_DISPATCH, nowNanos - candidateNanos);
+        return command;
+    }
+}
@@ -0,0 +1,686 @@
+package org.vosk.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches a declarative table of voice commands against recognizer hypotheses.
+ * <p>
+ * Command phrases are tokenized once at build time and compiled into an Aho-Corasick
+ * automaton over token ids, so a hypothesis is scanned a single time no matter how many
+ * commands are registered. Commands are evaluated in registration order; the first one
+ * whose clauses are all satisfied wins.
+ * <p>
+ * Phrases and hypotheses go through {@link PersianNormalizer}, so Arabic letter variants,
+ * diacritics and ZWNJ do not affect matching. With {@link Builder#fuzzy} a hypothesis token
+ * that is not in the command vocabulary is looked up by its phonetic key, first exactly and
+ * then in a BK-tree of the vocabulary's keys within a small edit distance (none for keys up to
+ * three letters, one up to six, two beyond), so near-miss recognitions still match. All keys
+ * and the tree are built once with the table.
+ * <p>
+ * The same table also yields a recognizer grammar ({@link #grammarJson}) that limits decoding
+ * to the command vocabulary.
+ * <p>
+ * This class has no Android dependencies. Instances keep per-match scratch state and are
+ * not thread-safe; confine each matcher to one thread.
+ */
+public final class CommandMatcher {
+
+    /** A single command: a conjunction of clauses, each satisfied by any of its phrases. */
+    public static final class Command {
+        final String name;
+        final List<String[]> anyClauses = new ArrayList<>();
+        final List<String[]> suffixClauses = new ArrayList<>();
+        int maxLength = Integer.MAX_VALUE;
+        int responseResId;
+        int keyCode;
+
+        private Command(String name) {
+            this.name = name;
+        }
+
+        public static Command named(String name) {
+            return new Command(name);
+        }
+
+        /** Every phrase must appear somewhere in the hypothesis. */
+        public Command allOf(String... phrases) {
+            for (String phrase : phrases) anyClauses.add(new String[]{phrase});
+            return this;
+        }
+
+        /** At least one of the phrases must appear somewhere in the hypothesis. */
+        public Command anyOf(String... phrases) {
+            anyClauses.add(phrases.clone());
+            return this;
+        }
+
+        /** The hypothesis must end with one of the phrases. */
+        public Command endsWith(String... phrases) {
+            suffixClauses.add(phrases.clone());
+            return this;
+        }
+
+        /** The trimmed hypothesis must be shorter than {@code length} characters. */
+        public Command maxLength(int length) {
+            this.maxLength = length;
+            return this;
+        }
+
+        /** Opaque response id handed back to the caller, e.g. a string resource. */
+        public Command response(int resId) {
+            this.responseResId = resId;
+            return this;
+        }
+
+        /** Opaque action code handed back to the caller, e.g. a media key code; 0 for none. */
+        public Command keyCode(int keyCode) {
+            this.keyCode = keyCode;
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getResponseResId() {
+            return responseResId;
+        }
+
+        public int getKeyCode() {
+            return keyCode;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static final class Builder {
+        private final List<Command> commands = new ArrayList<>();
+        private boolean fuzzy;
+
+        public Builder add(Command command) {
+            if (command.anyClauses.isEmpty() && command.suffixClauses.isEmpty()) {
+                throw new IllegalArgumentException("Command has no phrases: " + command.name);
+            }
+            commands.add(command);
+            return this;
+        }
+
+        /** Also matches tokens that are phonetically close to a command word. */
+        public Builder fuzzy(boolean fuzzy) {
+            this.fuzzy = fuzzy;
+            return this;
+        }
+
+        public CommandMatcher build() {
+            return new CommandMatcher(commands, fuzzy);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Grammar entry that absorbs speech outside the command vocabulary. */
+    public static final String UNKNOWN_WORD = "[unk]";
+
+    // --- Compiled command table ---
+    private final Command[] commands;
+    private final String grammarJson;
+    // Per command, per clause: the pattern ids that satisfy it.
+    private final int[][][] clausePatterns;
+    // Per clause (parallel to clausePatterns): whether the pattern must end the hypothesis.
+    private final boolean[][] clauseIsSuffix;
+    // Per pattern: the commands that reference it, ascending.
+    private final int[][] patternCommands;
+
+    // --- Token dictionary (open addressing, lookup by char range without allocation) ---
+    private final char[][] tokenKeys;
+    private final int[] tokenIds;
+    private final int tokenMask;
+
+    // --- Approximate token lookup (null unless fuzzy) ---
+    private final char[][] phoneticKeys; // open addressing, parallel to phoneticIds
+    private final int[] phoneticIds;
+    private final BkTree bkTree;
+
+    // --- Aho-Corasick automaton over token ids ---
+    private final int[][] gotoTokens; // per node, sorted token ids
+    private final int[][] gotoTargets; // per node, child node for the token at the same index
+    private final int[] failure;
+    private final int[][] outputs; // per node, pattern ids ending here (failure chain merged)
+
+    // --- Scratch state, reused across calls ---
+    private final int[] patternStamp;
+    private final int[] patternEndToken;
+    private int[] hitPatterns;
+    private int stamp;
+    private int scanLastToken; // Of the last scan: index of the last token...
+    private int scanTrimmedLength; // ...and the hypothesis length without outer separators
+    private char[] tokenBuffer = new char[32];
+    private char[] keyBuffer = new char[32];
+
+    private CommandMatcher(List<Command> commandList, boolean fuzzy) {
+        commands = commandList.toArray(new Command[0]);
+        grammarJson = buildGrammar(commands);
+
+        Map<String, Integer> vocabulary = new HashMap<>();
+        Map<String, Integer> patternIds = new HashMap<>();
+        List<int[]> patternTokens = new ArrayList<>();
+        List<List<Integer>> commandsByPattern = new ArrayList<>();
+
+        clausePatterns = new int[commands.length][][];
+        clauseIsSuffix = new boolean[commands.length][];
+        for (int c = 0; c < commands.length; c++) {
+            Command command = commands[c];
+            int clauseCount = command.anyClauses.size() + command.suffixClauses.size();
+            clausePatterns[c] = new int[clauseCount][];
+            clauseIsSuffix[c] = new boolean[clauseCount];
+            int clause = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                List<String[]> clauses = pass == 0 ? command.anyClauses : command.suffixClauses;
+                for (String[] phrases : clauses) {
+                    int[] ids = new int[phrases.length];
+                    for (int p = 0; p < phrases.length; p++) {
+                        String[] tokens = tokenize(phrases[p]);
+                        if (tokens.length == 0) {
+                            throw new IllegalArgumentException("Empty phrase in command: " + command.name);
+                        }
+                        String key = joinTokens(tokens);
+                        Integer id = patternIds.get(key);
+                        if (id == null) {
+                            id = patternTokens.size();
+                            patternIds.put(key, id);
+                            int[] tokenSequence = new int[tokens.length];
+                            for (int t = 0; t < tokens.length; t++) {
+                                Integer tokenId = vocabulary.get(tokens[t]);
+                                if (tokenId == null) {
+                                    tokenId = vocabulary.size();
+                                    vocabulary.put(tokens[t], tokenId);
+                                }
+                                tokenSequence[t] = tokenId;
+                            }
+                            patternTokens.add(tokenSequence);
+                            commandsByPattern.add(new ArrayList<>());
+                        }
+                        List<Integer> referencing = commandsByPattern.get(id);
+                        if (referencing.isEmpty() || referencing.get(referencing.size() - 1) != c) {
+                            referencing.add(c);
+                        }
+                        ids[p] = id;
+                    }
+                    clausePatterns[c][clause] = ids;
+                    clauseIsSuffix[c][clause] = pass == 1;
+                    clause++;
+                }
+            }
+        }
+
+        patternCommands = new int[patternTokens.size()][];
+        for (int p = 0; p < patternCommands.length; p++) {
+            List<Integer> referencing = commandsByPattern.get(p);
+            patternCommands[p] = new int[referencing.size()];
+            for (int i = 0; i < referencing.size(); i++) patternCommands[p][i] = referencing.get(i);
+        }
+
+        // Token dictionary sized to a power of two with load factor <= 0.5.
+        int capacity = 2;
+        while (capacity < vocabulary.size() * 2) capacity <<= 1;
+        tokenKeys = new char[capacity][];
+        tokenIds = new int[capacity];
+        tokenMask = capacity - 1;
+        for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) {
+            char[] key = entry.getKey().toCharArray();
+            int slot = hash(key, 0, key.length) & tokenMask;
+            while (tokenKeys[slot] != null) slot = (slot + 1) & tokenMask;
+            tokenKeys[slot] = key;
+            tokenIds[slot] = entry.getValue();
+        }
+
+        if (fuzzy) {
+            // Phonetic keys of the vocabulary; a key shared by several tokens maps to the first.
+            String[] tokensById = new String[vocabulary.size()];
+            for (Map.Entry<String, Integer> entry : vocabulary.entrySet()) tokensById[entry.getValue()] = entry.getKey();
+            phoneticKeys = new char[capacity][];
+            phoneticIds = new int[capacity];
+            bkTree = new BkTree();
+            for (int id = 0; id < tokensById.length; id++) {
+                char[] key = PersianNormalizer.phoneticKey(tokensById[id]).toCharArray();
+                int slot = hash(key, 0, key.length) & tokenMask;
+                boolean seen = false;
+                while (phoneticKeys[slot] != null) {
+                    if (Arrays.equals(phoneticKeys[slot], key)) {
+                        seen = true;
+                        break;
+                    }
+                    slot = (slot + 1) & tokenMask;
+                }
+                if (seen) continue;
+                phoneticKeys[slot] = key;
+                phoneticIds[slot] = id;
+                bkTree.add(key, id);
+            }
+            bkTree.freeze();
+        } else {
+            phoneticKeys = null;
+            phoneticIds = null;
+            bkTree = null;
+        }
+
+        // Trie construction.
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new HashMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patternTokens.size(); p++) {
+            int node = 0;
+            for (int token : patternTokens.get(p)) {
+                Integer next = children.get(node).get(token);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(token, next);
+                    children.add(new HashMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(p);
+        }
+
+        int nodeCount = children.size();
+        gotoTokens = new int[nodeCount][];
+        gotoTargets = new int[nodeCount][];
+        for (int n = 0; n < nodeCount; n++) {
+            Map<Integer, Integer> edges = children.get(n);
+            int[] tokens = new int[edges.size()];
+            int i = 0;
+            for (Integer token : edges.keySet()) tokens[i++] = token;
+            Arrays.sort(tokens);
+            int[] targets = new int[tokens.length];
+            for (i = 0; i < tokens.length; i++) targets[i] = edges.get(tokens[i]);
+            gotoTokens[n] = tokens;
+            gotoTargets[n] = targets;
+        }
+
+        // Failure links in BFS order; outputs inherit those of their failure node.
+        failure = new int[nodeCount];
+        outputs = new int[nodeCount][];
+        outputs[0] = toArray(nodeOutputs.get(0));
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (int child : gotoTargets[0]) {
+            failure[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            List<Integer> merged = nodeOutputs.get(node);
+            for (int o : outputs[failure[node]]) merged.add(o);
+            outputs[node] = toArray(merged);
+            for (int i = 0; i < gotoTokens[node].length; i++) {
+                int token = gotoTokens[node][i];
+                int child = gotoTargets[node][i];
+                int f = failure[node];
+                int target;
+                while ((target = step(f, token)) < 0 && f != 0) f = failure[f];
+                failure[child] = target < 0 ? 0 : target;
+                queue[tail++] = child;
+            }
+        }
+
+        patternStamp = new int[patternTokens.size()];
+        patternEndToken = new int[patternTokens.size()];
+        hitPatterns = new int[Math.max(4, patternTokens.size())];
+    }
+
+    /** Number of registered commands. */
+    public int size() {
+        return commands.length;
+    }
+
+    /**
+     * A Vosk grammar (JSON array of phrases) covering every command phrase, plus
+     * {@link #UNKNOWN_WORD}. For commands with several clauses the clauses' first phrases are
+     * also listed as one phrase, in declaration order, so that they can be spoken together.
+     */
+    public String grammarJson() {
+        return grammarJson;
+    }
+
+    /**
+     * Removes the {@link #UNKNOWN_WORD} tokens a grammar-constrained recognizer
+     * emits for out-of-grammar speech. Plain dictation text is returned unchanged.
+     */
+    public static String stripUnknown(String text) {
+        if (!text.contains(UNKNOWN_WORD)) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        for (String token : text.split(" ")) {
+            if (token.isEmpty() || token.equals(UNKNOWN_WORD)) continue;
+            if (out.length() > 0) out.append(' ');
+            out.append(token);
+        }
+        return out.toString();
+    }
+
+    private static String buildGrammar(Command[] commands) {
+        LinkedHashSet<String> phrases = new LinkedHashSet<>();
+        for (Command command : commands) {
+            StringBuilder combined = new StringBuilder();
+            int clauseCount = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (String[] clause : pass == 0 ? command.anyClauses : command.suffixClauses) {
+                    for (String phrase : clause) phrases.add(joinTokens(tokenize(phrase)));
+                    if (combined.length() > 0) combined.append(' ');
+                    combined.append(joinTokens(tokenize(clause[0])));
+                    clauseCount++;
+                }
+            }
+            if (clauseCount > 1) phrases.add(combined.toString());
+        }
+        phrases.add(UNKNOWN_WORD);
+
+        StringBuilder json = new StringBuilder("[");
+        for (String phrase : phrases) {
+            if (json.length() > 1) json.append(", ");
+            json.append('"');
+            for (int i = 0; i < phrase.length(); i++) {
+                char c = phrase.charAt(i);
+                if (c == '"' || c == '\\') json.append('\\');
+                json.append(c);
+            }
+            json.append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Returns the highest-priority command matched by {@code hypothesis}, or null.
+     */
+    public Command match(CharSequence hypothesis) {
+        int hitCount = scan(hypothesis);
+        if (hitCount == 0) return null;
+        int best = Integer.MAX_VALUE;
+        for (int h = 0; h < hitCount; h++) {
+            for (int c : patternCommands[hitPatterns[h]]) {
+                if (c >= best) break;
+                if (satisfies(c, scanLastToken, scanTrimmedLength)) best = c;
+            }
+        }
+        return best == Integer.MAX_VALUE ? null : commands[best];
+    }
+
+    /**
+     * Returns whether {@code hypothesis} satisfies {@code command}, even if a command of higher
+     * priority matches it too.
+     */
+    public boolean matches(CharSequence hypothesis, Command command) {
+        int c = 0;
+        while (c < commands.length && commands[c] != command) c++;
+        if (c == commands.length || scan(hypothesis) == 0) return false;
+        return satisfies(c, scanLastToken, scanTrimmedLength);
+    }
+
+    // Runs the automaton over the hypothesis, stamping the patterns found and where they end;
+    // returns how many were found.
+    private int scan(CharSequence hypothesis) {
+        if (hypothesis == null) return 0;
+        if (++stamp == 0) {
+            Arrays.fill(patternStamp, 0);
+            stamp = 1;
+        }
+
+        int length = hypothesis.length();
+        int hitCount = 0;
+        int tokenIndex = -1;
+        int state = 0;
+        int firstChar = -1;
+        int lastChar = -1;
+        int i = 0;
+        while (i < length) {
+            while (i < length && PersianNormalizer.isSeparator(hypothesis.charAt(i))) i++;
+            if (i >= length) break;
+            int start = i;
+            int tokenLength = 0;
+            while (i < length && !PersianNormalizer.isSeparator(hypothesis.charAt(i))) {
+                char c = PersianNormalizer.normalize(hypothesis.charAt(i++));
+                if (c == 0) continue;
+                if (tokenLength == tokenBuffer.length) tokenBuffer = Arrays.copyOf(tokenBuffer, tokenLength * 2);
+                tokenBuffer[tokenLength++] = c;
+            }
+            if (firstChar < 0) firstChar = start;
+            lastChar = i - 1;
+            if (tokenLength == 0) continue; // Only diacritics
+            tokenIndex++;
+
+            int token = lookupToken(tokenBuffer, tokenLength);
+            if (token < 0) {
+                state = 0;
+                continue;
+            }
+            int next;
+            while ((next = step(state, token)) < 0 && state != 0) state = failure[state];
+            state = next < 0 ? 0 : next;
+            for (int pattern : outputs[state]) {
+                if (patternStamp[pattern] != stamp) {
+                    patternStamp[pattern] = stamp;
+                    if (hitCount == hitPatterns.length) hitPatterns = Arrays.copyOf(hitPatterns, hitCount * 2);
+                    hitPatterns[hitCount++] = pattern;
+                }
+                patternEndToken[pattern] = tokenIndex;
+            }
+        }
+        scanLastToken = tokenIndex;
+        scanTrimmedLength = lastChar - firstChar + 1;
+        return hitCount;
+    }
+
+    private boolean satisfies(int c, int lastToken, int trimmedLength) {
+        if (trimmedLength >= commands[c].maxLength) return false;
+        int[][] clauses = clausePatterns[c];
+        for (int k = 0; k < clauses.length; k++) {
+            boolean suffix = clauseIsSuffix[c][k];
+            boolean satisfied = false;
+            for (int pattern : clauses[k]) {
+                if (patternStamp[pattern] == stamp && (!suffix || patternEndToken[pattern] == lastToken)) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) return false;
+        }
+        return true;
+    }
+
+    private int step(int node, int token) {
+        int index = Arrays.binarySearch(gotoTokens[node], token);
+        return index >= 0 ? gotoTargets[node][index] : -1;
+    }
+
+    // Exact, then (if fuzzy) phonetic, then nearest phonetic key within the edit budget.
+    private int lookupToken(char[] token, int length) {
+        int id = lookup(tokenKeys, tokenIds, token, length);
+        if (id >= 0 || bkTree == null) return id;
+        if (keyBuffer.length < length) keyBuffer = new char[tokenBuffer.length];
+        int keyLength = PersianNormalizer.phoneticKey(token, 0, length, keyBuffer);
+        id = lookup(phoneticKeys, phoneticIds, keyBuffer, keyLength);
+        if (id >= 0) return id;
+        int maxEdits = keyLength <= 3 ? 0 : keyLength <= 6 ? 1 : 2;
+        return maxEdits == 0 ? -1 : bkTree.nearest(keyBuffer, keyLength, maxEdits);
+    }
+
+    private int lookup(char[][] keys, int[] ids, char[] token, int length) {
+        int slot = hash(token, 0, length) & tokenMask;
+        char[] key;
+        while ((key = keys[slot]) != null) {
+            if (regionEquals(key, token, length)) return ids[slot];
+            slot = (slot + 1) & tokenMask;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(char[] key, char[] token, int length) {
+        if (key.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (key[i] != token[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(char[] key, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + key[i];
+        return h ^ (h >>> 16);
+    }
+
+    private static String[] tokenize(String phrase) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            if (PersianNormalizer.isSeparator(c)) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                char n = PersianNormalizer.normalize(c);
+                if (n != 0) current.append(n);
+            }
+        }
+        if (current.length() > 0) tokens.add(current.toString());
+        return tokens.toArray(new String[0]);
+    }
+
+    private static String joinTokens(String[] tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (String token : tokens) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token);
+        }
+        return sb.toString();
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) array[i] = values.get(i);
+        return array;
+    }
+
+    /**
+     * Burkhard-Keller tree over phonetic keys with Levenshtein distance: a query within
+     * {@code maxEdits} only descends into children whose edge distance is within
+     * {@code maxEdits} of the node's own distance, which prunes most of the vocabulary.
+     */
+    private static final class BkTree {
+        private final List<char[]> keyList = new ArrayList<>();
+        private final List<Integer> idList = new ArrayList<>();
+        private final List<Map<Integer, Integer>> childList = new ArrayList<>();
+
+        // Frozen form.
+        private char[][] keys;
+        private int[] ids;
+        private int[][] childDistances; // per node, ascending
+        private int[][] childNodes;
+
+        // Query scratch.
+        private int[] stack;
+        private int[] previousRow = new int[33];
+        private int[] currentRow = new int[33];
+
+        void add(char[] key, int id) {
+            int index = keyList.size();
+            keyList.add(key);
+            idList.add(id);
+            childList.add(new HashMap<>());
+            if (index == 0) return;
+            int node = 0;
+            while (true) {
+                char[] nodeKey = keyList.get(node);
+                int distance = distance(nodeKey, nodeKey.length, key, key.length);
+                Integer child = childList.get(node).get(distance);
+                if (child == null) {
+                    childList.get(node).put(distance, index);
+                    return;
+                }
+                node = child;
+            }
+        }
+
+        void freeze() {
+            int count = keyList.size();
+            keys = keyList.toArray(new char[0][]);
+            ids = toArray(idList);
+            childDistances = new int[count][];
+            childNodes = new int[count][];
+            for (int n = 0; n < count; n++) {
+                Map<Integer, Integer> edges = childList.get(n);
+                int[] distances = new int[edges.size()];
+                int i = 0;
+                for (Integer distance : edges.keySet()) distances[i++] = distance;
+                Arrays.sort(distances);
+                int[] nodes = new int[distances.length];
+                for (i = 0; i < distances.length; i++) nodes[i] = edges.get(distances[i]);
+                childDistances[n] = distances;
+                childNodes[n] = nodes;
+            }
+            stack = new int[Math.max(1, count)];
+            keyList.clear();
+            idList.clear();
+            childList.clear();
+        }
+
+        /** The id of the closest key within {@code maxEdits} (lowest id on ties), or -1. */
+        int nearest(char[] query, int length, int maxEdits) {
+            if (keys.length == 0) return -1;
+            int bestId = -1;
+            int bestDistance = maxEdits + 1;
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                int distance = distance(keys[node], keys[node].length, query, length);
+                if (distance < bestDistance || (distance == bestDistance && distance <= maxEdits && ids[node] < bestId)) {
+                    bestDistance = distance;
+                    bestId = ids[node];
+                }
+                int[] distances = childDistances[node];
+                for (int i = 0; i < distances.length; i++) {
+                    if (distances[i] < distance - maxEdits) continue;
+                    if (distances[i] > distance + maxEdits) break;
+                    stack[top++] = childNodes[node][i];
+                }
+            }
+            return bestDistance <= maxEdits ? bestId : -1;
+        }
+
+        private int distance(char[] a, int aLength, char[] b, int bLength) {
+            if (previousRow.length <= bLength) {
+                previousRow = new int[bLength + 1];
+                currentRow = new int[bLength + 1];
+            }
+            int[] previous = previousRow;
+            int[] current = currentRow;
+            for (int j = 0; j <= bLength; j++) previous[j] = j;
+            for (int i = 1; i <= aLength; i++) {
+                current[0] = i;
+                char ca = a[i - 1];
+                for (int j = 1; j <= bLength; j++) {
+                    int substitution = previous[j - 1] + (ca == b[j - 1] ? 0 : 1);
+                    current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[bLength];
+        }
+    }
+}
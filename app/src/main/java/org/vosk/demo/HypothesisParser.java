@@ -0,0 +1,430 @@
+package org.vosk.demo;
+
+import java.util.Arrays;
+
+/**
+ * Streaming extractor for Vosk recognizer results.
+ * <p>
+ * Understands the small fixed schema the recognizer emits: {@code {"partial": "..."}},
+ * {@code {"text": "..."}} and {@code {"result": [{"conf", "end", "start", "word"}], "text"}}.
+ * Values are decoded straight into buffers that are reused across calls, so parsing a
+ * hypothesis allocates nothing once the buffers have grown to size; unknown members are
+ * skipped without being materialized.
+ * <p>
+ * This class has no Android dependencies. Instances are not thread-safe.
+ */
+public final class HypothesisParser {
+
+    private static final int FIELD_NONE = 0;
+    private static final int FIELD_PARTIAL = 1;
+    private static final int FIELD_TEXT = 2;
+    private static final int FIELD_RESULT = 3;
+
+    private final StringBuilder partial = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder words = new StringBuilder();
+    private final StringBuilder selected = new StringBuilder();
+    private boolean hasPartial;
+    private boolean hasText;
+
+    private int wordCount;
+    private int[] wordBounds = new int[32]; // start/end offsets into {@link #words}
+    private float[] wordStart = new float[16];
+    private float[] wordEnd = new float[16];
+    private float[] wordConf = new float[16];
+
+    private CharSequence input;
+    private int pos;
+    private int end;
+
+    /**
+     * Parses {@code hypothesis} and returns the trimmed text under {@code preferredKey}
+     * ("partial" or "text"), falling back to the other key and then to the words of
+     * {@code result[]}. Input that is not a JSON object is returned trimmed. The returned
+     * sequence is a view of an internal buffer, valid until the next call; the word
+     * accessors describe the same input.
+     *
+     * @return the text, or an empty sequence if none was found or the input was malformed
+     */
+    public CharSequence extract(CharSequence hypothesis, String preferredKey) {
+        selected.setLength(0);
+        wordCount = 0;
+        if (hypothesis == null) return selected;
+        int start = 0;
+        int stop = hypothesis.length();
+        while (start < stop && isWhitespace(hypothesis.charAt(start))) start++;
+        while (stop > start && isWhitespace(hypothesis.charAt(stop - 1))) stop--;
+        if (start == stop) return selected;
+
+        if (hypothesis.charAt(start) != '{') {
+            appendTrimmed(hypothesis, start, stop);
+            return selected;
+        }
+        if (!parse(hypothesis, start, stop)) return selected;
+
+        boolean preferText = "text".equals(preferredKey);
+        StringBuilder first = preferText ? text : partial;
+        StringBuilder second = preferText ? partial : text;
+        if (appendTrimmed(first, 0, first.length())) return selected;
+        if (appendTrimmed(second, 0, second.length())) return selected;
+        appendTrimmed(words, 0, words.length());
+        return selected;
+    }
+
+    /**
+     * Parses a full result object. Returns false if {@code json} is malformed, in which case
+     * the accessors reflect whatever was read before the error.
+     */
+    public boolean parse(CharSequence json) {
+        return parse(json, 0, json.length());
+    }
+
+    private boolean parse(CharSequence json, int from, int to) {
+        partial.setLength(0);
+        text.setLength(0);
+        words.setLength(0);
+        hasPartial = false;
+        hasText = false;
+        wordCount = 0;
+        input = json;
+        pos = from;
+        end = to;
+        try {
+            return parseObject();
+        } finally {
+            input = null;
+        }
+    }
+
+    // --- Accessors for the last parse ---
+    public boolean hasPartial() {
+        return hasPartial;
+    }
+
+    public CharSequence partial() {
+        return partial;
+    }
+
+    public boolean hasText() {
+        return hasText;
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public int wordCount() {
+        return wordCount;
+    }
+
+    public CharSequence word(int index) {
+        return words.subSequence(wordBounds[index * 2], wordBounds[index * 2 + 1]);
+    }
+
+    /** Appends word {@code index} to {@code out} without creating an intermediate string. */
+    public void appendWord(int index, StringBuilder out) {
+        out.append(words, wordBounds[index * 2], wordBounds[index * 2 + 1]);
+    }
+
+    public float wordStart(int index) {
+        return wordStart[index];
+    }
+
+    public float wordEnd(int index) {
+        return wordEnd[index];
+    }
+
+    public float wordConf(int index) {
+        return wordConf[index];
+    }
+
+    // --- Grammar ---
+    private boolean parseObject() {
+        skipWhitespace();
+        if (!consume('{')) return false;
+        skipWhitespace();
+        if (consume('}')) return true;
+        while (true) {
+            skipWhitespace();
+            int field = readTopLevelKey();
+            if (field < 0) return false;
+            skipWhitespace();
+            if (!consume(':')) return false;
+            skipWhitespace();
+            boolean ok;
+            switch (field) {
+                case FIELD_PARTIAL:
+                    hasPartial = true;
+                    ok = readString(partial);
+                    break;
+                case FIELD_TEXT:
+                    hasText = true;
+                    ok = readString(text);
+                    break;
+                case FIELD_RESULT:
+                    ok = readResultArray();
+                    break;
+                default:
+                    ok = skipValue();
+                    break;
+            }
+            if (!ok) return false;
+            skipWhitespace();
+            if (consume(',')) continue;
+            return consume('}');
+        }
+    }
+
+    private boolean readResultArray() {
+        if (peek() == 'n') return skipValue();
+        if (!consume('[')) return false;
+        skipWhitespace();
+        if (consume(']')) return true;
+        while (true) {
+            skipWhitespace();
+            if (!readWordObject()) return false;
+            skipWhitespace();
+            if (consume(',')) continue;
+            return consume(']');
+        }
+    }
+
+    private boolean readWordObject() {
+        if (!consume('{')) return false;
+        ensureWordCapacity(wordCount + 1);
+        int index = wordCount;
+        wordStart[index] = 0f;
+        wordEnd[index] = 0f;
+        wordConf[index] = 1f;
+        if (words.length() > 0) words.append(' ');
+        wordBounds[index * 2] = words.length();
+        wordBounds[index * 2 + 1] = words.length();
+        skipWhitespace();
+        if (!consume('}')) {
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') return false;
+                int keyStart = pos + 1;
+                if (!skipString()) return false;
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                if (!consume(':')) return false;
+                skipWhitespace();
+                boolean ok = true;
+                if (keyEquals(keyStart, keyEnd, "word")) {
+                    ok = readString(words);
+                    wordBounds[index * 2 + 1] = words.length();
+                } else if (keyEquals(keyStart, keyEnd, "start")) {
+                    wordStart[index] = (float) readNumber();
+                } else if (keyEquals(keyStart, keyEnd, "end")) {
+                    wordEnd[index] = (float) readNumber();
+                } else if (keyEquals(keyStart, keyEnd, "conf")) {
+                    wordConf[index] = (float) readNumber();
+                } else {
+                    ok = skipValue();
+                }
+                if (!ok || Double.isNaN(wordStart[index] + wordEnd[index] + wordConf[index])) return false;
+                skipWhitespace();
+                if (consume(',')) continue;
+                if (consume('}')) break;
+                return false;
+            }
+        }
+        if (wordBounds[index * 2] == wordBounds[index * 2 + 1]) {
+            words.setLength(Math.max(0, wordBounds[index * 2] - 1)); // drop the separator of an empty word
+            return true;
+        }
+        wordCount++;
+        return true;
+    }
+
+    private int readTopLevelKey() {
+        if (peek() != '"') return -1;
+        int keyStart = pos + 1;
+        if (!skipString()) return -1;
+        int keyEnd = pos - 1;
+        if (keyEquals(keyStart, keyEnd, "partial")) return FIELD_PARTIAL;
+        if (keyEquals(keyStart, keyEnd, "text")) return FIELD_TEXT;
+        if (keyEquals(keyStart, keyEnd, "result")) return FIELD_RESULT;
+        return FIELD_NONE;
+    }
+
+    private boolean keyEquals(int start, int stop, String key) {
+        if (stop - start != key.length()) return false;
+        for (int i = 0; i < key.length(); i++) {
+            if (input.charAt(start + i) != key.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** Decodes a JSON string at the cursor, appending its contents to {@code out}. */
+    private boolean readString(StringBuilder out) {
+        if (!consume('"')) return false;
+        while (pos < end) {
+            char c = input.charAt(pos++);
+            if (c == '"') return true;
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (pos >= end) return false;
+            char escaped = input.charAt(pos++);
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(escaped);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > end) return false;
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(input.charAt(pos++), 16);
+                        if (digit < 0) return false;
+                        code = (code << 4) | digit;
+                    }
+                    out.append((char) code);
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean skipString() {
+        if (!consume('"')) return false;
+        while (pos < end) {
+            char c = input.charAt(pos++);
+            if (c == '"') return true;
+            if (c == '\\') pos++;
+        }
+        return false;
+    }
+
+    /** Parses a JSON number in place; returns NaN if there is none at the cursor. */
+    private double readNumber() {
+        boolean negative = consume('-');
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        while (pos < end && isDigit(input.charAt(pos))) {
+            if (mantissa < Long.MAX_VALUE / 10 - 10) {
+                mantissa = mantissa * 10 + (input.charAt(pos) - '0');
+            } else {
+                exponent++;
+            }
+            pos++;
+            digits++;
+        }
+        if (consume('.')) {
+            while (pos < end && isDigit(input.charAt(pos))) {
+                if (mantissa < Long.MAX_VALUE / 10 - 10) {
+                    mantissa = mantissa * 10 + (input.charAt(pos) - '0');
+                    exponent--;
+                }
+                pos++;
+                digits++;
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        if (pos < end && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = consume('-');
+            if (!negativeExponent) consume('+');
+            int value = 0;
+            while (pos < end && isDigit(input.charAt(pos))) {
+                value = value * 10 + (input.charAt(pos++) - '0');
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        double result = exponent == 0 ? mantissa
+                : exponent > 0 ? mantissa * Math.pow(10, exponent) : mantissa / Math.pow(10, -exponent);
+        return negative ? -result : result;
+    }
+
+    private boolean skipValue() {
+        char c = peek();
+        if (c == '"') return skipString();
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (pos < end) {
+                char d = input.charAt(pos);
+                if (d == '"') {
+                    if (!skipString()) return false;
+                    continue;
+                }
+                pos++;
+                if (d == '{' || d == '[') depth++;
+                else if (d == '}' || d == ']') {
+                    if (--depth == 0) return true;
+                }
+            }
+            return false;
+        }
+        int start = pos;
+        while (pos < end) {
+            char d = input.charAt(pos);
+            if (d == ',' || d == '}' || d == ']' || isWhitespace(d)) break;
+            pos++;
+        }
+        return pos > start;
+    }
+
+    // --- Helpers ---
+    private boolean appendTrimmed(CharSequence source, int start, int stop) {
+        while (start < stop && isWhitespace(source.charAt(start))) start++;
+        while (stop > start && isWhitespace(source.charAt(stop - 1))) stop--;
+        if (start == stop) return false;
+        selected.append(source, start, stop);
+        return true;
+    }
+
+    private void ensureWordCapacity(int count) {
+        if (count <= wordStart.length) return;
+        int capacity = Math.max(count, wordStart.length * 2);
+        wordBounds = Arrays.copyOf(wordBounds, capacity * 2);
+        wordStart = Arrays.copyOf(wordStart, capacity);
+        wordEnd = Arrays.copyOf(wordEnd, capacity);
+        wordConf = Arrays.copyOf(wordConf, capacity);
+    }
+
+    private char peek() {
+        return pos < end ? input.charAt(pos) : '\0';
+    }
+
+    private boolean consume(char expected) {
+        if (pos < end && input.charAt(pos) == expected) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(input.charAt(pos))) pos++;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,266 @@
+package org.vosk.demo;
+
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Transcribes one long recording using all cores.
+ * <p>
+ * {@link SilenceSegmenter} cuts the audio at pauses. The segments are decoded concurrently on
+ * a {@link ForkJoinPool}, and their word-level results are stitched back into one transcript.
+ * Recognizers are pooled, at most one per pool thread, and all share the {@link Model}. Audio
+ * is read from the {@link WavReader}'s mapping, a chunk at a time, so the recording never has
+ * to fit on the heap.
+ * <p>
+ * Vosk times words from the first sample a recognizer was ever fed; neither a final result nor
+ * {@code reset()} restarts that clock. So each pooled recognizer counts the samples it has
+ * been fed, and a segment's words are shifted by its start minus that count, which puts them
+ * on the clock of the original recording.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public final class LongAudioTranscriber {
+
+    private static final int CHUNK_SAMPLES = 32 * 1024;
+
+    /** The calls the transcriber makes on a recognizer; implemented over Vosk's {@link Recognizer}. */
+    interface SegmentRecognizer {
+        boolean acceptWaveForm(short[] data, int length);
+
+        String getResult();
+
+        String getFinalResult();
+
+        void close();
+    }
+
+    interface RecognizerFactory {
+        /** Returns a recognizer that reports word times. */
+        SegmentRecognizer create(float sampleRate) throws IOException;
+    }
+
+    /** A recognized word, timed relative to the start of the recording. */
+    public static final class Word {
+        public final String text;
+        public final double start;
+        public final double end;
+        public final float conf;
+
+        Word(String text, double start, double end, float conf) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.conf = conf;
+        }
+    }
+
+    public static final class Transcript {
+        public final List<Word> words;
+        public final int segments;
+        public final double audioSeconds;
+        public final long wallNanos;
+
+        Transcript(List<Word> words, int segments, double audioSeconds, long wallNanos) {
+            this.words = words;
+            this.segments = segments;
+            this.audioSeconds = audioSeconds;
+            this.wallNanos = wallNanos;
+        }
+
+        public String text() {
+            StringBuilder text = new StringBuilder();
+            for (Word word : words) {
+                if (text.length() > 0) text.append(' ');
+                text.append(word.text);
+            }
+            return text.toString();
+        }
+
+        /** Wall-clock real-time factor. */
+        public double realTimeFactor() {
+            return audioSeconds == 0 ? 0.0 : wallNanos / 1e9 / audioSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d words in %d segments: %.1f s audio in %d ms, RTF %.3f",
+                    words.size(), segments, audioSeconds, wallNanos / 1_000_000, realTimeFactor());
+        }
+    }
+
+    // A pooled recognizer and the number of samples it has been fed since it was created.
+    private static final class PooledRecognizer {
+        final SegmentRecognizer recognizer;
+        long fedSamples;
+
+        PooledRecognizer(SegmentRecognizer recognizer) {
+            this.recognizer = recognizer;
+        }
+    }
+
+    private final RecognizerFactory factory;
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<PooledRecognizer> recognizers = new ConcurrentLinkedQueue<>();
+    private float recognizerRate;
+
+    public LongAudioTranscriber(Model model, int parallelism) {
+        this(voskRecognizers(model), parallelism);
+    }
+
+    LongAudioTranscriber(RecognizerFactory factory, int parallelism) {
+        this.factory = factory;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    private static RecognizerFactory voskRecognizers(Model model) {
+        return sampleRate -> {
+            Recognizer recognizer = new Recognizer(model, sampleRate);
+            recognizer.setWords(true);
+            return new SegmentRecognizer() {
+                @Override
+                public boolean acceptWaveForm(short[] data, int length) {
+                    return recognizer.acceptWaveForm(data, length);
+                }
+
+                @Override
+                public String getResult() {
+                    return recognizer.getResult();
+                }
+
+                @Override
+                public String getFinalResult() {
+                    return recognizer.getFinalResult();
+                }
+
+                @Override
+                public void close() {
+                    recognizer.close();
+                }
+            };
+        };
+    }
+
+    /** Transcribes a mono recording; blocks until every segment is decoded. */
+    public synchronized Transcript transcribe(WavReader reader) throws IOException {
+        if (reader.getChannels() != 1) {
+            throw new IOException("Only mono audio is supported, got " + reader.getChannels() + " channels");
+        }
+        if (reader.getSampleRate() != recognizerRate) {
+            closeRecognizers();
+            recognizerRate = reader.getSampleRate();
+        }
+
+        long start = System.nanoTime();
+        ShortBuffer samples = reader.samples();
+        int[] bounds = new SilenceSegmenter(reader.getSampleRate()).segment(samples);
+        int segmentCount = bounds.length - 1;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Word>[] segmentWords = new List[segmentCount];
+        try {
+            pool.invoke(new DecodeRange(samples, bounds, segmentWords, 0, segmentCount));
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Segment decoding failed", e);
+        }
+
+        // Segments do not overlap and are in order, so stitching is concatenation.
+        List<Word> words = new ArrayList<>();
+        for (List<Word> segment : segmentWords) words.addAll(segment);
+        return new Transcript(Collections.unmodifiableList(words), segmentCount,
+                reader.getDurationSeconds(), System.nanoTime() - start);
+    }
+
+    /** Splits a range of segments in half until one is left, then decodes it. */
+    private final class DecodeRange extends RecursiveAction {
+        private final ShortBuffer samples;
+        private final int[] bounds;
+        private final List<Word>[] out;
+        private final int from;
+        private final int to;
+
+        DecodeRange(ShortBuffer samples, int[] bounds, List<Word>[] out, int from, int to) {
+            this.samples = samples;
+            this.bounds = bounds;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeRange(samples, bounds, out, from, middle),
+                        new DecodeRange(samples, bounds, out, middle, to));
+                return;
+            }
+            try {
+                out[from] = decodeSegment(samples, bounds[from], bounds[from + 1]);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private List<Word> decodeSegment(ShortBuffer samples, int startSample, int endSample) throws IOException {
+        PooledRecognizer pooled = recognizers.poll();
+        if (pooled == null) pooled = new PooledRecognizer(factory.create(recognizerRate));
+        boolean decoded = false;
+        try {
+            ShortBuffer segment = samples.duplicate();
+            segment.limit(endSample);
+            segment.position(startSample);
+            short[] chunk = new short[CHUNK_SAMPLES];
+            HypothesisParser parser = new HypothesisParser();
+            double offsetSeconds = (startSample - pooled.fedSamples) / (double) recognizerRate;
+            List<Word> words = new ArrayList<>();
+            while (segment.hasRemaining()) {
+                int count = Math.min(chunk.length, segment.remaining());
+                segment.get(chunk, 0, count);
+                pooled.fedSamples += count;
+                if (pooled.recognizer.acceptWaveForm(chunk, count)) {
+                    collectWords(parser, pooled.recognizer.getResult(), offsetSeconds, words);
+                }
+            }
+            collectWords(parser, pooled.recognizer.getFinalResult(), offsetSeconds, words);
+            decoded = true;
+            return words;
+        } finally {
+            // After a failure the recognizer's clock is not known for sure; do not reuse it.
+            if (decoded) {
+                recognizers.offer(pooled);
+            } else {
+                pooled.recognizer.close();
+            }
+        }
+    }
+
+    private static void collectWords(HypothesisParser parser, String result, double offsetSeconds, List<Word> words) {
+        if (!parser.parse(result)) return;
+        for (int i = 0; i < parser.wordCount(); i++) {
+            words.add(new Word(parser.word(i).toString(), offsetSeconds + parser.wordStart(i),
+                    offsetSeconds + parser.wordEnd(i), parser.wordConf(i)));
+        }
+    }
+
+    private void closeRecognizers() {
+        PooledRecognizer pooled;
+        while ((pooled = recognizers.poll()) != null) pooled.recognizer.close();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+        closeRecognizers();
+    }
+}
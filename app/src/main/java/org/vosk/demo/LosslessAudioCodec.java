@@ -0,0 +1,212 @@
+package org.vosk.demo;
+
+/**
+ * Lossless compression of 16-bit mono PCM in independent frames, the way FLAC's fixed
+ * predictors do it.
+ * <p>
+ * Each frame picks the polynomial predictor (order 0 to 3) whose residuals are smallest,
+ * stores the first {@code order} samples verbatim and Rice-codes the zigzagged residuals with
+ * one parameter per frame. Residuals that would need a long unary prefix are escaped to a
+ * fixed width, and a frame that would not shrink is stored verbatim, so a frame is never
+ * larger than {@link #maxEncodedBytes}. The bundled speech recording takes 40% of its PCM size,
+ * silence a bit per sample.
+ * <p>
+ * A frame is an 8-byte little-endian header (sample count: u16, order: u8, 0xFF for verbatim,
+ * Rice parameter: u8, payload bytes: u32) and the payload, so frames can be skipped without
+ * decoding and a torn one is recognized by its length.
+ * <p>
+ * This class has no Android dependencies and is not thread-safe.
+ */
+public final class LosslessAudioCodec {
+
+    public static final int HEADER_BYTES = 8;
+    public static final int MAX_FRAME_SAMPLES = 65535;
+    private static final int MAX_ORDER = 3;
+    private static final int VERBATIM = 0xFF;
+    private static final int ESCAPE_QUOTIENT = 16; // Longer unary prefixes are escaped...
+    private static final int ESCAPE_BITS = 20; // ...to the width of any order-3 residual
+
+    private int[] residuals = new int[0];
+    private long bits; // Pending output bits, most significant first
+    private int bitCount;
+
+    /** Upper bound on the size of a frame of {@code samples} samples. */
+    public static int maxEncodedBytes(int samples) {
+        return HEADER_BYTES + 2 * samples;
+    }
+
+    /**
+     * Encodes {@code length} samples from {@code pcm[pcmOffset]} (at most
+     * {@link #MAX_FRAME_SAMPLES}) as one frame at {@code out[offset]}, which must have room for
+     * {@link #maxEncodedBytes}. Returns the frame size in bytes.
+     */
+    public int encode(short[] pcm, int pcmOffset, int length, byte[] out, int offset) {
+        if (length > MAX_FRAME_SAMPLES) throw new IllegalArgumentException("Frame too long: " + length);
+        int order = bestOrder(pcm, pcmOffset, length);
+        if (residuals.length < length) residuals = new int[length];
+        long sum = 0;
+        for (int i = order; i < length; i++) {
+            int e = residual(pcm, pcmOffset + i, order);
+            int u = (e << 1) ^ (e >> 31);
+            residuals[i] = u;
+            sum += u;
+        }
+        int n = Math.max(1, length - order);
+        int k = 0;
+        while (k < ESCAPE_BITS - 1 && ((long) n << (k + 1)) <= sum) k++;
+
+        long payloadBits = 16L * order;
+        for (int i = order; i < length; i++) {
+            int q = residuals[i] >>> k;
+            payloadBits += q < ESCAPE_QUOTIENT ? q + 1 + k : ESCAPE_QUOTIENT + ESCAPE_BITS;
+        }
+        if (payloadBits >= 16L * length) return encodeVerbatim(pcm, pcmOffset, length, out, offset);
+
+        int pos = offset + HEADER_BYTES;
+        bits = 0;
+        bitCount = 0;
+        for (int i = 0; i < order; i++) pos = put(pcm[pcmOffset + i] & 0xFFFF, 16, out, pos);
+        int unaryMask = (1 << ESCAPE_QUOTIENT) - 1;
+        for (int i = order; i < length; i++) {
+            int u = residuals[i];
+            int q = u >>> k;
+            if (q < ESCAPE_QUOTIENT) {
+                // q ones, a zero, then the k low bits.
+                pos = put(((1 << q) - 1) << 1, q + 1, out, pos);
+                if (k > 0) pos = put(u & ((1 << k) - 1), k, out, pos);
+            } else {
+                pos = put(unaryMask, ESCAPE_QUOTIENT, out, pos);
+                pos = put(u, ESCAPE_BITS, out, pos);
+            }
+        }
+        if (bitCount > 0) out[pos++] = (byte) (bits << (8 - bitCount));
+        writeHeader(out, offset, length, order, k, pos - offset - HEADER_BYTES);
+        return pos - offset;
+    }
+
+    private static int encodeVerbatim(short[] pcm, int pcmOffset, int length, byte[] out, int offset) {
+        int pos = offset + HEADER_BYTES;
+        for (int i = pcmOffset; i < pcmOffset + length; i++) {
+            out[pos++] = (byte) pcm[i];
+            out[pos++] = (byte) (pcm[i] >> 8);
+        }
+        writeHeader(out, offset, length, VERBATIM, 0, 2 * length);
+        return pos - offset;
+    }
+
+    private static void writeHeader(byte[] out, int offset, int samples, int order, int k, int payloadBytes) {
+        out[offset] = (byte) samples;
+        out[offset + 1] = (byte) (samples >> 8);
+        out[offset + 2] = (byte) order;
+        out[offset + 3] = (byte) k;
+        for (int i = 0; i < 4; i++) out[offset + 4 + i] = (byte) (payloadBytes >> (8 * i));
+    }
+
+    // Appends the low count bits of value (count <= 32), flushing whole bytes.
+    private int put(int value, int count, byte[] out, int pos) {
+        bits = (bits << count) | (value & 0xFFFFFFFFL) & ((1L << count) - 1);
+        bitCount += count;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            out[pos++] = (byte) (bits >>> bitCount);
+        }
+        return pos;
+    }
+
+    // The fixed predictor with the smallest sum of absolute residuals.
+    private static int bestOrder(short[] pcm, int offset, int length) {
+        if (length <= MAX_ORDER) return 0;
+        long e0 = 0, e1 = 0, e2 = 0, e3 = 0;
+        for (int i = offset + MAX_ORDER; i < offset + length; i++) {
+            int x0 = pcm[i], x1 = pcm[i - 1], x2 = pcm[i - 2], x3 = pcm[i - 3];
+            e0 += Math.abs(x0);
+            e1 += Math.abs(x0 - x1);
+            e2 += Math.abs(x0 - 2 * x1 + x2);
+            e3 += Math.abs(x0 - 3 * x1 + 3 * x2 - x3);
+        }
+        int order = 0;
+        long best = e0;
+        if (e1 < best) { order = 1; best = e1; }
+        if (e2 < best) { order = 2; best = e2; }
+        if (e3 < best) order = 3;
+        return order;
+    }
+
+    private static int residual(short[] pcm, int i, int order) {
+        switch (order) {
+            case 0: return pcm[i];
+            case 1: return pcm[i] - pcm[i - 1];
+            case 2: return pcm[i] - 2 * pcm[i - 1] + pcm[i - 2];
+            default: return pcm[i] - 3 * pcm[i - 1] + 3 * pcm[i - 2] - pcm[i - 3];
+        }
+    }
+
+    // --- Decoding ---
+    /** Size of the frame at {@code in[offset]}, header included, or -1 if it is not complete in {@code length} bytes. */
+    public static int frameBytes(byte[] in, int offset, int length) {
+        if (length - offset < HEADER_BYTES) return -1;
+        long payload = (in[offset + 4] & 0xFFL) | (in[offset + 5] & 0xFFL) << 8
+                | (in[offset + 6] & 0xFFL) << 16 | (in[offset + 7] & 0xFFL) << 24;
+        return HEADER_BYTES + payload <= length - offset ? (int) (HEADER_BYTES + payload) : -1;
+    }
+
+    /** Number of samples in the frame at {@code in[offset]}. */
+    public static int frameSamples(byte[] in, int offset) {
+        return (in[offset] & 0xFF) | (in[offset + 1] & 0xFF) << 8;
+    }
+
+    /**
+     * Decodes the complete frame at {@code in[offset]} into {@code out[outOffset]}, which must
+     * have room for {@link #frameSamples}. Returns the number of samples.
+     */
+    public static int decode(byte[] in, int offset, short[] out, int outOffset) {
+        int length = frameSamples(in, offset);
+        int order = in[offset + 2] & 0xFF;
+        int k = in[offset + 3];
+        int pos = offset + HEADER_BYTES;
+        if (order == VERBATIM) {
+            for (int i = 0; i < length; i++, pos += 2) {
+                out[outOffset + i] = (short) ((in[pos] & 0xFF) | in[pos + 1] << 8);
+            }
+            return length;
+        }
+        long bitPos = (long) pos * 8;
+        for (int i = 0; i < order; i++, bitPos += 16) out[outOffset + i] = (short) read(in, bitPos, 16);
+        for (int i = order; i < length; i++) {
+            int q = 0;
+            while (q < ESCAPE_QUOTIENT && read(in, bitPos++, 1) == 1) q++;
+            int u;
+            if (q < ESCAPE_QUOTIENT) {
+                u = (q << k) | read(in, bitPos, k);
+                bitPos += k;
+            } else {
+                u = read(in, bitPos, ESCAPE_BITS);
+                bitPos += ESCAPE_BITS;
+            }
+            int e = (u >>> 1) ^ -(u & 1);
+            int j = outOffset + i;
+            int prediction;
+            switch (order) {
+                case 0: prediction = 0; break;
+                case 1: prediction = out[j - 1]; break;
+                case 2: prediction = 2 * out[j - 1] - out[j - 2]; break;
+                default: prediction = 3 * out[j - 1] - 3 * out[j - 2] + out[j - 3]; break;
+            }
+            out[j] = (short) (prediction + e);
+        }
+        return length;
+    }
+
+    // Reads count bits (at most 24) starting at bit bitPos, most significant first.
+    private static int read(byte[] in, long bitPos, int count) {
+        if (count == 0) return 0;
+        int index = (int) (bitPos >>> 3);
+        int shift = (int) (bitPos & 7);
+        long window = 0;
+        for (int i = 0; i < 4; i++) {
+            window <<= 8;
+            if (index + i < in.length) window |= in[index + i] & 0xFF;
+        }
+        return (int) ((window >>> (32 - shift - count)) & ((1L << count) - 1));
+    }
+}
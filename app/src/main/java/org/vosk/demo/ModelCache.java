@@ -0,0 +1,384 @@
+package org.vosk.demo;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import org.vosk.Model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Content-addressed cache of the unpacked speech model.
+ * <p>
+ * The models module ships a {@code manifest} of per-file SHA-256 checksums next to the model
+ * assets, plus a {@code uuid} that is the hash of that manifest. On start the cached copy is
+ * reused whenever its uuid matches the bundled one, after a cheap check that every manifest
+ * entry exists with the right size; only otherwise are the assets unpacked again. Full
+ * checksums are verified lazily, in parallel, after the model has been handed out, and only
+ * once per model version. A failed verification invalidates the cache for the next start.
+ * <p>
+ * To keep startup cheap, assets stored uncompressed in the APK are unpacked with a
+ * kernel-side {@link FileChannel#transferTo} rather than streamed through the heap, checksums
+ * are computed over memory-mapped files. Optional components (rescoring and RNNLM data) are
+ * loaded with the rest: Vosk only reads them when the model is constructed, so deferring them
+ * would take a second, complete model.
+ */
+class ModelCache {
+
+    private static final String TAG = "ModelCache";
+    static final String UUID_FILE = "uuid"; // Generated per model by the models module
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String VERIFIED_FILE = ".verified";
+    private static final long MAP_CHUNK_BYTES = 64L * 1024 * 1024;
+
+    interface Callback {
+        /** Called on the loader thread once the model is ready. */
+        void onModelLoaded(Model model, Timings timings);
+
+        /** Called on the loader thread if the model could not be unpacked or loaded. */
+        void onModelError(IOException exception);
+    }
+
+    /** Cold-start timing breakdown, in milliseconds, and the size of the loaded model. */
+    static final class Timings {
+        boolean cacheHit;
+        long unpackMs;
+        long quickVerifyMs;
+        long loadMs;
+        long residentKb = -1; // Growth of the process RSS across the load; -1 if unavailable
+        long diskKb; // Size of the files the model was loaded from
+        volatile long checksumMs = -1; // -1 until the background verification finishes
+
+        /** Best estimate of the memory the model holds: the RSS growth, else its size on disk. */
+        long sizeKb() {
+            return residentKb > 0 ? residentKb : diskKb;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "cacheHit=%b unpack=%dms verify=%dms load=%dms resident=%dkB disk=%dkB checksums=%s",
+                    cacheHit, unpackMs, quickVerifyMs, loadMs, residentKb, diskKb, checksumMs < 0 ? "pending" : checksumMs + "ms");
+        }
+    }
+
+    private static final class Entry {
+        final String sha256;
+        final long size;
+        final String path;
+
+        Entry(String sha256, long size, String path) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.path = path;
+        }
+    }
+
+    private final Context context;
+    private final String assetName;
+    private final String targetPath;
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "ModelLoader"));
+
+    ModelCache(Context context, String assetName, String targetPath) {
+        this.context = context.getApplicationContext();
+        this.assetName = assetName;
+        this.targetPath = targetPath;
+    }
+
+    /** Loads the model in the background, unpacking it only if the cache is missing or stale. */
+    void load(Callback callback) {
+        loaderExecutor.execute(() -> {
+            Timings timings = new Timings();
+            try {
+                File modelDir = modelDir();
+                String bundledHash = readLine(context.getAssets().open(assetName + "/" + UUID_FILE));
+
+                long start = System.nanoTime();
+                List<Entry> manifest = null;
+                timings.cacheHit = bundledHash.equals(readLineOrNull(new File(modelDir, UUID_FILE)));
+                if (timings.cacheHit) {
+                    manifest = readManifest(modelDir);
+                    timings.cacheHit = manifest == null || sizesMatch(modelDir, manifest);
+                    if (!timings.cacheHit) Log.w(TAG, "Cached model is incomplete, unpacking again.");
+                }
+                timings.quickVerifyMs = elapsedMs(start);
+
+                if (!timings.cacheHit) {
+                    start = System.nanoTime();
+                    unpack(modelDir);
+                    timings.unpackMs = elapsedMs(start);
+                    manifest = readManifest(modelDir);
+                }
+
+                start = System.nanoTime();
+                long rssBeforeKb = readRssKb();
+                Model model = new Model(modelDir.getAbsolutePath());
+                timings.loadMs = elapsedMs(start);
+                long rssAfterKb = readRssKb();
+                if (rssBeforeKb >= 0 && rssAfterKb >= 0) timings.residentKb = rssAfterKb - rssBeforeKb;
+                timings.diskKb = sizeOf(modelDir) / 1024;
+                Log.i(TAG, "Model ready: " + timings);
+                callback.onModelLoaded(model, timings);
+
+                verifyChecksumsIfNeeded(modelDir, bundledHash, manifest, timings);
+            } catch (IOException e) {
+                callback.onModelError(e);
+            } catch (RuntimeException e) {
+                callback.onModelError(new IOException("Failed to load model: " + e.getMessage(), e));
+            }
+        });
+    }
+
+    void shutdown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    private File modelDir() throws IOException {
+        File externalFilesDir = context.getExternalFilesDir(null);
+        if (externalFilesDir == null) throw new IOException("External files directory is not available");
+        // Same layout StorageService.sync unpacks into, so existing installs keep their copy.
+        return new File(new File(externalFilesDir, targetPath), assetName);
+    }
+
+    // --- Unpacking ---
+    private void unpack(File modelDir) throws IOException {
+        invalidate(modelDir);
+        deleteRecursively(modelDir);
+        AssetManager assets = context.getAssets();
+        String uuidAsset = assetName + "/" + UUID_FILE;
+        copyAssets(assets, assetName, modelDir, uuidAsset);
+        // The uuid goes last: an interrupted unpack is never mistaken for a complete one.
+        copyAsset(assets, uuidAsset, new File(modelDir, UUID_FILE));
+    }
+
+    private static void copyAssets(AssetManager assets, String assetPath, File target, String skipPath) throws IOException {
+        String[] children = assets.list(assetPath);
+        if (children == null || children.length == 0) {
+            if (!assetPath.equals(skipPath)) copyAsset(assets, assetPath, target);
+            return;
+        }
+        if (!target.isDirectory() && !target.mkdirs()) throw new IOException("Cannot create " + target);
+        for (String child : children) {
+            copyAssets(assets, assetPath + "/" + child, new File(target, child), skipPath);
+        }
+    }
+
+    private static void copyAsset(AssetManager assets, String assetPath, File target) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(assetPath);
+             FileChannel in = new FileInputStream(fd.getFileDescriptor()).getChannel();
+             FileChannel out = new FileOutputStream(target).getChannel()) {
+            // Stored uncompressed in the APK: let the kernel copy the byte range directly.
+            long position = fd.getStartOffset();
+            long remaining = fd.getLength();
+            while (remaining > 0) {
+                long copied = in.transferTo(position, remaining, out);
+                if (copied <= 0) throw new IOException("Short copy of " + assetPath);
+                position += copied;
+                remaining -= copied;
+            }
+        } catch (FileNotFoundException compressed) {
+            // openFd() refuses compressed assets; inflate through a stream instead.
+            try (InputStream in = assets.open(assetPath); OutputStream out = new FileOutputStream(target)) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private static long sizeOf(File file) {
+        File[] children = file.listFiles();
+        if (children == null) return file.length();
+        long size = 0;
+        for (File child : children) size += sizeOf(child);
+        return size;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    // --- Verification ---
+    private static boolean sizesMatch(File modelDir, List<Entry> manifest) {
+        for (Entry entry : manifest) {
+            File file = new File(modelDir, entry.path);
+            if (file.length() != entry.size) {
+                Log.w(TAG, "Size mismatch for " + entry.path + ": " + file.length() + " != " + entry.size);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void verifyChecksumsIfNeeded(File modelDir, String bundledHash, List<Entry> manifest, Timings timings) {
+        if (manifest == null) {
+            Log.w(TAG, "No model manifest, skipping checksum verification.");
+            return;
+        }
+        File marker = new File(modelDir, VERIFIED_FILE);
+        if (bundledHash.equals(readLineOrNull(marker))) {
+            timings.checksumMs = 0;
+            return;
+        }
+
+        long start = System.nanoTime();
+        int threads = Math.max(1, Math.min(manifest.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService verifier = Executors.newFixedThreadPool(threads, r -> new Thread(r, "ModelVerifier"));
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (final Entry entry : manifest) {
+                results.add(verifier.submit((Callable<Boolean>) () -> entry.sha256.equals(sha256(new File(modelDir, entry.path)))));
+            }
+            boolean ok = true;
+            for (int i = 0; i < results.size(); i++) {
+                if (!results.get(i).get()) {
+                    Log.e(TAG, "Checksum mismatch for " + manifest.get(i).path);
+                    ok = false;
+                }
+            }
+            timings.checksumMs = elapsedMs(start);
+            if (ok) {
+                writeLine(marker, bundledHash);
+                Log.i(TAG, "Model checksums verified in " + timings.checksumMs + " ms");
+            } else {
+                // Keep using the loaded model for this run; unpack a fresh copy on the next start.
+                invalidate(modelDir);
+            }
+        } catch (ExecutionException | IOException e) {
+            Log.e(TAG, "Model checksum verification failed", e);
+            invalidate(modelDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            verifier.shutdownNow();
+        }
+    }
+
+    private static void invalidate(File modelDir) {
+        // A missing uuid forces a fresh unpack on the next start.
+        new File(modelDir, UUID_FILE).delete();
+        new File(modelDir, VERIFIED_FILE).delete();
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        // Hash straight from the page cache instead of copying the file through a heap buffer.
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_CHUNK_BYTES) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_CHUNK_BYTES, size - position));
+                digest.update(mapped);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    // --- Files ---
+    private static List<Entry> readManifest(File modelDir) throws IOException {
+        File file = new File(modelDir, MANIFEST_FILE);
+        if (!file.exists()) return null;
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) throw new IOException("Malformed manifest line: " + line);
+                entries.add(new Entry(parts[0], Long.parseLong(parts[1]), parts[2]));
+            }
+        }
+        return entries;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            return line == null ? "" : line.trim();
+        }
+    }
+
+    private static String readLineOrNull(File file) {
+        if (!file.exists()) return null;
+        try {
+            return readLine(new FileInputStream(file));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeLine(File file, String line) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Peak resident set size of this process in kB (VmHWM), or -1 if unavailable. */
+    static long readPeakRssKb() {
+        return readStatusKb("VmHWM:");
+    }
+
+    /** Current resident set size of this process in kB (VmRSS), or -1 if unavailable. */
+    static long readRssKb() {
+        return readStatusKb("VmRSS:");
+    }
+
+    private static long readStatusKb(String field) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream("/proc/self/status"), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.substring(field.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Cannot read " + field + " from /proc/self/status", e);
+        }
+        return -1;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,232 @@
+package org.vosk.demo;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import org.vosk.Model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loaded {@link Model}s, shared by everything that decodes and reference counted.
+ * <p>
+ * Models are addressed by asset name (one per language or size) and loaded in the background
+ * through a {@link ModelCache} each. {@link #acquire} hands out a model with a reference
+ * taken, {@link #retain} takes another one for a consumer that outlives the caller's (a
+ * session, a batch job) and {@link #release} drops one. A model nobody references stays
+ * loaded so that switching back is free, until the models together exceed the memory budget:
+ * then the least recently used unreferenced ones are closed. Referenced models are never
+ * closed, so the budget can be exceeded while both sides of a swap are in use.
+ * <p>
+ * Load time and resident size are recorded per model; see {@link #summary}.
+ * <p>
+ * Thread-safe. Callbacks run on the model's loader thread.
+ */
+class ModelRegistry {
+
+    private static final String TAG = "ModelRegistry";
+
+    interface Callback {
+        /** The model is loaded and a reference to it is held for the caller. */
+        void onModelLoaded(String name, Model model, ModelCache.Timings timings);
+
+        void onModelError(String name, IOException exception);
+    }
+
+    private static final class Entry {
+        final String name;
+        final ModelCache cache;
+        final List<Callback> waiting = new ArrayList<>(); // Until loaded; each holds a reference
+        Model model;
+        ModelCache.Timings timings;
+        int refCount;
+
+        Entry(String name, ModelCache cache) {
+            this.name = name;
+            this.cache = cache;
+        }
+    }
+
+    private final Context context;
+    private final String targetPath;
+    private final long budgetKb;
+    // Access order, so iteration starts at the least recently used model.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(4, 0.75f, true); // Guarded by this
+
+    /** @param budgetKb combined size of the loaded models above which unused ones are closed */
+    ModelRegistry(Context context, String targetPath, long budgetKb) {
+        this.context = context.getApplicationContext();
+        this.targetPath = targetPath;
+        this.budgetKb = budgetKb;
+    }
+
+    /**
+     * Takes a reference to the model in asset {@code name}, loading it if needed; the callback
+     * runs once it is ready, on the calling thread if it already is.
+     */
+    void acquire(String name, Callback callback) {
+        Model model;
+        ModelCache.Timings timings;
+        synchronized (this) {
+            Entry entry = entries.get(name);
+            if (entry == null) {
+                entry = new Entry(name, new ModelCache(context, name, targetPath));
+                entries.put(name, entry);
+                load(entry);
+            }
+            entry.refCount++;
+            if (entry.model == null) {
+                entry.waiting.add(callback);
+                return;
+            }
+            model = entry.model;
+            timings = entry.timings;
+        }
+        callback.onModelLoaded(name, model, timings);
+    }
+
+    /**
+     * Names of the models bundled in the assets, i.e. the top-level asset directories the models
+     * module generated a uuid for. Only lists directories, so it is cheap enough for the UI.
+     */
+    List<String> availableModels() {
+        List<String> models = new ArrayList<>();
+        AssetManager assets = context.getAssets();
+        try {
+            for (String name : assets.list("")) {
+                String[] files = assets.list(name);
+                if (files != null && Arrays.asList(files).contains(ModelCache.UUID_FILE)) models.add(name);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot list bundled models", e);
+        }
+        Collections.sort(models);
+        return models;
+    }
+
+    /** Takes another reference to a model obtained from {@link #acquire}. */
+    synchronized void retain(Model model) {
+        Entry entry = find(model);
+        if (entry == null) throw new IllegalStateException("Model not in registry");
+        entry.refCount++;
+    }
+
+    /** Drops a reference; the model stays loaded until the budget needs its memory. */
+    void release(Model model) {
+        if (model == null) return;
+        List<Entry> evicted;
+        synchronized (this) {
+            Entry entry = find(model);
+            if (entry == null || entry.refCount == 0) {
+                Log.w(TAG, "Release of a model that is not referenced");
+                return;
+            }
+            entry.refCount--;
+            evicted = trimToBudget();
+        }
+        close(evicted);
+    }
+
+    private void load(Entry entry) {
+        entry.cache.load(new ModelCache.Callback() {
+            @Override
+            public void onModelLoaded(Model model, ModelCache.Timings timings) {
+                List<Callback> waiting;
+                List<Entry> evicted;
+                synchronized (ModelRegistry.this) {
+                    entry.model = model;
+                    entry.timings = timings;
+                    waiting = new ArrayList<>(entry.waiting);
+                    entry.waiting.clear();
+                    evicted = trimToBudget();
+                }
+                Log.i(TAG, "Loaded " + entry.name + " in " + timings.loadMs + " ms, " + timings.sizeKb() + " kB");
+                close(evicted);
+                for (Callback callback : waiting) callback.onModelLoaded(entry.name, model, timings);
+            }
+
+            @Override
+            public void onModelError(IOException exception) {
+                List<Callback> waiting;
+                synchronized (ModelRegistry.this) {
+                    entries.remove(entry.name); // The next acquire tries again
+                    waiting = new ArrayList<>(entry.waiting);
+                    entry.waiting.clear();
+                }
+                entry.cache.shutdown();
+                for (Callback callback : waiting) callback.onModelError(entry.name, exception);
+            }
+        });
+    }
+
+    // Removes the least recently used unreferenced models until the rest fit the budget.
+    private List<Entry> trimToBudget() {
+        List<Entry> evicted = new ArrayList<>();
+        long totalKb = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.model != null) totalKb += entry.timings.sizeKb();
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalKb > budgetKb && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.model == null || entry.refCount > 0) continue;
+            it.remove();
+            totalKb -= entry.timings.sizeKb();
+            evicted.add(entry);
+        }
+        if (totalKb > budgetKb) Log.w(TAG, "Models in use take " + totalKb + " kB, over the " + budgetKb + " kB budget");
+        return evicted;
+    }
+
+    // Recognizers hold their own native reference, so closing never pulls a model from under them.
+    private static void close(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            Log.i(TAG, "Evicting " + entry.name + " (" + entry.timings.sizeKb() + " kB)");
+            entry.model.close();
+            entry.cache.shutdown();
+        }
+    }
+
+    private Entry find(Model model) {
+        for (Entry entry : entries.values()) {
+            if (entry.model == model) return entry;
+        }
+        return null;
+    }
+
+    /** One line per model: name, references, load time and size, least recently used first. */
+    synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries.values()) {
+            if (sb.length() > 0) sb.append('\n');
+            if (entry.model == null) {
+                sb.append(entry.name).append(": loading, refs=").append(entry.refCount);
+            } else {
+                sb.append(String.format(Locale.ROOT, "%s: refs=%d load=%dms resident=%dkB disk=%dkB",
+                        entry.name, entry.refCount, entry.timings.loadMs, entry.timings.residentKb, entry.timings.diskKb));
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Closes every model, referenced or not; the registry cannot be used afterwards. */
+    void shutdown() {
+        List<Entry> all;
+        synchronized (this) {
+            all = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : all) {
+            entry.cache.shutdown();
+            if (entry.model != null) entry.model.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.vosk.demo;
+
+import java.util.Arrays;
+
+/**
+ * Continuous noise-floor estimate from the live audio stream, by minimum statistics.
+ * <p>
+ * Chunk power is smoothed with an exponential moving average, and the noise floor is the
+ * minimum of that average over a sliding window of a few seconds, scaled up to compensate
+ * for the minimum's downward bias. Speech rarely fills a whole window without a pause, so the
+ * minimum follows the background and not the talker. The window is kept as a ring of
+ * sub-window minima, which makes each update O(sub-windows) with no allocation. The estimate
+ * is smoothed once more so it drifts instead of jumping when a sub-window expires.
+ * <p>
+ * RMS values use the {@link AudioStats} scale. {@link #update} and {@link #seed} may be called
+ * from different threads; {@link #getNoiseFloor} is a volatile read.
+ */
+public final class NoiseFloorTracker {
+
+    // Minimum-statistics bias compensation, in the power domain.
+    private static final double BIAS_COMPENSATION = 1.5;
+
+    private final double powerSmoothing;
+    private final double estimateSmoothing;
+    private final int subWindowChunks;
+    private final double[] subWindowMinima; // Power; +Inf until filled
+
+    private double smoothedPower = -1.0;
+    private double currentMinimum = Double.POSITIVE_INFINITY;
+    private int chunksInSubWindow;
+    private int subWindowIndex;
+    private long updateCount;
+    private volatile double noiseFloorRms = -1.0;
+
+    /** Defaults for 100 ms chunks: 1 s sub-windows, an 8 s window. */
+    public NoiseFloorTracker() {
+        this(10, 8, 0.7, 0.5);
+    }
+
+    /**
+     * @param subWindowChunks   chunks per sub-window
+     * @param subWindowCount    sub-windows in the sliding window
+     * @param powerSmoothing    weight of the previous value in the chunk-power average (0..1)
+     * @param estimateSmoothing weight of the previous estimate when a sub-window completes (0..1)
+     */
+    public NoiseFloorTracker(int subWindowChunks, int subWindowCount, double powerSmoothing, double estimateSmoothing) {
+        this.subWindowChunks = subWindowChunks;
+        this.subWindowMinima = new double[subWindowCount];
+        this.powerSmoothing = powerSmoothing;
+        this.estimateSmoothing = estimateSmoothing;
+        Arrays.fill(subWindowMinima, Double.POSITIVE_INFINITY);
+    }
+
+    /** Feeds the RMS of one chunk. */
+    public synchronized void update(double rms) {
+        double power = rms * rms;
+        smoothedPower = smoothedPower < 0 ? power : powerSmoothing * smoothedPower + (1 - powerSmoothing) * power;
+        if (smoothedPower < currentMinimum) currentMinimum = smoothedPower;
+        updateCount++;
+        if (++chunksInSubWindow < subWindowChunks) return;
+
+        subWindowMinima[subWindowIndex] = currentMinimum;
+        subWindowIndex = (subWindowIndex + 1) % subWindowMinima.length;
+        chunksInSubWindow = 0;
+        currentMinimum = Double.POSITIVE_INFINITY;
+
+        double windowMinimum = Double.POSITIVE_INFINITY;
+        for (double minimum : subWindowMinima) {
+            if (minimum < windowMinimum) windowMinimum = minimum;
+        }
+        double target = Math.sqrt(windowMinimum * BIAS_COMPENSATION);
+        double previous = noiseFloorRms;
+        noiseFloorRms = previous < 0 ? target : estimateSmoothing * previous + (1 - estimateSmoothing) * target;
+    }
+
+    /**
+     * Replaces the estimate, e.g. with a stored or freshly measured calibration, and restarts
+     * the window so that only audio from now on moves it. A value <= 0 is ignored.
+     */
+    public synchronized void seed(double rms) {
+        if (rms <= 0) return;
+        noiseFloorRms = rms;
+        Arrays.fill(subWindowMinima, Double.POSITIVE_INFINITY);
+        currentMinimum = Double.POSITIVE_INFINITY;
+        chunksInSubWindow = 0;
+        smoothedPower = -1.0;
+    }
+
+    /** Current noise-floor RMS, or -1 before the first sub-window completes and without a seed. */
+    public double getNoiseFloor() {
+        return noiseFloorRms;
+    }
+
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+}
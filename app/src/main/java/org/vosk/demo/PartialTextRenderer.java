@@ -0,0 +1,104 @@
+package org.vosk.demo;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesces partial-result UI updates to the display frame rate.
+ * <p>
+ * {@link #submit} may be called from any thread; only the most recent pending text is kept
+ * and it is rendered from a {@link Choreographer} frame callback, so a burst of partials
+ * costs at most one text update (and one layout pass) per frame. Superseded texts are
+ * counted as dropped, and the time from submit to render is recorded in a histogram.
+ */
+class PartialTextRenderer {
+
+    /** Receives the text to render, on the main thread. */
+    interface Target {
+        void renderPartial(String text);
+    }
+
+    private static final class Pending {
+        final String text;
+        final long submittedNanos;
+
+        Pending(String text, long submittedNanos) {
+            this.text = text;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+
+    private final Handler mainHandler;
+    private final Target target;
+    private final RecognitionMetrics metrics;
+    private final AtomicReference<Pending> pending = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong renderedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> render();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    PartialTextRenderer(Handler mainHandler, Target target, RecognitionMetrics metrics) {
+        this.mainHandler = mainHandler;
+        this.target = target;
+        this.metrics = metrics;
+        metrics.registerGauge("partials_coalesced", this::getDroppedCount);
+    }
+
+    void submit(String text) {
+        submittedCount.incrementAndGet();
+        if (pending.getAndSet(new Pending(text, System.nanoTime())) != null) {
+            droppedCount.incrementAndGet();
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    /** Discards any pending text, e.g. because a command response replaced it. Main thread only. */
+    void cancelPending() {
+        if (pending.getAndSet(null) != null) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void render() {
+        frameScheduled.set(false);
+        Pending latest = pending.getAndSet(null);
+        if (latest == null) return;
+        target.renderPartial(latest.text);
+        renderedCount.incrementAndGet();
+        renderLatency.recordNanos(System.nanoTime() - latest.submittedNanos);
+        metrics.markPartialRendered();
+    }
+
+    // --- Metrics ---
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    String metricsSummary() {
+        return "submitted=" + submittedCount.get() + " rendered=" + renderedCount.get()
+                + " dropped=" + droppedCount.get() + " latency[" + renderLatency.summary() + "]";
+    }
+
+    void shutdown() {
+        mainHandler.removeCallbacks(scheduleFrame);
+        if (frameScheduled.getAndSet(false)) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+        }
+        pending.set(null);
+    }
+}
@@ -0,0 +1,84 @@
+package org.vosk.demo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring of pooled PCM chunks.
+ * <p>
+ * All chunk arrays are allocated up front. The producer {@link #claim claims} the next free
+ * chunk, fills it and {@link #publish publishes} it; the consumer {@link #peek peeks} at the
+ * oldest published chunk, processes it in place and {@link #release releases} it. When the
+ * consumer falls a full ring behind, {@link #claim} returns null and the producer counts an
+ * overrun instead of blocking. Exactly one thread may produce and one may consume.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public final class PcmRingBuffer {
+
+    private final short[][] chunks;
+    private final int[] lengths;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next chunk to consume
+    private final AtomicLong tail = new AtomicLong(); // next chunk to produce
+
+    /**
+     * @param capacity      number of chunks, rounded up to a power of two
+     * @param chunkSamples  capacity of each chunk in samples
+     */
+    public PcmRingBuffer(int capacity, int chunkSamples) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        chunks = new short[size][chunkSamples];
+        lengths = new int[size];
+        mask = size - 1;
+    }
+
+    // --- Producer ---
+
+    /** Returns the next free chunk to fill, or null if the ring is full. */
+    public short[] claim() {
+        long t = tail.get();
+        if (t - head.get() > mask) return null;
+        return chunks[(int) (t & mask)];
+    }
+
+    /** Publishes the chunk returned by the last {@link #claim} with {@code length} valid samples. */
+    public void publish(int length) {
+        long t = tail.get();
+        lengths[(int) (t & mask)] = length;
+        tail.lazySet(t + 1);
+    }
+
+    // --- Consumer ---
+
+    /** Returns the oldest published chunk, or null if the ring is empty. */
+    public short[] peek() {
+        long h = head.get();
+        if (h == tail.get()) return null;
+        return chunks[(int) (h & mask)];
+    }
+
+    /** Number of valid samples in the chunk returned by {@link #peek}. */
+    public int peekLength() {
+        return lengths[(int) (head.get() & mask)];
+    }
+
+    /** Returns the chunk obtained from {@link #peek} to the producer. */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    // --- Either side ---
+
+    /** Number of published chunks not yet released. */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public int chunkSamples() {
+        return chunks[0].length;
+    }
+}
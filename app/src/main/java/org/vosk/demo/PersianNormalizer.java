@@ -0,0 +1,136 @@
+package org.vosk.demo;
+
+/**
+ * Text normalization for matching Persian hypotheses against command phrases.
+ * <p>
+ * {@link #normalize(char)} folds the Arabic code points that recognizers, keyboards and
+ * copied text use interchangeably with the Persian ones (ي/ى to ی, ك to ک, ة to ه, أ/إ/ٱ to
+ * ا, ؤ to و), maps Persian and Arabic-Indic digits to ASCII, lower-cases Latin letters and
+ * drops diacritics (harakat, superscript alef) and tatweel. The zero-width non-joiner counts
+ * as a word separator, so "می‌خواهم" and "می خواهم" tokenize the same way.
+ * <p>
+ * {@link #phoneticKey} goes further for approximate matching: letters that are pronounced
+ * alike in Persian (ت/ط; ث/س/ص; ح/ه; ذ/ز/ض/ظ; غ/ق; ع/ء/آ/ا) share one key letter and
+ * doubled letters collapse, so that homophone spellings of a word have the same key.
+ * <p>
+ * This class has no Android dependencies and is stateless.
+ */
+public final class PersianNormalizer {
+
+    private PersianNormalizer() {
+    }
+
+    /** Whether {@code c} separates tokens: whitespace or the zero-width non-joiner. */
+    public static boolean isSeparator(char c) {
+        return c == '\u200C' || Character.isWhitespace(c);
+    }
+
+    /** The normalized form of {@code c}, or 0 if it is dropped. */
+    public static char normalize(char c) {
+        if (c < 0x80) return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        switch (c) {
+            case 'ي': // Arabic yeh
+            case 'ى': // Alef maksura
+                return 'ی';
+            case 'ك': // Arabic kaf
+                return 'ک';
+            case 'ة': // Teh marbuta
+                return 'ه';
+            case 'أ': // Alef with hamza above
+            case 'إ': // Alef with hamza below
+            case 'ٱ': // Alef wasla
+                return 'ا';
+            case 'ؤ': // Waw with hamza above
+                return 'و';
+            case '\u0640': // Tatweel
+            case '\u0670': // Superscript alef
+            case '\u200D': // Zero-width joiner
+                return 0;
+            default:
+                break;
+        }
+        if (c >= '\u064B' && c <= '\u065F') return 0; // Harakat, tanwin, shadda, sukun, hamza marks
+        if (c >= '۰' && c <= '۹') return (char) ('0' + (c - '۰')); // Persian digits
+        if (c >= '٠' && c <= '٩') return (char) ('0' + (c - '٠')); // Arabic-Indic digits
+        return Character.toLowerCase(c);
+    }
+
+    /** Normalizes {@code text}, turning every run of separators into a single space and trimming. */
+    public static String normalize(CharSequence text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSeparator(c)) {
+                pendingSpace = out.length() > 0;
+                continue;
+            }
+            char n = normalize(c);
+            if (n == 0) continue;
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            out.append(n);
+        }
+        return out.toString();
+    }
+
+    /** The phonetic key of an already normalized token. */
+    public static String phoneticKey(CharSequence token) {
+        char[] key = new char[token.length()];
+        int length = phoneticKey(token, 0, token.length(), key);
+        return new String(key, 0, length);
+    }
+
+    /**
+     * Writes the phonetic key of the normalized token {@code text[start, end)} into {@code out}
+     * (at least {@code end - start} long) and returns its length; allocation-free.
+     */
+    public static int phoneticKey(CharSequence text, int start, int end, char[] out) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char k = phoneticClass(text.charAt(i));
+            if (length > 0 && out[length - 1] == k) continue;
+            out[length++] = k;
+        }
+        return length;
+    }
+
+    /** Same as {@link #phoneticKey(CharSequence, int, int, char[])} over a char array. */
+    public static int phoneticKey(char[] text, int start, int end, char[] out) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char k = phoneticClass(text[i]);
+            if (length > 0 && out[length - 1] == k) continue;
+            out[length++] = k;
+        }
+        return length;
+    }
+
+    private static char phoneticClass(char c) {
+        switch (c) {
+            case 'ط': // Tah
+                return 'ت'; // Teh
+            case 'ث': // Theh
+            case 'ص': // Sad
+                return 'س'; // Seen
+            case 'ح': // Hah
+                return 'ه'; // Heh
+            case 'ذ': // Thal
+            case 'ض': // Dad
+            case 'ظ': // Zah
+                return 'ز'; // Zain
+            case 'غ': // Ghain
+                return 'ق'; // Qaf
+            case 'آ': // Alef with madda
+            case 'ع': // Ain
+            case 'ء': // Hamza
+                return 'ا'; // Alef
+            case 'ئ': // Yeh with hamza above
+                return 'ی'; // Farsi yeh
+            default:
+                return c;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.vosk.demo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead metrics for the recognition pipeline.
+ * <p>
+ * Counters live in one {@link AtomicLongArray} and timers are {@link LatencyHistogram}s,
+ * both indexed by enum ordinal, so recording is a lock-free increment with no lookup, no
+ * allocation and no string building. Queue depths and other instantaneous values are
+ * registered as {@link Gauge}s and read only when a {@link #snapshot} is taken. UI state
+ * transitions are counted per state.
+ * <p>
+ * Snapshots can be appended to a local file periodically with {@link #startDump}. This class
+ * has no Android dependencies and is thread-safe.
+ */
+public final class RecognitionMetrics {
+
+    public enum Counter {
+        CHUNKS_CAPTURED, CHUNKS_DECODED, PARTIALS, RESULTS, FINAL_RESULTS, COMMANDS, PARTIALS_IGNORED, WAKE_UPS,
+        COMMANDS_SUPPRESSED, COMMANDS_RECONCILED, COMMANDS_RETRACTED
+    }
+
+    public enum Timer {
+        /** Time blocked in {@code AudioRecord.read}. */
+        AUDIO_READ,
+        /** {@code acceptWaveForm} plus fetching the result it produced. */
+        RECOGNIZER_ACCEPT,
+        /** From the recognizer producing a partial to the UI showing the latest one. */
+        PARTIAL_TO_UI,
+        COMMAND_MATCH,
+        /** From the first partial matching a command to its dispatch. */
+        COMMAND_DISPATCH
+    }
+
+    /** An instantaneous value read at snapshot time. */
+    public interface Gauge {
+        long read();
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Timer[] TIMERS = Timer.values();
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    private final LatencyHistogram[] timers = new LatencyHistogram[TIMERS.length];
+    private final CopyOnWriteArrayList<String> gaugeNames = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Gauge> gauges = new CopyOnWriteArrayList<>();
+    private final String[] stateNames;
+    private final AtomicLongArray stateEntries;
+    private volatile int currentState = -1;
+    private volatile long lastPartialDecodedNanos;
+    private long lastPartialRenderedFrom; // Main thread only
+
+    private ScheduledExecutorService dumpExecutor; // Guarded by this
+    private volatile IOException dumpError;
+
+    /** @param stateNames names of the UI states, indexed by state value */
+    public RecognitionMetrics(String... stateNames) {
+        for (int i = 0; i < timers.length; i++) timers[i] = new LatencyHistogram();
+        this.stateNames = stateNames.clone();
+        this.stateEntries = new AtomicLongArray(stateNames.length);
+    }
+
+    // --- Recording ---
+    public void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public void recordNanos(Timer timer, long nanos) {
+        timers[timer.ordinal()].recordNanos(nanos);
+    }
+
+    public void registerGauge(String name, Gauge gauge) {
+        synchronized (gauges) {
+            gaugeNames.add(name);
+            gauges.add(gauge);
+        }
+    }
+
+    public void recordStateTransition(int state) {
+        currentState = state;
+        if (state >= 0 && state < stateEntries.length()) stateEntries.incrementAndGet(state);
+    }
+
+    /** Called when the recognizer produces a partial, on any thread. */
+    public void markPartialDecoded() {
+        lastPartialDecodedNanos = System.nanoTime();
+    }
+
+    /**
+     * Called on the main thread after a partial was drawn. The UI always shows the newest
+     * partial, so its latency is measured from the newest decode, once per decode.
+     */
+    public void markPartialRendered() {
+        long decoded = lastPartialDecodedNanos;
+        if (decoded == 0 || decoded == lastPartialRenderedFrom) return;
+        lastPartialRenderedFrom = decoded;
+        recordNanos(Timer.PARTIAL_TO_UI, System.nanoTime() - decoded);
+    }
+
+    // --- Reading ---
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public LatencyHistogram get(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /** A point-in-time copy of every metric. */
+    public static final class Snapshot {
+        public final long timestampMillis;
+        private final long[] counters = new long[COUNTERS.length];
+        private final String[] timerSummaries = new String[TIMERS.length];
+        private final List<String> gaugeNames = new ArrayList<>();
+        private final List<Long> gaugeValues = new ArrayList<>();
+        private final String[] stateNames;
+        private final long[] stateEntries;
+        private final int currentState;
+
+        private Snapshot(RecognitionMetrics metrics) {
+            timestampMillis = System.currentTimeMillis();
+            for (int i = 0; i < counters.length; i++) counters[i] = metrics.counters.get(i);
+            for (int i = 0; i < timerSummaries.length; i++) timerSummaries[i] = metrics.timers[i].summary();
+            synchronized (metrics.gauges) {
+                for (int i = 0; i < metrics.gauges.size(); i++) {
+                    gaugeNames.add(metrics.gaugeNames.get(i));
+                    gaugeValues.add(metrics.gauges.get(i).read());
+                }
+            }
+            stateNames = metrics.stateNames;
+            stateEntries = new long[stateNames.length];
+            for (int i = 0; i < stateEntries.length; i++) stateEntries[i] = metrics.stateEntries.get(i);
+            currentState = metrics.currentState;
+        }
+
+        public long get(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            for (Counter counter : COUNTERS) {
+                out.append(counter.name().toLowerCase(Locale.ROOT)).append('=').append(counters[counter.ordinal()]).append('\n');
+            }
+            for (Timer timer : TIMERS) {
+                out.append(timer.name().toLowerCase(Locale.ROOT)).append(": ").append(timerSummaries[timer.ordinal()]).append('\n');
+            }
+            for (int i = 0; i < gaugeNames.size(); i++) {
+                out.append(gaugeNames.get(i)).append('=').append(gaugeValues.get(i)).append('\n');
+            }
+            out.append("state=").append(currentState >= 0 && currentState < stateNames.length ? stateNames[currentState] : "-");
+            for (int i = 0; i < stateNames.length; i++) {
+                out.append(i == 0 ? " entries: " : ", ").append(stateNames[i]).append('=').append(stateEntries[i]);
+            }
+            return out.toString();
+        }
+    }
+
+    // --- Periodic dump ---
+
+    /** Appends a snapshot to {@code file} every {@code periodMs} until {@link #stopDump}. */
+    public synchronized void startDump(final File file, long periodMs) {
+        stopDump();
+        dumpError = null;
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MetricsDump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleWithFixedDelay(() -> dumpTo(file), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumpExecutor != null) {
+            dumpExecutor.shutdownNow();
+            dumpExecutor = null;
+        }
+    }
+
+    /** The error that stopped the periodic dump, if any. */
+    public IOException getDumpError() {
+        return dumpError;
+    }
+
+    private void dumpTo(File file) {
+        Snapshot snapshot = snapshot();
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write("# " + snapshot.timestampMillis + "\n" + snapshot + "\n");
+        } catch (IOException e) {
+            dumpError = e;
+            stopDump();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.vosk.demo;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Processes recognizer hypotheses off the main thread.
+ * <p>
+ * A single worker drains a queue: it parses the hypothesis JSON, lets a
+ * {@link CommandDispatcher} decide which commands fire (once per utterance, once stable) and
+ * runs their side effects, and only then posts the resulting UI diff to the main looper.
+ * Command responses are posted immediately; plain partials go through a
+ * {@link PartialTextRenderer} so that at most one is rendered per frame.
+ * <p>
+ * Only the latest partial waits for the worker: a newer one replaces it, and so does the
+ * result that ends the utterance, so a busy worker skips partials instead of falling behind.
+ * Results and finals are always queued and processed in order; they carry the words for the
+ * store, late command reconciliation and the final text.
+ * <p>
+ * The words of every result, with their times and confidences, are appended to a
+ * {@link TranscriptStore} if one is configured, and flushed right away so that snapshots see
+ * them. A {@link TranscriptIndex} over the store is rebuilt when the pipeline starts and then
+ * kept in step with every append.
+ */
+class RecognitionPipeline {
+
+    private static final String TAG = "RecognitionPipeline";
+    private static final int STABLE_PARTIALS = 2; // A match must survive one more chunk (100 ms)
+
+    /** Receives pipeline output. */
+    interface Listener {
+        /** Called on the worker thread when a command matched; run its side effect here. */
+        void onCommandMatched(CommandMatcher.Command command);
+
+        /** Called on the main thread after {@link #onCommandMatched}. */
+        void onCommand(CommandMatcher.Command command, String text);
+
+        /** Called on the main thread with the text of a final result (may be empty). */
+        void onFinalText(String text);
+    }
+
+    private final Handler mainHandler;
+    private final Listener listener;
+    private final PartialTextRenderer partialRenderer;
+    private final ThreadPoolExecutor worker;
+    private final RecognitionMetrics metrics;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong(); // Partials superseded before processing
+    private final AtomicReference<String> pendingPartial = new AtomicReference<>();
+    private volatile int maxQueueDepth;
+    private volatile boolean active;
+    private volatile boolean shutDown; // Queued work still drains, but nothing is posted any more
+
+    // Worker-thread state.
+    private final HypothesisParser hypothesisParser = new HypothesisParser();
+    private final CommandDispatcher commandDispatcher;
+    private String lastPartial = "";
+    private final File transcriptStoreDir;
+    private TranscriptStore transcriptStore; // Null until opened, and again after a write error
+    private final TranscriptIndex transcriptIndex = new TranscriptIndex();
+    private final StringBuilder wordScratch = new StringBuilder();
+
+    /** @param transcriptStoreDir where result words are stored, or null to not store them */
+    RecognitionPipeline(Handler mainHandler, CommandMatcher commandMatcher, Listener listener,
+                        PartialTextRenderer partialRenderer, RecognitionMetrics metrics, File transcriptStoreDir) {
+        this.mainHandler = mainHandler;
+        this.transcriptStoreDir = transcriptStoreDir;
+        this.commandDispatcher = new CommandDispatcher(commandMatcher, STABLE_PARTIALS, metrics);
+        this.listener = listener;
+        this.partialRenderer = partialRenderer;
+        this.metrics = metrics;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, "RecognitionPipeline"));
+        metrics.registerGauge("pipeline_queue_depth", this::getQueueDepth);
+        metrics.registerGauge("pipeline_max_queue_depth", this::getMaxQueueDepth);
+        metrics.registerGauge("pipeline_dropped", this::getDroppedCount);
+        if (transcriptStoreDir != null) worker.execute(this::openTranscriptStore);
+    }
+
+    /** Partials are only matched while active, i.e. listening and not paused. */
+    void setActive(boolean active) {
+        this.active = active;
+    }
+
+    /** Replaces the pending partial, if any; only one drain task is queued for them. */
+    void submitPartial(String hypothesis) {
+        if (pendingPartial.getAndSet(hypothesis) != null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        submit(this::drainPartial);
+    }
+
+    /** Submits the result that ends an utterance while listening continues. */
+    void submitResult(String hypothesis) {
+        supersedePendingPartial();
+        submit(() -> processResult(hypothesis));
+    }
+
+    void submitFinal(String hypothesis) {
+        supersedePendingPartial();
+        submit(() -> processFinal(hypothesis));
+    }
+
+    // The result covers the whole utterance, so a partial of it still waiting adds nothing;
+    // clearing it also keeps the next utterance's partials behind the result.
+    private void supersedePendingPartial() {
+        if (pendingPartial.getAndSet(null) != null) droppedCount.incrementAndGet();
+    }
+
+    private void drainPartial() {
+        String hypothesis = pendingPartial.getAndSet(null);
+        if (hypothesis != null) processPartial(hypothesis);
+    }
+
+    private void submit(Runnable task) {
+        if (worker.isShutdown()) return;
+        submittedCount.incrementAndGet();
+        worker.execute(task);
+        int depth = worker.getQueue().size();
+        if (depth > maxQueueDepth) maxQueueDepth = depth;
+    }
+
+    private void processPartial(String hypothesis) {
+        long receivedNanos = System.nanoTime();
+        CharSequence parsed = hypothesisParser.extract(hypothesis, "partial");
+        if (parsed.length() == 0) return;
+        // The recognizer repeats the same partial for every audio buffer; only changes are
+        // rendered, but repeats still count towards a command's stability.
+        boolean changed = !lastPartial.contentEquals(parsed);
+        if (changed) lastPartial = parsed.toString();
+        final String partialText = CommandMatcher.stripUnknown(lastPartial);
+        if (partialText.isEmpty()) return;
+        if (!active) {
+            if (changed) metrics.increment(RecognitionMetrics.Counter.PARTIALS_IGNORED);
+            return;
+        }
+
+        CommandMatcher.Command command = commandDispatcher.onPartial(partialText, receivedNanos);
+        if (command != null) {
+            dispatch(command, partialText);
+        } else if (changed) {
+            partialRenderer.submit(partialText);
+        }
+    }
+
+    private void processResult(String hypothesis) {
+        long receivedNanos = System.nanoTime();
+        lastPartial = "";
+        String text = CommandMatcher.stripUnknown(hypothesisParser.extract(hypothesis, "text").toString());
+        storeWords();
+        if (!active) {
+            commandDispatcher.reset();
+            return;
+        }
+        CommandMatcher.Command late = commandDispatcher.onUtteranceEnd(text, receivedNanos);
+        if (late != null) {
+            Log.d(TAG, "Command reconciled from utterance result: " + late.getName());
+            dispatch(late, text);
+        }
+    }
+
+    private void processFinal(String hypothesis) {
+        long receivedNanos = System.nanoTime();
+        lastPartial = "";
+        final String extractedText = CommandMatcher.stripUnknown(hypothesisParser.extract(hypothesis, "text").toString());
+        Log.i(TAG, "onFinalResult Extracted: \"" + extractedText + "\"");
+        storeWords();
+        // The final result only arrives once listening stopped; its commands are not run any more.
+        if (active) {
+            CommandMatcher.Command late = commandDispatcher.onUtteranceEnd(extractedText, receivedNanos);
+            if (late != null) dispatch(late, extractedText);
+        } else {
+            commandDispatcher.reset();
+        }
+        if (!shutDown) mainHandler.post(() -> listener.onFinalText(extractedText));
+    }
+
+    // Opens the transcript history and indexes everything already in it.
+    private void openTranscriptStore() {
+        try {
+            long start = System.nanoTime();
+            transcriptStore = TranscriptStore.open(transcriptStoreDir);
+            transcriptIndex.addAll(transcriptStore.snapshot());
+            Log.i(TAG, "Transcript history: " + transcriptIndex.wordCount() + " words in " + transcriptIndex.utteranceCount()
+                    + " utterances, indexed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failed to open the transcript history in " + transcriptStoreDir, e);
+            closeTranscriptStore();
+        }
+    }
+
+    // Appends the words of the result the parser just extracted, and indexes them.
+    private void storeWords() {
+        if (transcriptStore == null || hypothesisParser.wordCount() == 0) return;
+        try {
+            if (!transcriptStore.append(hypothesisParser, System.currentTimeMillis(), CommandMatcher.UNKNOWN_WORD)) return;
+            transcriptStore.flush();
+        } catch (IOException e) {
+            // The index must not run ahead of the store: stop recording until the next start.
+            Log.e(TAG, "Failed to store transcript words in " + transcriptStoreDir, e);
+            closeTranscriptStore();
+            return;
+        }
+        transcriptIndex.startUtterance();
+        for (int i = 0; i < hypothesisParser.wordCount(); i++) {
+            wordScratch.setLength(0);
+            hypothesisParser.appendWord(i, wordScratch);
+            if (!CommandMatcher.UNKNOWN_WORD.contentEquals(wordScratch)) transcriptIndex.addWord(wordScratch);
+        }
+    }
+
+    private void closeTranscriptStore() {
+        if (transcriptStore == null) return;
+        try {
+            transcriptStore.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close the transcript store", e);
+        }
+        transcriptStore = null;
+    }
+
+    /** The index over the transcript history; empty until the worker has built it. */
+    TranscriptIndex getTranscriptIndex() {
+        return transcriptIndex;
+    }
+
+    private void dispatch(CommandMatcher.Command command, String text) {
+        listener.onCommandMatched(command);
+        mainHandler.post(() -> {
+            partialRenderer.cancelPending();
+            listener.onCommand(command, text);
+        });
+    }
+
+    // --- Metrics ---
+    int getQueueDepth() {
+        return worker.getQueue().size();
+    }
+
+    int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    String metricsSummary() {
+        return "submitted=" + getSubmittedCount() + " dropped=" + getDroppedCount()
+                + " queueDepth=" + getQueueDepth() + " maxQueueDepth=" + getMaxQueueDepth();
+    }
+
+    /**
+     * Lets the worker finish what is queued, so the last final result is still stored, and
+     * closes the transcript store from the worker after it. Waits a little for that.
+     */
+    void shutdown() {
+        shutDown = true;
+        if (!worker.isShutdown()) worker.execute(this::closeTranscriptStore);
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Pipeline worker still draining; it closes the transcript store when done.");
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted while waiting for pipeline worker termination.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,686 @@
+package org.vosk.demo;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.media.AudioManager;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+import android.view.KeyEvent;
+
+import org.vosk.LibVosk;
+import org.vosk.LogLevel;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+import org.vosk.android.RecognitionListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived owner of everything recognition needs: the {@link ModelRegistry}, the pooled
+ * {@link Recognizer}s, the shared {@link AudioCaptureEngine}, the command pipeline and the
+ * transcript.
+ * <p>
+ * {@link VoskActivity} binds to it and is only a view: it subscribes as the {@link Client}
+ * while it exists and issues start/stop/pause requests. Rotation, backgrounding and screen-off
+ * therefore neither reload the model nor interrupt listening. The activity also starts the
+ * service, so it survives the unbind/rebind of a configuration change; while listening it
+ * runs in the foreground with a notification that can stop it. Commands keep running their
+ * side effects (media keys) when no activity is attached.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class RecognitionService extends Service implements
+        RecognitionListener, RecognitionPipeline.Listener, PartialTextRenderer.Target {
+
+    private static final String TAG = "RecognitionService";
+
+    /** Receives recognition output on the main thread while an activity is attached. */
+    interface Client {
+        void onModelLoaded();
+
+        void onModelError(IOException exception);
+
+        void onPartialText(String text);
+
+        void onCommand(CommandMatcher.Command command, String text);
+
+        void onFinalText(String text);
+
+        /** Listening stopped because of the error. */
+        void onRecognitionError(Exception e);
+
+        /** Listening stopped from the notification. */
+        void onListeningStopped();
+
+        /** Lines were added to {@link #getTranscriptLog}. */
+        void onTranscriptChanged();
+    }
+
+    /** Receives transcript history search results on the main thread. */
+    interface SearchCallback {
+        /** One line per hit, most recent first: date, time and the utterance's text. */
+        void onSearchResults(String query, List<String> lines);
+    }
+
+    /** Local binder; the service always runs in the app's process. */
+    class LocalBinder extends Binder {
+        RecognitionService getService() {
+            return RecognitionService.this;
+        }
+    }
+
+    private static final String ACTION_STOP_LISTENING = "org.vosk.demo.action.STOP_LISTENING";
+    private static final String NOTIFICATION_CHANNEL_ID = "recognition";
+    private static final int NOTIFICATION_ID = 1;
+
+    // --- Vosk ---
+    private static final String DEFAULT_MODEL = "vosk-model-small-fa-0.42";
+    private static final long MODEL_MEMORY_BUDGET_KB = 256 * 1024; // Unused models beyond this are closed
+    static final int AUDIO_SAMPLE_RATE = 16000;
+    private ModelRegistry modelRegistry;
+    private String modelName = DEFAULT_MODEL;
+    private Model model; // Holds a registry reference while set
+    private String requestedModelName; // Loading, to replace the current model when ready
+    private final RecognizerManager recognizerManager = new RecognizerManager((float) AUDIO_SAMPLE_RATE);
+    private RecognitionSession recognitionSession; // Holds recognizers borrowed from recognizerManager
+    private boolean paused;
+    private boolean commandMode; // Restricts the recognizer to the command grammar
+
+    // --- Audio Capture (one AudioRecord shared by recognition and calibration) ---
+    private static final int AUDIO_CHUNK_SAMPLES = AUDIO_SAMPLE_RATE / 10; // 100 ms
+    private final RecognitionMetrics metrics = new RecognitionMetrics("START", "READY", "CALIBRATING", "MIC", "DONE", "ERROR");
+    private final AudioCaptureEngine captureEngine = new AudioCaptureEngine(AUDIO_SAMPLE_RATE, AUDIO_CHUNK_SAMPLES, metrics);
+    private static final boolean METRICS_DUMP_TO_FILE = false; // Appends snapshots to files/metrics.log
+    private static final long METRICS_DUMP_INTERVAL_MS = 10_000;
+    private static final String METRICS_DUMP_FILE = "metrics.log";
+
+    // --- Audio Recording (the audio behind the transcript, for re-decoding and debugging) ---
+    private static final boolean AUDIO_RECORDING_ENABLED = false; // Segments go to files/recordings
+    private static final String AUDIO_RECORDING_DIR = "recordings";
+    private static final SegmentedAudioWriter.Format AUDIO_RECORDING_FORMAT = SegmentedAudioWriter.Format.LOSSLESS;
+    private static final long AUDIO_RECORDING_SEGMENT_MS = 5 * 60_000;
+    private AudioRecorder audioRecorder; // Null unless AUDIO_RECORDING_ENABLED
+
+    // --- Voice Activity Gate (skips decoding silence, relative to the calibrated noise floor) ---
+    private static final boolean VAD_ENABLED = true;
+    private static final int VAD_HANGOVER_MS = 1000; // Covers the recognizer's endpoint trailing-silence rules
+    private static final int VAD_PRE_ROLL_MS = 300;
+
+    // --- Wake Word (dictation only decodes after it; a grammar-limited spotter listens meanwhile) ---
+    private static final boolean WAKE_WORD_GATING = true;
+    private static final String WAKE_WORD = "ماشین";
+    private static final int WAKE_PRE_ROLL_MS = 1500; // Covers the wake word and the spotter's reaction time
+    private static final int WAKE_ACTIVE_TIMEOUT_MS = 5000; // Back to spotting after this long without words
+
+    // --- Calibration / Noise Floor ---
+    private static final String PREFS_NAME = "VoskDemoPrefs";
+    private static final String PREF_CALIBRATION_RMS = "calibrationRms";
+    private double calibratedVolumeRms = -1.0;
+    // Follows the noise floor while listening and keeps the stored calibration current.
+    private final NoiseFloorTracker noiseFloorTracker = new NoiseFloorTracker();
+    private static final long NOISE_FLOOR_SAVE_INTERVAL_MS = 30_000;
+    private final Runnable saveNoiseFloorTask = new Runnable() {
+        @Override
+        public void run() {
+            persistNoiseFloor();
+            if (recognitionSession != null) mainHandler.postDelayed(this, NOISE_FLOOR_SAVE_INTERVAL_MS);
+        }
+    };
+
+    // --- Transcript Log ---
+    private static final int TRANSCRIPT_MAX_LINES = 500;
+    private static final boolean TRANSCRIPT_SPILL_TO_DISK = true; // Older lines go to files/transcript.log
+    private static final String TRANSCRIPT_SPILL_FILE = "transcript.log";
+    private static final boolean TRANSCRIPT_STORE_ENABLED = true; // Words with times and confidences
+    private static final String TRANSCRIPT_STORE_DIR = "transcripts";
+    private TranscriptLog transcriptLog;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "TranscriptSearch"));
+    private TranscriptStore.Snapshot searchSnapshot; // Search thread only; reopened once the index is ahead
+
+    // --- Commands ---
+    private RecognitionPipeline recognitionPipeline;
+    private PartialTextRenderer partialRenderer;
+    private AudioManager audioManager;
+
+    private final IBinder binder = new LocalBinder();
+    private Handler mainHandler;
+    private Client client;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mainHandler = new Handler(Looper.getMainLooper());
+        partialRenderer = new PartialTextRenderer(mainHandler, this, metrics);
+        CommandMatcher commandMatcher = createCommandMatcher();
+        recognizerManager.setGrammar(RecognizerManager.Kind.COMMAND, commandMatcher.grammarJson());
+        if (WAKE_WORD_GATING) {
+            recognizerManager.setGrammar(RecognizerManager.Kind.WAKE_WORD, WakeWordSpotter.grammarJson(WAKE_WORD));
+        }
+        recognitionPipeline = new RecognitionPipeline(mainHandler, commandMatcher, this, partialRenderer, metrics,
+                TRANSCRIPT_STORE_ENABLED ? new File(getFilesDir(), TRANSCRIPT_STORE_DIR) : null);
+        if (METRICS_DUMP_TO_FILE) {
+            metrics.startDump(new File(getFilesDir(), METRICS_DUMP_FILE), METRICS_DUMP_INTERVAL_MS);
+        }
+        if (AUDIO_RECORDING_ENABLED) {
+            audioRecorder = new AudioRecorder(new File(getFilesDir(), AUDIO_RECORDING_DIR), AUDIO_SAMPLE_RATE,
+                    AUDIO_CHUNK_SAMPLES, AUDIO_RECORDING_FORMAT, AUDIO_RECORDING_SEGMENT_MS, metrics);
+        }
+        transcriptLog = new TranscriptLog(TRANSCRIPT_MAX_LINES,
+                TRANSCRIPT_SPILL_TO_DISK ? new File(getFilesDir(), TRANSCRIPT_SPILL_FILE) : null);
+        modelRegistry = new ModelRegistry(this, "model", MODEL_MEMORY_BUDGET_KB);
+        audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        LibVosk.setLogLevel(LogLevel.INFO); // Vosk log level
+        loadCalibration();
+        Log.i(TAG, "Recognition service created.");
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP_LISTENING.equals(intent.getAction())) {
+            Log.i(TAG, "Stop requested from the notification.");
+            if (recognitionSession != null) {
+                stopListening();
+                if (client != null) client.onListeningStopped();
+            }
+            if (client == null) stopSelf();
+        }
+        return START_NOT_STICKY;
+    }
+
+    /** Attaches the activity that shows results, or detaches it with null. */
+    void setClient(Client client) {
+        this.client = client;
+    }
+
+    // --- Model ---
+    /** Loads the current model once per service lifetime; the client hears about it either way. */
+    void loadModel() {
+        if (model != null) {
+            if (client != null) client.onModelLoaded();
+            return;
+        }
+        setModel(modelName);
+    }
+
+    /**
+     * Switches to the model in asset {@code name}, e.g. another language. The current model
+     * keeps decoding until the new one is loaded; a running session then moves over to it
+     * without the microphone being reopened. The client hears {@code onModelLoaded} again.
+     */
+    void setModel(String name) {
+        if (name.equals(requestedModelName) || (requestedModelName == null && model != null && name.equals(modelName))) {
+            return;
+        }
+        requestedModelName = name;
+        Log.i(TAG, "Loading model " + name);
+        modelRegistry.acquire(name, new ModelRegistry.Callback() {
+            @Override
+            public void onModelLoaded(String loadedName, Model loaded, ModelCache.Timings timings) {
+                Log.i(TAG, "Model " + loadedName + " ready. Cold start: " + timings);
+                mainHandler.post(() -> swapModel(loadedName, loaded));
+            }
+
+            @Override
+            public void onModelError(String failedName, IOException exception) {
+                Log.e(TAG, "Model " + failedName + " failed to load", exception);
+                mainHandler.post(() -> {
+                    if (!failedName.equals(requestedModelName)) return;
+                    requestedModelName = null;
+                    if (client != null) client.onModelError(exception);
+                });
+            }
+        });
+    }
+
+    private void swapModel(String name, Model loaded) {
+        if (!name.equals(requestedModelName)) {
+            modelRegistry.release(loaded); // Superseded by a later request
+            return;
+        }
+        requestedModelName = null;
+        Model previous = model;
+        model = loaded;
+        modelName = name;
+        recognizerManager.prewarm(loaded);
+        if (recognitionSession != null && loaded != previous) {
+            try {
+                restartRecognitionSession();
+            } catch (IOException e) {
+                onError(e); // Stops listening
+            }
+        }
+        modelRegistry.release(previous);
+        Log.i(TAG, "Models:\n" + modelRegistry.summary());
+        if (client != null) client.onModelLoaded();
+    }
+
+    Model getModel() {
+        return model;
+    }
+
+    String getModelName() {
+        return modelName;
+    }
+
+    /** Models that {@link #setModel} can switch to. */
+    List<String> getAvailableModels() {
+        return modelRegistry.availableModels();
+    }
+
+    /**
+     * Returns the current model with a reference taken for a consumer that may outlive a model
+     * swap, or null if none is loaded; pair with {@link #releaseModel}.
+     */
+    Model retainModel() {
+        if (model == null) return null;
+        modelRegistry.retain(model);
+        return model;
+    }
+
+    void releaseModel(Model retained) {
+        modelRegistry.release(retained);
+    }
+
+    // --- Listening ---
+    boolean isListening() {
+        return recognitionSession != null;
+    }
+
+    /** Starts decoding the microphone and moves the service to the foreground. */
+    void startListening() throws IOException {
+        if (recognitionSession != null) return;
+        if (model == null) throw new IOException("Model not loaded");
+        paused = false;
+        startRecognitionSession();
+        if (audioRecorder != null) {
+            audioRecorder.setPaused(false);
+            audioRecorder.start(captureEngine);
+        }
+        recognitionPipeline.setActive(true);
+        mainHandler.postDelayed(saveNoiseFloorTask, NOISE_FLOOR_SAVE_INTERVAL_MS);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, buildNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+        } else {
+            startForeground(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    /** Stops listening; the final result is still delivered unless paused. */
+    void stopListening() {
+        if (recognitionSession == null) return;
+        recognitionSession.stop();
+        recognitionSession = null;
+        if (audioRecorder != null) audioRecorder.stop();
+        paused = false;
+        recognitionPipeline.setActive(false);
+        mainHandler.removeCallbacks(saveNoiseFloorTask);
+        persistNoiseFloor();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+        } else {
+            stopForeground(true);
+        }
+        Log.i(TAG, "Recognition metrics:\n" + metrics.snapshot());
+        Log.i(TAG, "Audio capture metrics: " + captureEngine.metricsSummary());
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    void setPaused(boolean paused) {
+        if (recognitionSession == null) return;
+        this.paused = paused;
+        recognitionSession.setPause(paused);
+        if (audioRecorder != null) audioRecorder.setPaused(paused);
+        recognitionPipeline.setActive(!paused);
+        Log.i(TAG, "Recognition pause set to: " + paused);
+    }
+
+    boolean isCommandMode() {
+        return commandMode;
+    }
+
+    // Switches between dictation and the grammar-constrained command recognizer. While listening,
+    // the session is swapped for one of the other kind on the same capture stream.
+    void setCommandMode(boolean enabled) throws IOException {
+        if (commandMode == enabled) return;
+        commandMode = enabled;
+        Log.i(TAG, "Command mode " + (enabled ? "on" : "off"));
+        if (recognitionSession == null) return;
+        try {
+            restartRecognitionSession();
+        } catch (IOException e) {
+            stopListening();
+            throw e;
+        }
+    }
+
+    // Starts a session for the current mode and model before stopping the running one, so the
+    // capture engine never loses its last subscriber and the microphone stays open.
+    private void restartRecognitionSession() throws IOException {
+        RecognitionSession previous = recognitionSession;
+        try {
+            startRecognitionSession();
+        } finally {
+            previous.stop();
+        }
+    }
+
+    // Borrows a recognizer of the current mode and starts decoding the shared capture stream.
+    // Dictation sits behind the wake-word spotter; the command grammar is cheap enough without.
+    private void startRecognitionSession() throws IOException {
+        recognizerManager.markSessionStart();
+        final RecognizerManager.Kind kind = commandMode ? RecognizerManager.Kind.COMMAND : RecognizerManager.Kind.DICTATION;
+        final Recognizer recognizer = recognizerManager.acquire(kind);
+        final Model sessionModel = model;
+        final Recognizer spotterRecognizer;
+        try {
+            spotterRecognizer = WAKE_WORD_GATING && !commandMode
+                    ? recognizerManager.acquire(RecognizerManager.Kind.WAKE_WORD) : null;
+        } catch (IOException e) {
+            recognizerManager.release(recognizer, sessionModel, kind);
+            throw e;
+        }
+        modelRegistry.retain(sessionModel); // Until the session has delivered its final result
+        WakeWordSpotter spotter = null;
+        if (spotterRecognizer != null) {
+            spotter = new WakeWordSpotter(spotterRecognizer, WAKE_WORD, AUDIO_SAMPLE_RATE, AUDIO_CHUNK_SAMPLES,
+                    WAKE_PRE_ROLL_MS, WAKE_ACTIVE_TIMEOUT_MS);
+        }
+        VoiceActivityGate gate = null;
+        if (VAD_ENABLED) {
+            gate = new VoiceActivityGate(AUDIO_SAMPLE_RATE, AUDIO_CHUNK_SAMPLES, VAD_HANGOVER_MS,
+                    VAD_PRE_ROLL_MS, VoiceActivityGate.DEFAULT_THRESHOLD_FACTOR, VoiceActivityGate.DEFAULT_MIN_THRESHOLD);
+            gate.setNoiseFloorTracker(noiseFloorTracker); // Passes everything until a floor is known
+        }
+        recognitionSession = new RecognitionSession(recognizer, gate, spotter, this, mainHandler, metrics, () -> {
+            recognizerManager.release(recognizer, sessionModel, kind);
+            recognizerManager.release(spotterRecognizer, sessionModel, RecognizerManager.Kind.WAKE_WORD);
+            modelRegistry.release(sessionModel);
+        });
+        recognitionSession.setPause(paused);
+        recognitionSession.start(captureEngine);
+    }
+
+    private Notification buildNotification() {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.notification_channel_name), NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, NOTIFICATION_CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        int flags = Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0;
+        PendingIntent open = PendingIntent.getActivity(this, 0, new Intent(this, VoskActivity.class), flags);
+        PendingIntent stop = PendingIntent.getService(this, 1,
+                new Intent(this, RecognitionService.class).setAction(ACTION_STOP_LISTENING), flags);
+        return builder.setSmallIcon(R.drawable.icon)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.notification_listening))
+                .setOngoing(true)
+                .setContentIntent(open)
+                .addAction(0, getString(R.string.stop_microphone), stop)
+                .build();
+    }
+
+    // --- Calibration ---
+    /** The shared capture stream, for short-lived consumers such as calibration. */
+    AudioCaptureEngine getCaptureEngine() {
+        return captureEngine;
+    }
+
+    double getCalibratedVolumeRms() {
+        return calibratedVolumeRms;
+    }
+
+    /** Stores a calibrated noise floor (or -1 for none) and restarts noise tracking from it. */
+    void setCalibration(double rmsValue) {
+        saveCalibration(rmsValue);
+        if (rmsValue > 0) noiseFloorTracker.seed(rmsValue);
+    }
+
+    private void loadCalibration() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        calibratedVolumeRms = prefs.getFloat(PREF_CALIBRATION_RMS, -1.0f);
+        Log.i(TAG, "Loaded calibration RMS: " + calibratedVolumeRms);
+        noiseFloorTracker.seed(calibratedVolumeRms);
+    }
+
+    private void saveCalibration(double rmsValue) {
+        calibratedVolumeRms = rmsValue;
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putFloat(PREF_CALIBRATION_RMS, (float) rmsValue);
+        editor.apply();
+        Log.i(TAG, "Saved calibration RMS: " + rmsValue);
+    }
+
+    // Stores the tracked noise floor once it has moved noticeably (~1 dB) from the saved value.
+    private void persistNoiseFloor() {
+        double noiseFloor = noiseFloorTracker.getNoiseFloor();
+        if (noiseFloor > 0 && Math.abs(noiseFloor - calibratedVolumeRms) > 0.1 * noiseFloor) {
+            saveCalibration(noiseFloor);
+        }
+    }
+
+    // --- Shared state for the client ---
+    RecognitionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** The transcript outlives the activity; mutate it on the main thread only. */
+    TranscriptLog getTranscriptLog() {
+        return transcriptLog;
+    }
+
+    /**
+     * Searches the transcript history for a phrase; a trailing {@code *} makes its last word a
+     * prefix. See {@link TranscriptIndex#search}.
+     */
+    void searchTranscripts(String query, int limit, SearchCallback callback) {
+        final File storeDir = new File(getFilesDir(), TRANSCRIPT_STORE_DIR);
+        final TranscriptIndex index = recognitionPipeline.getTranscriptIndex();
+        searchExecutor.execute(() -> {
+            List<String> lines = Collections.emptyList();
+            try {
+                long start = System.nanoTime();
+                List<TranscriptIndex.Hit> hits = index.search(query, limit);
+                if (!hits.isEmpty()) {
+                    int needed = hits.get(0).position + hits.get(0).length; // The newest hit comes first
+                    if (searchSnapshot == null || searchSnapshot.wordCount() < needed) {
+                        searchSnapshot = TranscriptStore.Snapshot.open(storeDir);
+                    }
+                    lines = new ArrayList<>(hits.size());
+                    StringBuilder line = new StringBuilder();
+                    for (TranscriptIndex.Hit hit : hits) {
+                        if (hit.position + hit.length > searchSnapshot.wordCount()) continue;
+                        line.setLength(0);
+                        line.append(String.format(Locale.ROOT, "%tF %<tR  ", searchSnapshot.utteranceTimeMillis(hit.utterance)));
+                        searchSnapshot.appendText(hit.utterance, line);
+                        lines.add(line.toString());
+                    }
+                }
+                Log.d(TAG, "Transcript search \"" + query + "\": " + hits.size() + " hits in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+            } catch (IOException e) {
+                Log.e(TAG, "Transcript search failed", e);
+            }
+            final List<String> results = lines;
+            mainHandler.post(() -> callback.onSearchResults(query, results));
+        });
+    }
+
+    private void appendTranscript(String line) {
+        transcriptLog.add(line);
+        if (client != null) client.onTranscriptChanged();
+    }
+
+    // --- RecognitionListener Implementation ---
+    @Override
+    public void onResult(String hypothesis) {
+        recognitionPipeline.submitResult(hypothesis); // Ends the utterance for the command dispatcher
+    }
+
+    @Override
+    public void onFinalResult(String hypothesis) {
+        recognitionPipeline.submitFinal(hypothesis);
+    }
+
+    @Override
+    public void onPartialResult(String hypothesis) {
+        recognizerManager.onPartialResult();
+        recognitionPipeline.submitPartial(hypothesis);
+    }
+
+    @Override
+    public void onError(Exception e) {
+        Log.e(TAG, "Recognition Error", e);
+        stopListening();
+        if (client != null) {
+            client.onRecognitionError(e);
+        } else {
+            stopSelf(); // Nobody left to restart listening
+        }
+    }
+
+    @Override
+    public void onTimeout() {
+        Log.w(TAG, "Recognition Timeout (Silence Detected)");
+        if (recognitionSession != null) appendTranscript(getString(R.string.timeout_message));
+    }
+
+    // --- RecognitionPipeline.Listener Implementation ---
+    @Override
+    public void onCommandMatched(CommandMatcher.Command command) {
+        // Runs on the pipeline worker thread.
+        Log.d(TAG, "Partial CMD Matched: " + command.getName());
+        if (command.getKeyCode() != KeyEvent.KEYCODE_UNKNOWN) {
+            sendMediaKeyEvent(command.getKeyCode());
+        }
+    }
+
+    @Override
+    public void onCommand(CommandMatcher.Command command, String partialText) {
+        if (recognitionSession == null || paused) {
+            Log.w(TAG, "Command result received but not actively listening.");
+            return;
+        }
+        appendTranscript("فرمان: " + partialText);
+        if (client != null) client.onCommand(command, partialText);
+    }
+
+    @Override
+    public void onFinalText(String extractedText) {
+        if (!extractedText.isEmpty()) {
+            appendTranscript(getString(R.string.final_result_prefix) + extractedText);
+        } else {
+            Log.d(TAG, "Empty final result.");
+        }
+        if (client != null) client.onFinalText(extractedText);
+    }
+
+    // --- PartialTextRenderer.Target Implementation ---
+    @Override
+    public void renderPartial(String partialText) {
+        if (recognitionSession == null || paused) {
+            Log.v(TAG, "Partial result received while not listening, ignoring: " + partialText);
+            return;
+        }
+        if (client != null) client.onPartialText(partialText);
+    }
+
+    // --- Command Table ---
+    // Order is priority: the first command whose phrases all match wins.
+    static CommandMatcher createCommandMatcher() {
+        return CommandMatcher.builder()
+                .add(CommandMatcher.Command.named("Hello Machine")
+                        .allOf("سلام", "ماشین")
+                        .response(R.string.response_hello_sir))
+                .add(CommandMatcher.Command.named("Machine Wake Word")
+                        .endsWith("ماشین")
+                        .maxLength(10)
+                        .response(R.string.response_yes_sir))
+                .add(CommandMatcher.Command.named("Play/Pause Music")
+                        .anyOf("پخش موسیقی", "توقف موسیقی")
+                        .response(R.string.response_play_music)
+                        .keyCode(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE))
+                .add(CommandMatcher.Command.named("Next Song")
+                        .anyOf("آهنگ بعدی")
+                        .response(R.string.response_next_song)
+                        .keyCode(KeyEvent.KEYCODE_MEDIA_NEXT))
+                .add(CommandMatcher.Command.named("Previous Song")
+                        .anyOf("آهنگ قبلی")
+                        .response(R.string.response_previous_song)
+                        .keyCode(KeyEvent.KEYCODE_MEDIA_PREVIOUS))
+                .fuzzy(true)
+                .build();
+    }
+
+    // --- Media Key Control ---
+    private void sendMediaKeyEvent(int keyCode) {
+        if (audioManager == null) {
+            Log.e(TAG, "AudioManager not initialized. Cannot send media key.");
+            return;
+        }
+        Log.d(TAG, "Dispatching media key event: " + KeyEvent.keyCodeToString(keyCode));
+        KeyEvent downEvent = new KeyEvent(KeyEvent.ACTION_DOWN, keyCode);
+        audioManager.dispatchMediaKeyEvent(downEvent);
+        KeyEvent upEvent = new KeyEvent(KeyEvent.ACTION_UP, keyCode);
+        audioManager.dispatchMediaKeyEvent(upEvent);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        Log.d(TAG, "onDestroy - Shutting down resources.");
+        client = null;
+        if (recognitionSession != null) {
+            Log.w(TAG, "onDestroy: Recognition session was still running, stopping now.");
+            stopListening();
+        }
+        recognizerManager.shutdown();
+        Log.i(TAG, "Models:\n" + modelRegistry.summary());
+        modelRegistry.release(model);
+        modelRegistry.shutdown();
+
+        recognitionPipeline.shutdown();
+        searchExecutor.shutdownNow();
+        partialRenderer.shutdown();
+
+        metrics.stopDump();
+        if (metrics.getDumpError() != null) {
+            Log.w(TAG, "Metrics dump stopped early", metrics.getDumpError());
+        }
+        captureEngine.shutdown();
+        model = null;
+        transcriptLog.close();
+        mainHandler.removeCallbacksAndMessages(null);
+        Log.i(TAG, "onDestroy finished.");
+    }
+}
@@ -0,0 +1,143 @@
+package org.vosk.demo;
+
+import android.os.Handler;
+import android.util.Log;
+
+import org.vosk.Recognizer;
+import org.vosk.android.RecognitionListener;
+
+import java.io.IOException;
+
+/**
+ * Feeds captured audio to a {@link Recognizer} and reports results to a
+ * {@link RecognitionListener} on the main thread, the way {@code SpeechService} does, but as a
+ * consumer of the shared {@link AudioCaptureEngine} instead of owning its own microphone.
+ * <p>
+ * An optional {@link VoiceActivityGate} keeps silence away from the recognizer; skipped
+ * chunks cost one RMS pass instead of a decode. An optional {@link WakeWordSpotter} behind it
+ * keeps speech away from the recognizer too until the wake word is heard, and resets the
+ * recognizer whenever it goes back to sleep.
+ */
+class RecognitionSession implements AudioCaptureEngine.Consumer {
+
+    private static final String TAG = "RecognitionSession";
+
+    private final Recognizer recognizer;
+    private final RecognitionListener listener;
+    private final Handler mainHandler;
+    private final Runnable onFinished;
+    private final RecognitionMetrics metrics;
+    private final VoiceActivityGate gate; // Null to decode every chunk
+    private final WakeWordSpotter spotter; // Null to decode all speech
+    private final VoiceActivityGate.Sink decoder;
+    private AudioCaptureEngine engine;
+    private AudioCaptureEngine.Subscription subscription;
+    private volatile boolean paused;
+
+    /**
+     * @param gate       voice activity gate, or null to decode every chunk
+     * @param spotter    wake-word spotter, or null to decode all speech
+     * @param onFinished run on the session thread once the recognizers are no longer used
+     */
+    RecognitionSession(Recognizer recognizer, VoiceActivityGate gate, WakeWordSpotter spotter,
+                       RecognitionListener listener, Handler mainHandler, RecognitionMetrics metrics,
+                       Runnable onFinished) {
+        this.recognizer = recognizer;
+        this.gate = gate;
+        this.spotter = spotter;
+        this.decoder = spotter != null ? this::spot : this::decode;
+        this.listener = listener;
+        this.mainHandler = mainHandler;
+        this.onFinished = onFinished;
+        this.metrics = metrics;
+    }
+
+    void start(AudioCaptureEngine engine) {
+        this.engine = engine;
+        this.subscription = engine.subscribe("recognizer", this);
+    }
+
+    /** Stops listening; the final result is delivered unless paused. */
+    void stop() {
+        if (subscription != null) {
+            engine.unsubscribe(subscription);
+            subscription = null;
+        }
+    }
+
+    void setPause(boolean paused) {
+        this.paused = paused;
+    }
+
+    @Override
+    public void onAudio(short[] pcm, int length) {
+        if (paused) return;
+        if (gate != null) {
+            if (!gate.process(pcm, length, decoder) && spotter != null) idle(length);
+        } else {
+            decoder.accept(pcm, length);
+        }
+    }
+
+    private void spot(short[] pcm, int length) {
+        boolean wasAwake = spotter.isAwake();
+        spotter.process(pcm, length, this::decode);
+        if (!wasAwake && spotter.isAwake()) {
+            metrics.increment(RecognitionMetrics.Counter.WAKE_UPS);
+        } else if (wasAwake && !spotter.isAwake()) {
+            sleep();
+        }
+    }
+
+    private void idle(int length) {
+        if (!spotter.isAwake()) return;
+        spotter.idle(length);
+        if (!spotter.isAwake()) sleep();
+    }
+
+    // The recognizer heard no words for the whole active timeout, so there is nothing to lose.
+    private void sleep() {
+        recognizer.reset();
+        Log.d(TAG, "Wake-word spotter back to sleep: " + spotter.summary());
+    }
+
+    private void decode(short[] pcm, int length) {
+        long start = System.nanoTime();
+        if (recognizer.acceptWaveForm(pcm, length)) {
+            final String result = recognizer.getResult();
+            metrics.recordNanos(RecognitionMetrics.Timer.RECOGNIZER_ACCEPT, System.nanoTime() - start);
+            metrics.increment(RecognitionMetrics.Counter.RESULTS);
+            if (spotter != null) spotter.onHypothesis(result, true);
+            mainHandler.post(() -> listener.onResult(result));
+        } else {
+            final String partialResult = recognizer.getPartialResult();
+            metrics.recordNanos(RecognitionMetrics.Timer.RECOGNIZER_ACCEPT, System.nanoTime() - start);
+            metrics.increment(RecognitionMetrics.Counter.PARTIALS);
+            metrics.markPartialDecoded();
+            if (spotter != null) spotter.onHypothesis(partialResult, false);
+            mainHandler.post(() -> listener.onPartialResult(partialResult));
+        }
+        metrics.increment(RecognitionMetrics.Counter.CHUNKS_DECODED);
+    }
+
+    @Override
+    public void onCaptureError(IOException e) {
+        mainHandler.post(() -> listener.onError(e));
+    }
+
+    @Override
+    public void onStopped() {
+        if (gate != null) {
+            Log.i(TAG, "Voice activity gate: " + gate.summary());
+        }
+        if (spotter != null) {
+            Log.i(TAG, "Wake-word spotter: " + spotter.summary());
+        }
+        if (!paused) {
+            final String finalResult = recognizer.getFinalResult();
+            metrics.increment(RecognitionMetrics.Counter.FINAL_RESULTS);
+            mainHandler.post(() -> listener.onFinalResult(finalResult));
+        }
+        onFinished.run();
+    }
+}
@@ -0,0 +1,199 @@
+package org.vosk.demo;
+
+import android.util.Log;
+
+import org.vosk.Model;
+import org.vosk.Recognizer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps warm {@link Recognizer} instances so that starting to listen does not pay
+ * recognizer construction cost.
+ * <p>
+ * A recognizer is pre-warmed in the background as soon as the model is loaded. Sessions
+ * {@link #acquire} one and {@link #release} it when done; released recognizers are reset
+ * and kept for the next session instead of being thrown away. The manager also records
+ * start-to-first-partial latency per session.
+ * <p>
+ * Recognizers come in {@link Kind}s: free-form dictation, and grammar-constrained ones for the
+ * command vocabulary and the wake-word spotter. Each kind with a grammar set is pooled
+ * separately, so switching modes is just as cheap.
+ */
+class RecognizerManager {
+
+    private static final String TAG = "RecognizerManager";
+    private static final int MAX_IDLE = 2;
+
+    enum Kind {
+        /** Full vocabulary. */
+        DICTATION,
+        /** Restricted to the command grammar. */
+        COMMAND,
+        /** Restricted to the wake word; cheap enough to run all the time. */
+        WAKE_WORD
+    }
+
+    private final float sampleRate;
+    private final EnumMap<Kind, ArrayDeque<Recognizer>> idle = new EnumMap<>(Kind.class);
+    private final EnumMap<Kind, String> grammars = new EnumMap<>(Kind.class); // Guarded by this
+    private final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "RecognizerWarmup"));
+    private Model model;
+
+    private final LatencyHistogram firstPartialLatency = new LatencyHistogram();
+    private volatile long sessionStartNanos;
+
+    RecognizerManager(float sampleRate) {
+        this.sampleRate = sampleRate;
+        for (Kind kind : Kind.values()) idle.put(kind, new ArrayDeque<>());
+    }
+
+    /** Sets the Vosk grammar (JSON phrase array) for a constrained kind; call before {@link #prewarm}. */
+    synchronized void setGrammar(Kind kind, String grammarJson) {
+        if (kind == Kind.DICTATION) throw new IllegalArgumentException("Dictation has no grammar");
+        if (grammarJson.equals(grammars.get(kind))) return;
+        grammars.put(kind, grammarJson);
+        closeIdle(idle.get(kind));
+    }
+
+    /** Sets the model and builds one recognizer per available kind for it in the background. */
+    void prewarm(Model model) {
+        synchronized (this) {
+            if (this.model != model) {
+                closeIdleAll();
+                this.model = model;
+            }
+        }
+        for (Kind kind : Kind.values()) {
+            if (kind == Kind.DICTATION || hasGrammar(kind)) warmupExecutor.execute(() -> prewarm(model, kind));
+        }
+    }
+
+    private synchronized boolean hasGrammar(Kind kind) {
+        return grammars.containsKey(kind);
+    }
+
+    private void prewarm(Model model, Kind kind) {
+        try {
+            String grammar;
+            synchronized (this) {
+                grammar = grammars.get(kind);
+            }
+            long start = System.nanoTime();
+            Recognizer recognizer = build(model, kind, grammar);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (!offerIdle(model, kind, grammar, recognizer)) {
+                recognizer.close();
+                return;
+            }
+            Log.i(TAG, kind + " recognizer pre-warmed in " + elapsedMs + " ms");
+        } catch (IOException e) {
+            Log.e(TAG, "Recognizer pre-warm failed", e);
+        }
+    }
+
+    /** Returns a ready dictation recognizer for a new session. */
+    Recognizer acquire() throws IOException {
+        return acquire(Kind.DICTATION);
+    }
+
+    /** Returns a ready recognizer of {@code kind}, building one only if none is warm. */
+    Recognizer acquire(Kind kind) throws IOException {
+        Model current;
+        String grammar;
+        synchronized (this) {
+            grammar = grammars.get(kind);
+            if (kind != Kind.DICTATION && grammar == null) throw new IOException("No grammar set for " + kind);
+            ArrayDeque<Recognizer> pool = idle.get(kind);
+            Recognizer warm = pool.pollFirst();
+            if (warm != null) {
+                Log.d(TAG, "Using warm " + kind + " recognizer (" + pool.size() + " left idle)");
+                return warm;
+            }
+            current = model;
+        }
+        if (current == null) throw new IOException("Model not loaded");
+        Log.d(TAG, "No warm " + kind + " recognizer, building one");
+        return build(current, kind, grammar);
+    }
+
+    /** Resets a dictation recognizer whose session ended and keeps it warm for the next one. */
+    void release(Recognizer recognizer, Model owner) {
+        release(recognizer, owner, Kind.DICTATION);
+    }
+
+    /** Resets a recognizer whose session ended and keeps it warm for the next one. */
+    void release(Recognizer recognizer, Model owner, Kind kind) {
+        if (recognizer == null) return;
+        recognizer.reset();
+        String grammar;
+        synchronized (this) {
+            grammar = grammars.get(kind);
+        }
+        if (!offerIdle(owner, kind, grammar, recognizer)) recognizer.close();
+    }
+
+    private Recognizer build(Model model, Kind kind, String grammar) throws IOException {
+        Recognizer recognizer = grammar != null ? new Recognizer(model, sampleRate, grammar) : new Recognizer(model, sampleRate);
+        // Results carry result[] with per-word times and confidences for the transcript store;
+        // the spotter's results are only checked for the wake word.
+        if (kind != Kind.WAKE_WORD) recognizer.setWords(true);
+        return recognizer;
+    }
+
+    // A recognizer built for a grammar that has since changed is not kept.
+    private synchronized boolean offerIdle(Model owner, Kind kind, String grammar, Recognizer recognizer) {
+        ArrayDeque<Recognizer> pool = idle.get(kind);
+        if (owner != model || pool.size() >= MAX_IDLE) return false;
+        String current = grammars.get(kind);
+        if (current == null ? grammar != null : !current.equals(grammar)) return false;
+        pool.addLast(recognizer);
+        return true;
+    }
+
+    // --- Start-to-first-partial latency ---
+    void markSessionStart() {
+        sessionStartNanos = System.nanoTime();
+    }
+
+    /** Call for every partial; only the first one after {@link #markSessionStart} is recorded. */
+    void onPartialResult() {
+        long start = sessionStartNanos;
+        if (start == 0) return;
+        sessionStartNanos = 0;
+        long latencyNanos = System.nanoTime() - start;
+        firstPartialLatency.recordNanos(latencyNanos);
+        Log.i(TAG, "Start-to-first-partial: " + latencyNanos / 1_000_000 + " ms (" + firstPartialLatency.summary() + ")");
+    }
+
+    LatencyHistogram getFirstPartialLatency() {
+        return firstPartialLatency;
+    }
+
+    void shutdown() {
+        warmupExecutor.shutdownNow();
+        try {
+            warmupExecutor.awaitTermination(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeIdleAll();
+            model = null;
+        }
+    }
+
+    private void closeIdleAll() {
+        for (ArrayDeque<Recognizer> pool : idle.values()) closeIdle(pool);
+    }
+
+    private static void closeIdle(ArrayDeque<Recognizer> pool) {
+        Recognizer recognizer;
+        while ((recognizer = pool.pollFirst()) != null) recognizer.close();
+    }
+}
@@ -0,0 +1,262 @@
+package org.vosk.demo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a stream of 16 kHz mono PCM to a directory as a series of files of bounded length.
+ * <p>
+ * A segment is named after the wall-clock time of its first sample ({@code rec-<epoch ms>}),
+ * so the audio behind a {@link TranscriptStore} utterance can be found by time. Segments are
+ * either WAV or {@code .vla}: an 8-byte header (magic, sample rate) followed by
+ * {@link LosslessAudioCodec} frames. Either can be read back with {@link #readSegment}.
+ * <p>
+ * Output collects in one direct buffer and goes to the {@link FileChannel} a full buffer at a
+ * time, so every write is large and starts at a multiple of the buffer size. A WAV header is
+ * patched after each of these writes, and {@code .vla} frames carry their own lengths, so a
+ * crash loses at most the unwritten buffer.
+ * <p>
+ * This class has no Android dependencies and is not thread-safe.
+ */
+public final class SegmentedAudioWriter implements Closeable {
+
+    public enum Format {
+        WAV(".wav"),
+        LOSSLESS(".vla");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final String SEGMENT_PREFIX = "rec-";
+    private static final int VLA_MAGIC = 0x31414C56; // "VLA1"
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final int VLA_HEADER_BYTES = 8;
+    private static final int FRAME_SAMPLES = 4096; // Longer writes are split into frames of this size
+
+    private final File directory;
+    private final int sampleRate;
+    private final Format format;
+    private final long segmentSamples;
+    private final ByteBuffer buffer;
+    private final ByteBuffer headerPatch = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    private final LosslessAudioCodec codec = new LosslessAudioCodec();
+    private final byte[] scratch = new byte[LosslessAudioCodec.maxEncodedBytes(FRAME_SAMPLES)];
+    private final short[] silence = new short[FRAME_SAMPLES];
+
+    private RandomAccessFile file; // Null between segments
+    private FileChannel channel;
+    private File segmentFile;
+    private long segmentSampleCount;
+    private long segmentFileBytes; // Written to the channel
+
+    private long samplesWritten;
+    private long bytesWritten;
+    private long writeNanos;
+    private long encodeNanos;
+    private int segmentCount;
+
+    /**
+     * @param segmentMillis length after which the next write starts a new segment
+     * @param bufferBytes   size of each write, rounded up to a multiple of 4 kB
+     */
+    public SegmentedAudioWriter(File directory, int sampleRate, Format format, long segmentMillis, int bufferBytes) {
+        this.directory = directory;
+        this.sampleRate = sampleRate;
+        this.format = format;
+        this.segmentSamples = segmentMillis * sampleRate / 1000;
+        int size = Math.max(4096, (bufferBytes + 4095) & ~4095);
+        this.buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Appends {@code length} samples. {@code timeMillis} is the wall-clock time of the first
+     * one, used to name the segment if this write starts one.
+     */
+    public void write(short[] pcm, int length, long timeMillis) throws IOException {
+        if (file == null) openSegment(timeMillis);
+        for (int offset = 0; offset < length; offset += FRAME_SAMPLES) {
+            writeFrame(pcm, offset, Math.min(FRAME_SAMPLES, length - offset));
+        }
+        segmentSampleCount += length;
+        samplesWritten += length;
+        if (segmentSampleCount >= segmentSamples) endSegment();
+    }
+
+    /** Appends {@code samples} samples of silence, e.g. in place of audio that was dropped. */
+    public void writeSilence(int samples, long timeMillis) throws IOException {
+        for (int remaining = samples; remaining > 0; remaining -= FRAME_SAMPLES) {
+            write(silence, Math.min(FRAME_SAMPLES, remaining), timeMillis);
+        }
+    }
+
+    private void writeFrame(short[] pcm, int offset, int count) throws IOException {
+        long start = System.nanoTime();
+        int bytes;
+        if (format == Format.LOSSLESS) {
+            bytes = codec.encode(pcm, offset, count, scratch, 0);
+        } else {
+            for (int i = 0; i < count; i++) {
+                scratch[2 * i] = (byte) pcm[offset + i];
+                scratch[2 * i + 1] = (byte) (pcm[offset + i] >> 8);
+            }
+            bytes = 2 * count;
+        }
+        encodeNanos += System.nanoTime() - start;
+        put(scratch, bytes);
+    }
+
+    private void put(byte[] bytes, int length) throws IOException {
+        for (int offset = 0; offset < length; ) {
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+            if (!buffer.hasRemaining()) flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        long start = System.nanoTime();
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+        segmentFileBytes += bytes;
+        bytesWritten += bytes;
+        if (format == Format.WAV) patchWavHeader();
+        writeNanos += System.nanoTime() - start;
+    }
+
+    // RIFF and data chunk sizes, for what is on disk so far.
+    private void patchWavHeader() throws IOException {
+        long dataBytes = Math.max(0, segmentFileBytes - WAV_HEADER_BYTES);
+        patch(4, (int) (dataBytes + WAV_HEADER_BYTES - 8));
+        patch(40, (int) dataBytes);
+    }
+
+    private void patch(long position, int value) throws IOException {
+        headerPatch.clear();
+        headerPatch.putInt(0, value);
+        while (headerPatch.hasRemaining()) channel.write(headerPatch, position + headerPatch.position());
+    }
+
+    private void openSegment(long timeMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File target = new File(directory, SEGMENT_PREFIX + timeMillis + format.extension);
+        file = new RandomAccessFile(target, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        segmentFile = target;
+        segmentSampleCount = 0;
+        segmentFileBytes = 0;
+        buffer.clear();
+        if (format == Format.WAV) {
+            buffer.putInt(0x46464952).putInt(0).putInt(0x45564157); // "RIFF", size, "WAVE"
+            buffer.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1); // "fmt ", PCM, mono
+            buffer.putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+            buffer.putInt(0x61746164).putInt(0); // "data", size
+        } else {
+            buffer.putInt(VLA_MAGIC).putInt(sampleRate);
+        }
+        segmentCount++;
+    }
+
+    /** Finishes the current segment, if any; the next write starts a new one. */
+    public void endSegment() throws IOException {
+        if (file == null) return;
+        try {
+            if (buffer.position() > 0) flushBuffer();
+        } finally {
+            file.close();
+            file = null;
+            channel = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        endSegment();
+    }
+
+    // --- Stats ---
+    /** The segment being written, or the last one. */
+    public File getSegmentFile() {
+        return segmentFile;
+    }
+
+    public long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    /** Bytes handed to the channel; the current buffer is not counted until written. */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /** Time spent in channel writes, header patches included. */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    // --- Reading ---
+    /** Wall-clock time of a segment's first sample, from its name; -1 if it is not a segment. */
+    public static long startTimeMillis(File segment) {
+        String name = segment.getName();
+        int dot = name.lastIndexOf('.');
+        if (!name.startsWith(SEGMENT_PREFIX) || dot < 0) return -1;
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Reads a segment written by this class back into PCM; a torn last frame is ignored. */
+    public static short[] readSegment(File segment) throws IOException {
+        if (segment.getName().endsWith(Format.WAV.extension)) {
+            try (WavReader reader = WavReader.open(segment)) {
+                return reader.readAll();
+            }
+        }
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(segment, "r")) {
+            if (in.length() > Integer.MAX_VALUE) throw new IOException("Segment too large: " + segment);
+            bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < VLA_HEADER_BYTES || header.getInt(0) != VLA_MAGIC) {
+            throw new IOException("Not a recorder segment: " + segment);
+        }
+        int samples = 0;
+        int frameBytes;
+        for (int pos = VLA_HEADER_BYTES; (frameBytes = LosslessAudioCodec.frameBytes(bytes, pos, bytes.length)) > 0; pos += frameBytes) {
+            samples += LosslessAudioCodec.frameSamples(bytes, pos);
+        }
+        short[] pcm = new short[samples];
+        int decoded = 0;
+        for (int pos = VLA_HEADER_BYTES; decoded < samples; ) {
+            decoded += LosslessAudioCodec.decode(bytes, pos, pcm, decoded);
+            pos += LosslessAudioCodec.frameBytes(bytes, pos, bytes.length);
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,105 @@
+package org.vosk.demo;
+
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits long mono audio into segments at silences so they can be decoded independently.
+ * <p>
+ * The audio is scanned once in short frames. Frame RMS comes from {@link AudioStats}, and the
+ * noise floor is the quietest decile of frame levels. Once a segment has reached the target
+ * length, it is cut in the middle of the next pause of at least {@code minSilenceMs}. If no
+ * such pause comes before the maximum length, it is cut at the quietest frame in between, so
+ * no segment ever grows unbounded. Because cuts fall in silence, no word spans two segments.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public final class SilenceSegmenter {
+
+    private static final int FRAME_MS = 30;
+    private static final double THRESHOLD_FACTOR = 2.0;
+    private static final double MIN_THRESHOLD = VoiceActivityGate.DEFAULT_MIN_THRESHOLD;
+
+    private final int sampleRate;
+    private final int frameSamples;
+    private final int minSilenceFrames;
+    private final int targetFrames;
+    private final int maxFrames;
+
+    /** Defaults: 15 s target, 30 s maximum, pauses of 250 ms or more. */
+    public SilenceSegmenter(int sampleRate) {
+        this(sampleRate, 15_000, 30_000, 250);
+    }
+
+    public SilenceSegmenter(int sampleRate, int targetSegmentMs, int maxSegmentMs, int minSilenceMs) {
+        this.sampleRate = sampleRate;
+        this.frameSamples = sampleRate * FRAME_MS / 1000;
+        this.minSilenceFrames = Math.max(1, minSilenceMs / FRAME_MS);
+        this.targetFrames = Math.max(1, targetSegmentMs / FRAME_MS);
+        this.maxFrames = Math.max(targetFrames + 1, maxSegmentMs / FRAME_MS);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns segment boundaries in samples: {@code [0, cut1, ..., sampleCount]}, so segment
+     * {@code i} spans {@code [b[i], b[i + 1])}. Does not move the buffer's position.
+     */
+    public int[] segment(ShortBuffer samples) {
+        int sampleCount = samples.remaining();
+        int base = samples.position();
+        int frameCount = (sampleCount + frameSamples - 1) / frameSamples;
+        float[] levels = new float[frameCount];
+        short[] frame = new short[frameSamples];
+        AudioStats stats = new AudioStats();
+        ShortBuffer view = samples.duplicate();
+        for (int f = 0; f < frameCount; f++) {
+            int length = Math.min(frameSamples, sampleCount - f * frameSamples);
+            view.get(frame, 0, length);
+            levels[f] = (float) stats.process(frame, length);
+        }
+        samples.position(base);
+        double threshold = Math.max(MIN_THRESHOLD, stats.rmsPercentile(10) * THRESHOLD_FACTOR);
+
+        int[] cuts = new int[frameCount / targetFrames + 2];
+        int cutCount = 0;
+        cuts[cutCount++] = 0;
+        int segmentStart = 0;
+        int silenceStart = -1;
+        for (int f = 0; f < frameCount; f++) {
+            if (levels[f] < threshold) {
+                if (silenceStart < 0) silenceStart = f;
+            } else {
+                silenceStart = -1;
+            }
+
+            int cut = -1;
+            if (silenceStart >= 0 && f - silenceStart + 1 >= minSilenceFrames
+                    && silenceStart - segmentStart >= targetFrames) {
+                cut = silenceStart + minSilenceFrames / 2;
+            } else if (f - segmentStart + 1 >= maxFrames) {
+                cut = quietestFrame(levels, segmentStart + targetFrames, f + 1);
+            }
+            if (cut > segmentStart) {
+                if (cutCount == cuts.length - 1) cuts = Arrays.copyOf(cuts, cuts.length * 2);
+                cuts[cutCount++] = cut * frameSamples;
+                segmentStart = cut;
+                silenceStart = -1;
+            }
+        }
+        if (cuts[cutCount - 1] < sampleCount || cutCount == 1) {
+            cuts[cutCount++] = sampleCount;
+        }
+        return Arrays.copyOf(cuts, cutCount);
+    }
+
+    private static int quietestFrame(float[] levels, int from, int to) {
+        int quietest = from;
+        for (int f = from + 1; f < to; f++) {
+            if (levels[f] < levels[quietest]) quietest = f;
+        }
+        return quietest;
+    }
+}
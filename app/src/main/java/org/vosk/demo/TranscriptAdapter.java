@@ -0,0 +1,57 @@
+package org.vosk.demo;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * Renders a {@link TranscriptLog} through a recycling {@link android.widget.ListView}, so only
+ * the visible lines are laid out regardless of how long the transcript is.
+ */
+class TranscriptAdapter extends BaseAdapter {
+
+    private final TranscriptLog transcript;
+
+    TranscriptAdapter(TranscriptLog transcript) {
+        this.transcript = transcript;
+    }
+
+    /** Appends a line and refreshes the list. Main thread only. */
+    void add(String line) {
+        transcript.add(line);
+        notifyDataSetChanged();
+    }
+
+    /** Clears the in-memory lines and refreshes the list. Main thread only. */
+    void clear() {
+        transcript.clear();
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return transcript.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return transcript.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView lineView = (TextView) convertView;
+        if (lineView == null) {
+            lineView = (TextView) LayoutInflater.from(parent.getContext()).inflate(R.layout.transcript_line, parent, false);
+        }
+        lineView.setText(getItem(position));
+        return lineView;
+    }
+}
@@ -0,0 +1,260 @@
+package org.vosk.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Positional inverted index over the words of a {@link TranscriptStore}, for phrase and prefix
+ * search across the whole transcript history.
+ * <p>
+ * Positions are word indices in the store, so a hit can be replayed from a
+ * {@link TranscriptStore.Snapshot}. Words are indexed under a normalized term: the
+ * {@link PersianNormalizer} form with separators removed, so that spellings that differ only in
+ * Arabic/Persian code points, diacritics or the zero-width non-joiner are found alike. Every
+ * term has a sorted posting array of positions, and a forward array holds the term at each
+ * position; a phrase is found by walking the postings of its rarest word and checking the
+ * others through the forward array, without leaving the utterance.
+ * <p>
+ * The index is built from a snapshot with {@link #addAll} and then grown incrementally with
+ * {@link #startUtterance} and {@link #addWord} as results arrive, mirroring the store's
+ * appends. It lives in the heap (8 bytes per word) and is rebuilt on start rather than stored.
+ * <p>
+ * This class has no Android dependencies. It is thread-safe; searches and updates exclude each
+ * other.
+ */
+public final class TranscriptIndex {
+
+    /** A phrase occurrence: the utterance and the store position of its first word. */
+    public static final class Hit {
+        public final int utterance;
+        public final int position;
+        public final int length;
+
+        Hit(int utterance, int position, int length) {
+            this.utterance = utterance;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{utterance=" + utterance + ", position=" + position + ", length=" + length + "}";
+        }
+    }
+
+    private static final int NO_TERM = -1; // Words that normalize to nothing
+
+    // Terms, in order of first appearance; the sorted map serves prefix queries.
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final TreeMap<String, Integer> sortedTerms = new TreeMap<>();
+    private int[][] postings = new int[64][];
+    private int[] postingSizes = new int[64];
+    private int termCount;
+
+    private int[] forward = new int[1024]; // Term at each position
+    private int wordCount;
+    private int[] utteranceStarts = new int[64];
+    private int utteranceCount;
+
+    private int[] storeIdTerms = new int[256]; // Store dictionary ID to term, +1 (0 = not seen)
+    private final StringBuilder scratch = new StringBuilder();
+
+    // --- Building ---
+    /** Indexes the utterances of {@code snapshot} that are not indexed yet. */
+    public synchronized void addAll(TranscriptStore.Snapshot snapshot) {
+        for (int u = utteranceCount; u < snapshot.utteranceCount(); u++) {
+            int first = snapshot.utteranceFirstWord(u);
+            if (first != wordCount) throw new IllegalStateException("Index is not in step with the store at word " + wordCount);
+            startUtterance();
+            int end = first + snapshot.utteranceWordCount(u);
+            for (int i = first; i < end; i++) {
+                int id = snapshot.wordId(i);
+                addTerm(termOfStoreId(id, snapshot));
+            }
+        }
+    }
+
+    // Normalizes each distinct store word once.
+    private int termOfStoreId(int id, TranscriptStore.Snapshot snapshot) {
+        if (id < 0) return NO_TERM;
+        if (id >= storeIdTerms.length) storeIdTerms = Arrays.copyOf(storeIdTerms, Math.max(id + 1, storeIdTerms.length * 2));
+        int cached = storeIdTerms[id];
+        if (cached == 0) {
+            cached = termOf(snapshot.word(id), true) + 1;
+            storeIdTerms[id] = cached;
+        }
+        return cached - 1;
+    }
+
+    /** Starts a new utterance; phrases never span two. */
+    public synchronized void startUtterance() {
+        if (utteranceCount == utteranceStarts.length) utteranceStarts = Arrays.copyOf(utteranceStarts, utteranceCount * 2);
+        utteranceStarts[utteranceCount++] = wordCount;
+    }
+
+    /** Indexes the next word of the current utterance, at the next store position. */
+    public synchronized void addWord(CharSequence word) {
+        if (utteranceCount == 0) startUtterance();
+        addTerm(termOf(word, true));
+    }
+
+    private void addTerm(int term) {
+        if (wordCount == forward.length) forward = Arrays.copyOf(forward, wordCount * 2);
+        forward[wordCount] = term;
+        if (term != NO_TERM) {
+            int[] list = postings[term];
+            int size = postingSizes[term];
+            if (size == list.length) postings[term] = list = Arrays.copyOf(list, size * 2);
+            list[size] = wordCount;
+            postingSizes[term] = size + 1;
+        }
+        wordCount++;
+    }
+
+    // The term ID of a word, created if asked to; NO_TERM if it normalizes to nothing or is unknown.
+    private int termOf(CharSequence word, boolean create) {
+        String term = normalizeTerm(word);
+        if (term.isEmpty()) return NO_TERM;
+        Integer id = termIds.get(term);
+        if (id != null) return id;
+        if (!create) return NO_TERM;
+        if (termCount == postings.length) {
+            postings = Arrays.copyOf(postings, termCount * 2);
+            postingSizes = Arrays.copyOf(postingSizes, termCount * 2);
+        }
+        postings[termCount] = new int[4];
+        termIds.put(term, termCount);
+        sortedTerms.put(term, termCount);
+        return termCount++;
+    }
+
+    private String normalizeTerm(CharSequence word) {
+        scratch.setLength(0);
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (PersianNormalizer.isSeparator(c)) continue;
+            char n = PersianNormalizer.normalize(c);
+            if (n != 0) scratch.append(n);
+        }
+        return scratch.toString();
+    }
+
+    // --- Queries ---
+    /**
+     * Finds {@code query}, a phrase of whitespace-separated words, most recent first. A trailing
+     * {@code *} makes the last word a prefix. Returns at most {@code limit} hits.
+     */
+    public synchronized List<Hit> search(String query, int limit) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : query.trim().split("\\s+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        if (tokens.isEmpty() || limit <= 0) return Collections.emptyList();
+        boolean prefix = false;
+        String last = tokens.get(tokens.size() - 1);
+        if (last.endsWith("*")) {
+            prefix = true;
+            last = normalizeTerm(last.substring(0, last.length() - 1));
+            if (last.isEmpty()) {
+                tokens.remove(tokens.size() - 1);
+                prefix = false;
+                if (tokens.isEmpty()) return Collections.emptyList();
+            }
+        }
+
+        // Each word becomes the set of terms it accepts: one, or all with the prefix.
+        int length = tokens.size();
+        int[][] accepted = new int[length][];
+        long[] counts = new long[length];
+        for (int k = 0; k < length; k++) {
+            if (prefix && k == length - 1) {
+                SortedMap<String, Integer> range = sortedTerms.subMap(last, last + Character.MAX_VALUE);
+                accepted[k] = new int[range.size()];
+                int j = 0;
+                for (int term : range.values()) accepted[k][j++] = term;
+            } else {
+                int term = termOf(tokens.get(k), false);
+                accepted[k] = term == NO_TERM ? new int[0] : new int[]{term};
+            }
+            if (accepted[k].length == 0) return Collections.emptyList();
+            Arrays.sort(accepted[k]);
+            for (int term : accepted[k]) counts[k] += postingSizes[term];
+        }
+        int driver = 0;
+        for (int k = 1; k < length; k++) {
+            if (counts[k] < counts[driver]) driver = k;
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        if (accepted[driver].length == 1) {
+            // Postings are sorted: walk back from the newest and stop at the limit.
+            int term = accepted[driver][0];
+            int[] list = postings[term];
+            for (int i = postingSizes[term] - 1; i >= 0 && hits.size() < limit; i--) {
+                addIfPhrase(list[i] - driver, accepted, hits);
+            }
+            return hits;
+        }
+        // Several terms (a prefix): merge their postings newest first, each entry being
+        // (position << 32 | index into accepted[driver]) with its cursor in cursors.
+        int[] terms = accepted[driver];
+        int[] cursors = new int[terms.length];
+        PriorityQueue<Long> newest = new PriorityQueue<>(terms.length, Collections.reverseOrder());
+        for (int j = 0; j < terms.length; j++) {
+            cursors[j] = postingSizes[terms[j]] - 1;
+            if (cursors[j] >= 0) newest.add((long) postings[terms[j]][cursors[j]] << 32 | j);
+        }
+        while (!newest.isEmpty() && hits.size() < limit) {
+            long entry = newest.poll();
+            int j = (int) entry;
+            addIfPhrase((int) (entry >>> 32) - driver, accepted, hits);
+            if (--cursors[j] >= 0) newest.add((long) postings[terms[j]][cursors[j]] << 32 | j);
+        }
+        return hits;
+    }
+
+    private void addIfPhrase(int start, int[][] accepted, List<Hit> hits) {
+        int length = accepted.length;
+        if (start < 0 || start + length > wordCount) return;
+        int utterance = utteranceOf(start);
+        int utteranceEnd = utterance + 1 < utteranceCount ? utteranceStarts[utterance + 1] : wordCount;
+        if (start + length > utteranceEnd) return;
+        for (int k = 0; k < length; k++) {
+            int[] terms = accepted[k];
+            int term = forward[start + k];
+            if (terms.length == 1 ? terms[0] != term : Arrays.binarySearch(terms, term) < 0) return;
+        }
+        hits.add(new Hit(utterance, start, length));
+    }
+
+    private int utteranceOf(int position) {
+        int low = 0;
+        int high = utteranceCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (utteranceStarts[mid] <= position) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    // --- Stats ---
+    public synchronized int wordCount() {
+        return wordCount;
+    }
+
+    public synchronized int utteranceCount() {
+        return utteranceCount;
+    }
+
+    public synchronized int termCount() {
+        return termCount;
+    }
+}
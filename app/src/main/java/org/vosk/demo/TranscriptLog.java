@@ -0,0 +1,123 @@
+package org.vosk.demo;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-capacity transcript of recognition log lines.
+ * <p>
+ * Lines live in a ring buffer, so memory use is bounded by the line limit no matter how long
+ * the session runs. When a spill file is configured, lines evicted from the ring are
+ * appended to it on a background thread instead of being discarded.
+ * <p>
+ * Mutators must be called from a single thread (the main thread in the app).
+ */
+public final class TranscriptLog {
+
+    private static final String TAG = "TranscriptLog";
+
+    private final String[] lines;
+    private int head; // index of the oldest line
+    private int size;
+
+    private final File spillFile;
+    private final ExecutorService spillExecutor;
+    private Writer spillWriter; // spill thread only
+
+    /** Creates a log that simply drops the oldest line once {@code maxLines} is reached. */
+    public TranscriptLog(int maxLines) {
+        this(maxLines, null);
+    }
+
+    /** Creates a log that appends evicted lines to {@code spillFile}, or drops them if null. */
+    public TranscriptLog(int maxLines, File spillFile) {
+        if (maxLines <= 0) throw new IllegalArgumentException("maxLines must be positive: " + maxLines);
+        this.lines = new String[maxLines];
+        this.spillFile = spillFile;
+        this.spillExecutor = spillFile != null
+                ? Executors.newSingleThreadExecutor(r -> new Thread(r, "TranscriptSpill"))
+                : null;
+    }
+
+    public void add(String line) {
+        if (size == lines.length) {
+            String evicted = lines[head];
+            lines[head] = line;
+            head = (head + 1) % lines.length;
+            spill(evicted);
+        } else {
+            lines[(head + size) % lines.length] = line;
+            size++;
+        }
+    }
+
+    /** Returns line {@code index}, where 0 is the oldest line still held in memory. */
+    public String get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        return lines[(head + index) % lines.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return lines.length;
+    }
+
+    /** Removes all in-memory lines. Lines already spilled stay on disk. */
+    public void clear() {
+        for (int i = 0; i < size; i++) lines[(head + i) % lines.length] = null;
+        head = 0;
+        size = 0;
+    }
+
+    /** Flushes pending spills and releases the spill file. */
+    public void close() {
+        if (spillExecutor == null) return;
+        spillExecutor.execute(this::closeWriter);
+        spillExecutor.shutdown();
+        try {
+            spillExecutor.awaitTermination(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void spill(final String line) {
+        if (spillExecutor == null || spillExecutor.isShutdown()) return;
+        spillExecutor.execute(() -> {
+            try {
+                if (spillWriter == null) {
+                    spillWriter = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(spillFile, true), StandardCharsets.UTF_8), 16 * 1024);
+                }
+                spillWriter.write(line);
+                spillWriter.write('\n');
+                spillWriter.flush();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to spill transcript line to " + spillFile, e);
+            }
+        });
+    }
+
+    private void closeWriter() {
+        if (spillWriter == null) return;
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close transcript spill file " + spillFile, e);
+        }
+        spillWriter = null;
+    }
+}
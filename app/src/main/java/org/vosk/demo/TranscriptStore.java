@@ -0,0 +1,489 @@
+package org.vosk.demo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only, columnar store of recognized words with their timing and confidence.
+ * <p>
+ * A store is a directory of flat little-endian arrays, one file per column, each after an
+ * 8-byte header (magic, version):
+ * <ul>
+ * <li>{@code words.ids}, {@code words.start}, {@code words.end}, {@code words.conf}: one
+ * int word ID and three floats per word, in recognition order. Times are seconds from the
+ * start of the utterance's first word, which is therefore 0.</li>
+ * <li>{@code utterances}: 16 bytes per utterance: the wall-clock time it was recognized
+ * (epoch ms, long), its first word and its word count (ints). Recognition follows the last
+ * word's end by the endpointer's trailing silence.</li>
+ * <li>{@code dictionary}: the distinct words, each a 2-byte length and UTF-8 bytes; a word's
+ * ID is its position.</li>
+ * </ul>
+ * A word costs 16 bytes however long it is, and the columns can be memory-mapped as they are,
+ * so a {@link Snapshot} of thousands of hours is searched or replayed without reading it into
+ * the heap (a column maps up to 2 GB, i.e. 500M words). Only the dictionary is loaded.
+ * <p>
+ * Vosk times words from the first sample its recognizer was fed, and neither a final result
+ * nor {@code reset()} restarts that clock; audio dropped before the recognizer (e.g. silence
+ * gated by {@link VoiceActivityGate}) never reaches it. Those times mean nothing across
+ * utterances, so the store keeps only the offsets within each utterance.
+ * <p>
+ * Appends are buffered and written dictionary first, then the word columns, then the
+ * utterance records, so an utterance record is only on disk once everything it refers to
+ * is. {@link #open} drops whatever follows the last complete utterance, e.g. after a crash.
+ * <p>
+ * This class has no Android dependencies. The writer is not thread-safe; snapshots can be
+ * opened from any thread and see what was flushed before.
+ */
+public final class TranscriptStore implements Closeable {
+
+    private static final int MAGIC = 0x56545331; // "VTS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int UTTERANCE_BYTES = 16;
+    private static final int MAX_WORD_CHARS = 256; // Longer words are clipped
+    private static final int BUFFER_WORDS = 4096;
+
+    static final String DICTIONARY_FILE = "dictionary";
+    static final String IDS_FILE = "words.ids";
+    static final String STARTS_FILE = "words.start";
+    static final String ENDS_FILE = "words.end";
+    static final String CONFS_FILE = "words.conf";
+    static final String UTTERANCES_FILE = "utterances";
+
+    private final File dir;
+    private final FileChannel dictionaryOut;
+    private final FileChannel idsOut;
+    private final FileChannel startsOut;
+    private final FileChannel endsOut;
+    private final FileChannel confsOut;
+    private final FileChannel utterancesOut;
+
+    private final ByteBuffer dictionaryBuffer = buffer(BUFFER_WORDS * 8);
+    private final ByteBuffer idsBuffer = buffer(BUFFER_WORDS * 4);
+    private final ByteBuffer startsBuffer = buffer(BUFFER_WORDS * 4);
+    private final ByteBuffer endsBuffer = buffer(BUFFER_WORDS * 4);
+    private final ByteBuffer confsBuffer = buffer(BUFFER_WORDS * 4);
+    private final ByteBuffer utterancesBuffer = buffer(BUFFER_WORDS / 4 * UTTERANCE_BYTES);
+
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private int dictionarySize;
+    private long wordCount;
+    private long utteranceCount;
+    private final StringBuilder wordScratch = new StringBuilder();
+
+    private TranscriptStore(File dir, List<String> dictionary, long wordCount, long utteranceCount) throws IOException {
+        this.dir = dir;
+        for (String word : dictionary) wordIds.put(word, dictionarySize++);
+        this.wordCount = wordCount;
+        this.utteranceCount = utteranceCount;
+        List<FileChannel> opened = new ArrayList<>();
+        try {
+            dictionaryOut = appendChannel(DICTIONARY_FILE, opened);
+            idsOut = appendChannel(IDS_FILE, opened);
+            startsOut = appendChannel(STARTS_FILE, opened);
+            endsOut = appendChannel(ENDS_FILE, opened);
+            confsOut = appendChannel(CONFS_FILE, opened);
+            utterancesOut = appendChannel(UTTERANCES_FILE, opened);
+        } catch (IOException | RuntimeException e) {
+            for (FileChannel channel : opened) closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the store in {@code dir} for appending, creating it if needed and cutting off
+     * anything after the last complete utterance.
+     */
+    public static TranscriptStore open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        List<String> dictionary = new ArrayList<>();
+        long dictionaryBytes = readDictionary(new File(dir, DICTIONARY_FILE), dictionary);
+        truncate(new File(dir, DICTIONARY_FILE), dictionaryBytes);
+
+        // Utterances are written last: the last complete one whose words all made it commits.
+        File utterances = new File(dir, UTTERANCES_FILE);
+        long minWords = Long.MAX_VALUE;
+        for (String column : new String[]{IDS_FILE, STARTS_FILE, ENDS_FILE, CONFS_FILE}) {
+            minWords = Math.min(minWords, Math.max(0, (new File(dir, column).length() - HEADER_BYTES) / 4));
+        }
+        long utteranceCount = Math.max(0, (utterances.length() - HEADER_BYTES) / UTTERANCE_BYTES);
+        long wordCount = 0;
+        if (utteranceCount > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(utterances, "r")) {
+                ByteBuffer record = buffer(UTTERANCE_BYTES);
+                while (utteranceCount > 0) {
+                    record.clear();
+                    file.getChannel().read(record, HEADER_BYTES + (utteranceCount - 1) * UTTERANCE_BYTES);
+                    wordCount = (long) record.getInt(8) + record.getInt(12);
+                    if (wordCount <= minWords) break;
+                    utteranceCount--;
+                    wordCount = 0;
+                }
+            }
+        }
+        truncate(utterances, HEADER_BYTES + utteranceCount * UTTERANCE_BYTES);
+        for (String column : new String[]{IDS_FILE, STARTS_FILE, ENDS_FILE, CONFS_FILE}) {
+            truncate(new File(dir, column), HEADER_BYTES + wordCount * 4);
+        }
+        return new TranscriptStore(dir, dictionary, wordCount, utteranceCount);
+    }
+
+    /**
+     * Appends the words of the result last parsed by {@code parsed}, skipping those equal to
+     * {@code skipWord} (e.g. {@link CommandMatcher#UNKNOWN_WORD}); returns false if none are left.
+     * Word times are stored relative to the first word that is kept.
+     */
+    public boolean append(HypothesisParser parsed, long timeMillis, String skipWord) throws IOException {
+        long firstWord = wordCount;
+        if (firstWord + parsed.wordCount() > Integer.MAX_VALUE) throw new IOException("Transcript store is full");
+        float base = 0f;
+        for (int i = 0; i < parsed.wordCount(); i++) {
+            wordScratch.setLength(0);
+            parsed.appendWord(i, wordScratch);
+            wordScratch.setLength(clippedLength(wordScratch));
+            String word = wordScratch.toString();
+            if (word.equals(skipWord)) continue;
+            if (wordCount == firstWord) base = parsed.wordStart(i);
+            appendWord(word, parsed.wordStart(i) - base, parsed.wordEnd(i) - base, parsed.wordConf(i));
+        }
+        return endUtterance(firstWord, timeMillis);
+    }
+
+    /**
+     * Appends an utterance of {@code count} words from parallel arrays, e.g. when importing.
+     * Word times are stored relative to the first word.
+     */
+    public boolean append(String[] words, float[] starts, float[] ends, float[] confs, int count, long timeMillis)
+            throws IOException {
+        long firstWord = wordCount;
+        if (firstWord + count > Integer.MAX_VALUE) throw new IOException("Transcript store is full");
+        float base = count > 0 ? starts[0] : 0f;
+        for (int i = 0; i < count; i++) {
+            String word = words[i].substring(0, clippedLength(words[i]));
+            appendWord(word, starts[i] - base, ends[i] - base, confs[i]);
+        }
+        return endUtterance(firstWord, timeMillis);
+    }
+
+    // Words are clipped to MAX_WORD_CHARS, but never between the halves of a surrogate pair.
+    private static int clippedLength(CharSequence word) {
+        if (word.length() <= MAX_WORD_CHARS) return word.length();
+        return Character.isHighSurrogate(word.charAt(MAX_WORD_CHARS - 1)) ? MAX_WORD_CHARS - 1 : MAX_WORD_CHARS;
+    }
+
+    private void appendWord(String word, float start, float end, float conf) throws IOException {
+        if (idsBuffer.remaining() < 4) flush();
+        idsBuffer.putInt(idOf(word));
+        startsBuffer.putFloat(start);
+        endsBuffer.putFloat(end);
+        confsBuffer.putFloat(conf);
+        wordCount++;
+    }
+
+    private boolean endUtterance(long firstWord, long timeMillis) throws IOException {
+        if (wordCount == firstWord) return false;
+        if (utterancesBuffer.remaining() < UTTERANCE_BYTES) flush();
+        utterancesBuffer.putLong(timeMillis);
+        utterancesBuffer.putInt((int) firstWord);
+        utterancesBuffer.putInt((int) (wordCount - firstWord));
+        utteranceCount++;
+        return true;
+    }
+
+    private int idOf(String word) throws IOException {
+        Integer id = wordIds.get(word);
+        if (id != null) return id;
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        if (dictionaryBuffer.remaining() < 2 + bytes.length) flushDictionary();
+        dictionaryBuffer.putShort((short) bytes.length);
+        dictionaryBuffer.put(bytes);
+        wordIds.put(word, dictionarySize);
+        return dictionarySize++;
+    }
+
+    /** Writes buffered appends, in commit order, so that new snapshots see them. */
+    public void flush() throws IOException {
+        flushDictionary();
+        drain(idsBuffer, idsOut);
+        drain(startsBuffer, startsOut);
+        drain(endsBuffer, endsOut);
+        drain(confsBuffer, confsOut);
+        drain(utterancesBuffer, utterancesOut);
+    }
+
+    private void flushDictionary() throws IOException {
+        drain(dictionaryBuffer, dictionaryOut);
+    }
+
+    public long wordCount() {
+        return wordCount;
+    }
+
+    public long utteranceCount() {
+        return utteranceCount;
+    }
+
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    /** Flushes and returns a mapped view of everything appended so far. */
+    public Snapshot snapshot() throws IOException {
+        flush();
+        return Snapshot.open(dir);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            dictionaryOut.close();
+            idsOut.close();
+            startsOut.close();
+            endsOut.close();
+            confsOut.close();
+            utterancesOut.close();
+        }
+    }
+
+    /**
+     * Read-only view of a store as it was when opened: the columns are memory-mapped and only
+     * the dictionary is read into the heap. Safe for concurrent reads.
+     */
+    public static final class Snapshot {
+        private final String[] dictionary;
+        private final Map<String, Integer> ids;
+        private final IntBuffer wordIds;
+        private final FloatBuffer starts;
+        private final FloatBuffer ends;
+        private final FloatBuffer confs;
+        private final ByteBuffer utterances;
+        private final int utteranceCount;
+        private final int wordCount;
+
+        private Snapshot(File dir) throws IOException {
+            List<String> entries = new ArrayList<>();
+            readDictionary(new File(dir, DICTIONARY_FILE), entries);
+            dictionary = entries.toArray(new String[0]);
+            ids = new HashMap<>(dictionary.length * 2);
+            for (int i = 0; i < dictionary.length; i++) ids.put(dictionary[i], i);
+
+            // Only utterances whose words are all on disk, as in open().
+            ByteBuffer utteranceColumn = map(new File(dir, UTTERANCES_FILE));
+            ByteBuffer idColumn = map(new File(dir, IDS_FILE));
+            ByteBuffer startColumn = map(new File(dir, STARTS_FILE));
+            ByteBuffer endColumn = map(new File(dir, ENDS_FILE));
+            ByteBuffer confColumn = map(new File(dir, CONFS_FILE));
+            int minWords = Math.min(Math.min(idColumn.capacity(), startColumn.capacity()),
+                    Math.min(endColumn.capacity(), confColumn.capacity())) / 4;
+            int count = utteranceColumn.capacity() / UTTERANCE_BYTES;
+            int words = 0;
+            while (count > 0) {
+                int base = (count - 1) * UTTERANCE_BYTES;
+                words = utteranceColumn.getInt(base + 8) + utteranceColumn.getInt(base + 12);
+                if (words <= minWords) break;
+                count--;
+                words = 0;
+            }
+            utteranceCount = count;
+            wordCount = words;
+            utterances = utteranceColumn;
+            wordIds = idColumn.asIntBuffer();
+            starts = startColumn.asFloatBuffer();
+            ends = endColumn.asFloatBuffer();
+            confs = confColumn.asFloatBuffer();
+        }
+
+        /** Maps the store in {@code dir}; an empty or missing store gives an empty snapshot. */
+        public static Snapshot open(File dir) throws IOException {
+            return new Snapshot(dir);
+        }
+
+        public int utteranceCount() {
+            return utteranceCount;
+        }
+
+        public int wordCount() {
+            return wordCount;
+        }
+
+        public int dictionarySize() {
+            return dictionary.length;
+        }
+
+        // --- Utterances ---
+        public long utteranceTimeMillis(int utterance) {
+            return utterances.getLong(utterance * UTTERANCE_BYTES);
+        }
+
+        public int utteranceFirstWord(int utterance) {
+            return utterances.getInt(utterance * UTTERANCE_BYTES + 8);
+        }
+
+        public int utteranceWordCount(int utterance) {
+            return utterances.getInt(utterance * UTTERANCE_BYTES + 12);
+        }
+
+        /** The utterance that word {@code index} belongs to, by binary search. */
+        public int utteranceOf(int index) {
+            int low = 0;
+            int high = utteranceCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (utteranceFirstWord(mid) <= index) low = mid;
+                else high = mid - 1;
+            }
+            return low;
+        }
+
+        /** Appends the words of {@code utterance}, space-separated, to {@code out}. */
+        public void appendText(int utterance, StringBuilder out) {
+            int first = utteranceFirstWord(utterance);
+            int end = first + utteranceWordCount(utterance);
+            for (int i = first; i < end; i++) {
+                if (i > first) out.append(' ');
+                out.append(word(wordId(i)));
+            }
+        }
+
+        // --- Words ---
+        public int wordId(int index) {
+            return wordIds.get(index);
+        }
+
+        /** Seconds from the start of the first word of the utterance. */
+        public float wordStart(int index) {
+            return starts.get(index);
+        }
+
+        public float wordEnd(int index) {
+            return ends.get(index);
+        }
+
+        public float wordConf(int index) {
+            return confs.get(index);
+        }
+
+        /** The word with dictionary ID {@code id}. */
+        public String word(int id) {
+            return id >= 0 && id < dictionary.length ? dictionary[id] : CommandMatcher.UNKNOWN_WORD;
+        }
+
+        /** The dictionary ID of {@code word}, or -1 if it was never stored. */
+        public int idOf(String word) {
+            Integer id = ids.get(word);
+            return id != null ? id : -1;
+        }
+
+        private static ByteBuffer map(File file) throws IOException {
+            long size = file.length() - HEADER_BYTES;
+            if (size <= 0) return buffer(0);
+            if (size > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size);
+                return mapped.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    // --- Files ---
+    // Opens a column for appending and adds it to opened; closes it again if that fails.
+    private FileChannel appendChannel(String name, List<FileChannel> opened) throws IOException {
+        File file = new File(dir, name);
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                ByteBuffer header = buffer(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                while (header.hasRemaining()) channel.write(header, HEADER_BYTES - header.remaining());
+            } else {
+                checkHeader(channel, file);
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        opened.add(channel);
+        return channel;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failing; the original exception is the one to report.
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, File file) throws IOException {
+        ByteBuffer header = buffer(HEADER_BYTES);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " transcript store column");
+        }
+    }
+
+    // Returns the length of the file up to its last complete entry.
+    private static long readDictionary(File file, List<String> out) throws IOException {
+        if (file.length() < HEADER_BYTES) return 0;
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " transcript dictionary");
+        }
+        int pos = HEADER_BYTES;
+        while (pos + 2 <= bytes.length) {
+            int length = data.getShort(pos) & 0xFFFF;
+            if (pos + 2 + length > bytes.length) break;
+            out.add(new String(bytes, pos + 2, length, StandardCharsets.UTF_8));
+            pos += 2 + length;
+        }
+        return pos;
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        if (!file.exists() || file.length() <= length) return;
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(length);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static ByteBuffer buffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
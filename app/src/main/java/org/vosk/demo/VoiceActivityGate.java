@@ -0,0 +1,175 @@
+package org.vosk.demo;
+
+import java.util.Locale;
+
+/**
+ * Energy-based voice activity gate in front of the recognizer.
+ * <p>
+ * A chunk opens the gate when its RMS reaches {@code thresholdFactor} times the calibrated
+ * noise floor. The gate then stays open for a hangover period after the last loud chunk, so
+ * the recognizer still sees the trailing silence it needs to detect the end of an utterance.
+ * Chunks that arrive while the gate is closed are kept in a short pre-roll ring. On opening
+ * they are passed on first, so quiet word onsets are not clipped. Everything else is skipped
+ * and never decoded.
+ * <p>
+ * The noise floor is either fixed by {@link #setNoiseFloor} or followed live from a
+ * {@link NoiseFloorTracker} that the gate feeds with every chunk's RMS. Without a noise floor
+ * (no calibration and the tracker has not settled yet) the gate passes every chunk. RMS
+ * values use the {@link AudioStats} scale. This class has no Android dependencies and is not
+ * thread-safe, except that {@link #setNoiseFloor} may be called from any thread.
+ */
+public final class VoiceActivityGate {
+
+    /** Receives the chunks that pass the gate; {@code pcm} is only valid during the call. */
+    public interface Sink {
+        void accept(short[] pcm, int length);
+    }
+
+    public static final double DEFAULT_THRESHOLD_FACTOR = 2.0; // +6 dB over the noise floor
+    public static final double DEFAULT_MIN_THRESHOLD = 2.0; // About -54 dBFS; quiet speech stays above it
+
+    private final double thresholdFactor;
+    private final double minThreshold;
+    private final long hangoverSamples;
+    private volatile double threshold; // <= 0 disables gating
+    private NoiseFloorTracker tracker;
+
+    // Pre-roll ring of the most recent skipped chunks.
+    private final short[][] preRoll;
+    private final int[] preRollLengths;
+    private int preRollStart;
+    private int preRollCount;
+
+    private boolean open;
+    private long samplesSinceSpeech;
+
+    private long chunkCount;
+    private long skippedCount;
+    private long openCount;
+
+    /**
+     * @param chunkSamples  largest chunk that will be passed to {@link #process}
+     * @param minThreshold  lowest RMS that can ever open the gate, whatever the noise floor
+     */
+    public VoiceActivityGate(int sampleRate, int chunkSamples, int hangoverMs, int preRollMs,
+                             double thresholdFactor, double minThreshold) {
+        this.thresholdFactor = thresholdFactor;
+        this.minThreshold = minThreshold;
+        this.hangoverSamples = (long) sampleRate * hangoverMs / 1000;
+        long preRollSamples = (long) sampleRate * preRollMs / 1000;
+        int preRollChunks = (int) ((preRollSamples + chunkSamples - 1) / chunkSamples);
+        this.preRoll = new short[preRollChunks][chunkSamples];
+        this.preRollLengths = new int[preRollChunks];
+    }
+
+    /** Sets the calibrated noise-floor RMS; a value <= 0 turns gating off. */
+    public void setNoiseFloor(double noiseFloorRms) {
+        threshold = noiseFloorRms > 0 ? Math.max(minThreshold, noiseFloorRms * thresholdFactor) : 0.0;
+    }
+
+    /** Follows {@code tracker}'s estimate from now on and feeds it every chunk; null stops. */
+    public void setNoiseFloorTracker(NoiseFloorTracker tracker) {
+        this.tracker = tracker;
+        if (tracker != null) setNoiseFloor(tracker.getNoiseFloor());
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /** Passes {@code pcm} (and any pending pre-roll) to {@code sink} if it is speech; returns whether it did. */
+    public boolean process(short[] pcm, int length, Sink sink) {
+        chunkCount++;
+        double rms = -1.0;
+        if (tracker != null) {
+            rms = AudioStats.rms(pcm, length);
+            tracker.update(rms);
+            setNoiseFloor(tracker.getNoiseFloor());
+        }
+        double currentThreshold = threshold;
+        if (currentThreshold <= 0) {
+            sink.accept(pcm, length);
+            return true;
+        }
+
+        if (rms < 0) rms = AudioStats.rms(pcm, length);
+        if (rms >= currentThreshold) {
+            if (!open) {
+                open = true;
+                openCount++;
+                flushPreRoll(sink);
+            }
+            samplesSinceSpeech = 0;
+        } else if (open) {
+            samplesSinceSpeech += length;
+            if (samplesSinceSpeech > hangoverSamples) open = false;
+        }
+
+        if (open) {
+            sink.accept(pcm, length);
+            return true;
+        }
+        skippedCount++;
+        stashPreRoll(pcm, length);
+        return false;
+    }
+
+    private void stashPreRoll(short[] pcm, int length) {
+        if (preRoll.length == 0) return;
+        int slot = (preRollStart + preRollCount) % preRoll.length;
+        if (preRollCount == preRoll.length) {
+            preRollStart = (preRollStart + 1) % preRoll.length;
+        } else {
+            preRollCount++;
+        }
+        int copied = Math.min(length, preRoll[slot].length);
+        System.arraycopy(pcm, 0, preRoll[slot], 0, copied);
+        preRollLengths[slot] = copied;
+    }
+
+    private void flushPreRoll(Sink sink) {
+        for (int i = 0; i < preRollCount; i++) {
+            int slot = (preRollStart + i) % preRoll.length;
+            sink.accept(preRoll[slot], preRollLengths[slot]);
+        }
+        // Pre-roll chunks were decoded after all.
+        skippedCount -= preRollCount;
+        preRollStart = 0;
+        preRollCount = 0;
+    }
+
+    /** Closes the gate and forgets the pre-roll, keeping the counters. */
+    public void reset() {
+        open = false;
+        samplesSinceSpeech = 0;
+        preRollStart = 0;
+        preRollCount = 0;
+    }
+
+    // --- Metrics ---
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    /** Chunks that were never passed to the sink. */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    public double getSkippedFraction() {
+        return chunkCount == 0 ? 0.0 : (double) skippedCount / chunkCount;
+    }
+
+    public long getOpenCount() {
+        return openCount;
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT, "chunks=%d skipped=%d (%.1f%%) openings=%d threshold=%.2f",
+                chunkCount, skippedCount, 100.0 * getSkippedFraction(), openCount, threshold);
+    }
+}
@@ -1,26 +1,23 @@
 package org.vosk.demo; // MAKE SURE THIS MATCHES YOUR PROJECT'S PACKAGE NAME
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.ComponentName;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.media.AudioFormat;
-import android.media.AudioManager;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
-import android.text.Layout;
 import android.text.method.ScrollingMovementMethod;
 import android.util.Log;
-import android.view.KeyEvent;
 import android.view.View;
 import android.widget.Button;
-import android.widget.CompoundButton;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.widget.ToggleButton;
@@ -29,27 +26,23 @@ import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.vosk.LibVosk;
-import org.vosk.LogLevel;
 import org.vosk.Model;
-import org.vosk.Recognizer;
-import org.vosk.android.RecognitionListener;
-import org.vosk.android.SpeechService;
-import org.vosk.android.StorageService;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
-public class VoskActivity extends Activity implements
-        RecognitionListener {
+/**
+ * The UI. Recognition lives in {@link RecognitionService}, which this activity binds to and
+ * mirrors, so rotation or a trip to the background only rebinds: the model stays loaded and
+ * listening carries on. Calibration and batch transcription run here on the service's
+ * capture engine and model.
+ */
+public class VoskActivity extends Activity implements RecognitionService.Client {
 
     private static final String TAG = "VoskActivity";
 
@@ -65,35 +58,49 @@ public class VoskActivity extends Activity implements
 
     // --- Permissions ---
     private static final int PERMISSIONS_REQUEST_RECORD_AUDIO = 1;
+    private static final int PERMISSIONS_REQUEST_POST_NOTIFICATIONS = 2;
+    private boolean notificationPermissionRequested; // Asked at most once per activity
+
+    // --- Recognition Service ---
+    private RecognitionService service; // Null until bound
+    private long createTimeNanos; // For time-to-READY
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            onServiceBound(((RecognitionService.LocalBinder) binder).getService());
+        }
 
-    // --- Vosk ---
-    private Model model;
-    private SpeechService speechService;
-    private boolean isPaused = false; // <<< ADDED: Track pause state locally
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            Log.w(TAG, "Recognition service disconnected.");
+            service = null;
+        }
+    };
 
     // --- UI Elements ---
-    private TextView resultView;
+    private ListView resultListView;
+    private TranscriptAdapter transcriptAdapter; // Over the service's transcript, once bound
     private TextView jarvisResponseView;
     private Button calibrateButton;
     private Button recognizeMicButton;
     private ToggleButton pauseButton;
+    private ToggleButton commandModeButton;
     private Button cB;
     private Button rMB;
     private View pB; // Shorthands for setUiState
 
     // --- Calibration ---
     private static final int CALIBRATION_DURATION_MS = 5000;
-    private static final int AUDIO_SAMPLE_RATE = 16000;
-    private static final int AUDIO_CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
-    private static final int AUDIO_ENCODING = AudioFormat.ENCODING_PCM_16BIT;
-    private static final int CALIBRATION_BUFFER_SIZE_FACTOR = 2;
-    private double calibratedVolumeRms = -1.0;
-    private final ExecutorService calibrationExecutor = Executors.newSingleThreadExecutor();
-    private static final String PREFS_NAME = "VoskDemoPrefs";
-    private static final String PREF_CALIBRATION_RMS = "calibrationRms";
-
-    // --- Audio Manager for Media Control ---
-    private AudioManager audioManager;
+    private static final double CALIBRATION_PERCENTILE = 10.0; // Same noise-floor statistic as SilenceSegmenter
+    private AudioCaptureEngine.Subscription calibrationSubscription;
+
+    // --- Batch Transcription (long-press the mic button) ---
+    private static final String BATCH_SAMPLE_ASSET = "10001-90210-01803.wav";
+    private static final String BATCH_DIR = "batch"; // Extra *.wav files under getExternalFilesDir
+    private final ExecutorService batchExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "BatchCoordinator"));
+    private boolean batchRunning;
+    private LongAudioTranscriber longAudioTranscriber; // Created on first use, per model
+    private Model longAudioModel;
 
     // --- Threading & Main Handler ---
     private Handler mainHandler;
@@ -102,29 +109,22 @@ public class VoskActivity extends Activity implements
     @Override
     public void onCreate(Bundle state) {
         super.onCreate(state);
+        createTimeNanos = System.nanoTime();
         setContentView(R.layout.main); // Ensure res/layout/main.xml exists
 
         mainHandler = new Handler(Looper.getMainLooper());
 
-        // --- Initialize AudioManager ---
-        audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
-
-        loadCalibration();
-
         // Initialize UI elements
-        resultView = findViewById(R.id.result_text);
+        resultListView = findViewById(R.id.result_list);
         jarvisResponseView = findViewById(R.id.jarvis_response_text);
         calibrateButton = findViewById(R.id.calibrate_button);
         recognizeMicButton = findViewById(R.id.recognize_mic);
         pauseButton = findViewById(R.id.pause);
+        commandModeButton = findViewById(R.id.command_mode);
 
-        // Setup scrolling
-        resultView.setMovementMethod(new ScrollingMovementMethod());
-        resultView.setText(R.string.recognition_log_title); // Initial title
         jarvisResponseView.setMovementMethod(new ScrollingMovementMethod());
-        
+
         // --- Enable RTL text direction for Persian ---
-        resultView.setTextDirection(View.TEXT_DIRECTION_RTL);
         jarvisResponseView.setTextDirection(View.TEXT_DIRECTION_RTL);
 
 
@@ -133,36 +133,48 @@ public class VoskActivity extends Activity implements
         // Setup Button Listeners
         calibrateButton.setOnClickListener(v -> startCalibrationSafe());
         recognizeMicButton.setOnClickListener(view -> recognizeMicrophone());
+        recognizeMicButton.setOnLongClickListener(view -> {
+            transcribeFiles();
+            return true;
+        });
+        calibrateButton.setOnLongClickListener(view -> {
+            chooseModel();
+            return true;
+        });
         // Use the listener attached in XML or programmatically like this:
         pauseButton.setOnCheckedChangeListener((buttonView, isChecked) -> pause(isChecked));
+        commandModeButton.setOnCheckedChangeListener((buttonView, isChecked) -> setCommandMode(isChecked));
 
-        LibVosk.setLogLevel(LogLevel.INFO); // Vosk log level
+        // Started as well as bound, so the service outlives this activity across configuration changes.
+        Intent serviceIntent = new Intent(this, RecognitionService.class);
+        startService(serviceIntent);
+        bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
 
         // Check Permissions
         int permissionCheck = ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.RECORD_AUDIO);
         if (permissionCheck != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.RECORD_AUDIO}, PERMISSIONS_REQUEST_RECORD_AUDIO);
-        } else {
-            initModel(); // Model initialization will proceed if permission granted
         }
+        // Otherwise the model is initialized once the service is bound.
     }
 
-    // --- Calibration Methods ---
-    private void loadCalibration() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        calibratedVolumeRms = prefs.getFloat(PREF_CALIBRATION_RMS, -1.0f);
-        Log.i(TAG, "Loaded calibration RMS: " + calibratedVolumeRms);
-    }
-
-    private void saveCalibration(double rmsValue) {
-        calibratedVolumeRms = rmsValue;
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putFloat(PREF_CALIBRATION_RMS, (float) rmsValue);
-        editor.apply();
-        Log.i(TAG, "Saved calibration RMS: " + rmsValue);
+    // Picks up whatever the service is doing: a recreated activity may find it listening already.
+    private void onServiceBound(RecognitionService boundService) {
+        service = boundService;
+        service.setClient(this);
+        transcriptAdapter = new TranscriptAdapter(service.getTranscriptLog());
+        resultListView.setAdapter(transcriptAdapter);
+        commandModeButton.setChecked(service.isCommandMode());
+        if (service.isListening()) {
+            setUiState(STATE_MIC);
+        }
+        Log.d(TAG, "Bound to recognition service (listening: " + service.isListening() + ").");
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
+            initModel(); // Model initialization will proceed if permission granted
+        }
     }
 
+    // --- Calibration Methods ---
     private void startCalibrationSafe() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
             setErrorState(getString(R.string.error_permission_denied) + ": Microphone needed for calibration.");
@@ -171,120 +183,80 @@ public class VoskActivity extends Activity implements
         }
     }
 
-    @SuppressLint("MissingPermission")
     private void startCalibration() {
         if (currentState != STATE_READY && currentState != STATE_DONE && currentState != STATE_ERROR) {
             Toast.makeText(this, "Cannot calibrate now (State: " + stateToString(currentState) + ")", Toast.LENGTH_SHORT).show();
             return;
         }
-        if (speechService != null) {
+        if (service == null || service.isListening()) {
             Toast.makeText(this, "Stop listening first", Toast.LENGTH_SHORT).show();
             return;
         }
         Log.d(TAG, "Starting calibration process...");
         setUiState(STATE_CALIBRATING);
-        calibrationExecutor.execute(() -> {
-            AudioRecord calibrationAudioRecord = null;
-            List<Double> rmsValues = new ArrayList<>();
-            long startTime = System.currentTimeMillis();
-            int bufferSize;
-            try {
-                bufferSize = AudioRecord.getMinBufferSize(AUDIO_SAMPLE_RATE, AUDIO_CHANNEL_CONFIG, AUDIO_ENCODING);
-                if (bufferSize <= 0) {
-                    Log.w(TAG, "getMinBufferSize returned <= 0, using default.");
-                    bufferSize = AUDIO_SAMPLE_RATE * 2 * CALIBRATION_BUFFER_SIZE_FACTOR;
-                } else {
-                    bufferSize *= CALIBRATION_BUFFER_SIZE_FACTOR;
+        // Calibration is just another consumer of the shared capture engine; it needs no mic of its own.
+        final Handler handler = mainHandler;
+        final AudioStats audioStats = new AudioStats();
+        final long calibrationSamples = (long) RecognitionService.AUDIO_SAMPLE_RATE * CALIBRATION_DURATION_MS / 1000;
+        calibrationSubscription = service.getCaptureEngine().subscribe("calibration", new AudioCaptureEngine.Consumer() {
+            private long samplesSeen;
+            private boolean finished;
+
+            @Override
+            public void onAudio(short[] pcm, int length) {
+                if (finished) return;
+                audioStats.process(pcm, length);
+                samplesSeen += length;
+                if (samplesSeen >= calibrationSamples) {
+                    finished = true;
+                    Log.d(TAG, "Calibration audio reading finished.");
+                    handler.post(() -> finishCalibration(audioStats));
                 }
-                Log.d(TAG, "Calibration buffer size: " + bufferSize);
-
-                calibrationAudioRecord = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION,
-                        AUDIO_SAMPLE_RATE, AUDIO_CHANNEL_CONFIG, AUDIO_ENCODING, bufferSize);
-
-                if (calibrationAudioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-                    throw new IOException("AudioRecord init failed. State: " + calibrationAudioRecord.getState());
-                }
-
-                calibrationAudioRecord.startRecording();
-                if (calibrationAudioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
-                    throw new IOException("AudioRecord failed to start recording. State: " + calibrationAudioRecord.getRecordingState());
-                }
-
-                short[] audioBuffer = new short[bufferSize / 2];
-                Log.d(TAG, "Calibration started. Reading audio...");
-
-                while (currentState == STATE_CALIBRATING && (System.currentTimeMillis() - startTime < CALIBRATION_DURATION_MS)) {
-                    int shortsRead = calibrationAudioRecord.read(audioBuffer, 0, audioBuffer.length);
-                    if (shortsRead > 0) {
-                        double rms = calculateRms(audioBuffer, shortsRead);
-                        if (rms > 10) {
-                            rmsValues.add(rms);
-                        }
-                    } else if (shortsRead < 0) {
-                        Log.e(TAG, "AudioRecord read error: " + shortsRead);
-                    }
-                }
-                Log.d(TAG, "Calibration audio reading finished.");
+            }
 
-                if (calibrationAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                    calibrationAudioRecord.stop();
-                }
+            @Override
+            public void onCaptureError(IOException e) {
+                finished = true;
+                handler.post(() -> {
+                    stopCalibration();
+                    if (service != null) service.setCalibration(-1.0);
+                    setErrorState(String.format(getString(R.string.calibration_failed_error), e.getMessage()));
+                });
+            }
 
-                if (!rmsValues.isEmpty()) {
-                    double sumRms = 0;
-                    for (Double rms : rmsValues) sumRms += rms;
-                    final double avgRms = sumRms / rmsValues.size();
-                    saveCalibration(avgRms);
-                    Log.i(TAG, "Calibration complete. Avg RMS: " + avgRms + " from " + rmsValues.size() + " samples.");
-                    mainHandler.post(() -> {
-                        Toast.makeText(VoskActivity.this, String.format(getString(R.string.calibration_complete), avgRms), Toast.LENGTH_LONG).show();
-                        setUiState(STATE_READY);
-                    });
-                } else {
-                    Log.w(TAG, "Calibration: No significant audio detected.");
-                    saveCalibration(-1.0);
-                    mainHandler.post(() -> {
-                        Toast.makeText(VoskActivity.this, R.string.calibration_failed_no_audio, Toast.LENGTH_LONG).show();
-                        setUiState(STATE_READY);
-                    });
-                }
-            } catch (final Exception e) {
-                Log.e(TAG, "Calibration failed", e);
-                saveCalibration(-1.0);
-                mainHandler.post(() -> setErrorState(String.format(getString(R.string.calibration_failed_error), e.getMessage())));
-            } finally {
-                if (calibrationAudioRecord != null) {
-                    if (calibrationAudioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
-                        try {
-                            if (calibrationAudioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                                calibrationAudioRecord.stop();
-                            }
-                        } catch (IllegalStateException ignored) {
-                            Log.e(TAG, "Calibration: IllegalStateException on stop().");
-                        } finally {
-                            calibrationAudioRecord.release();
-                        }
-                    }
-                    calibrationAudioRecord = null;
-                    Log.d(TAG, "Calibration AudioRecord released.");
-                }
-                if (currentState == STATE_CALIBRATING) {
-                    mainHandler.post(() -> {
-                        if (currentState == STATE_CALIBRATING) setUiState(STATE_READY);
-                    });
-                }
+            @Override
+            public void onStopped() {
+                Log.d(TAG, "Calibration consumer stopped.");
             }
         });
     }
 
-    private double calculateRms(short[] audioData, int length) {
-        if (length <= 0) return 0.0;
-        double sumSquare = 0.0;
-        for (int i = 0; i < length; i++) {
-            double sample = audioData[i] / 32768.0;
-            sumSquare += sample * sample;
+    // Runs on the main thread once enough audio was seen; the consumer no longer touches audioStats.
+    private void finishCalibration(AudioStats audioStats) {
+        stopCalibration();
+        if (currentState != STATE_CALIBRATING || service == null) return;
+        if (audioStats.bufferCount() > 0) {
+            // The quietest decile of all buffers, dead air included: the noise floor the gate tracks.
+            final double noiseFloor = audioStats.rmsPercentile(CALIBRATION_PERCENTILE);
+            service.setCalibration(noiseFloor);
+            Log.i(TAG, "Calibration complete. Noise floor: " + noiseFloor + " from " + audioStats.bufferCount() + " buffers."
+                    + " RMS mean/p50/p90: " + audioStats.meanRms() + "/" + audioStats.rmsPercentile(50)
+                    + "/" + audioStats.rmsPercentile(90) + ", peak: " + audioStats.peak()
+                    + ", ZCR: " + audioStats.zeroCrossingRate());
+            Toast.makeText(VoskActivity.this, String.format(getString(R.string.calibration_complete), noiseFloor), Toast.LENGTH_LONG).show();
+        } else {
+            Log.w(TAG, "Calibration: No significant audio detected.");
+            service.setCalibration(-1.0);
+            Toast.makeText(VoskActivity.this, R.string.calibration_failed_no_audio, Toast.LENGTH_LONG).show();
+        }
+        setUiState(STATE_READY);
+    }
+
+    private void stopCalibration() {
+        if (calibrationSubscription != null) {
+            if (service != null) service.getCaptureEngine().unsubscribe(calibrationSubscription);
+            calibrationSubscription = null;
         }
-        return Math.sqrt(sumSquare / length) * 1000;
     }
 
     // --- Permission Handling ---
@@ -298,11 +270,31 @@ public class VoskActivity extends Activity implements
                 Log.e(TAG, "Audio recording permission denied by user.");
                 setErrorState(getString(R.string.error_permission_denied) + ": Microphone access is required.");
             }
+        } else if (requestCode == PERMISSIONS_REQUEST_POST_NOTIFICATIONS) {
+            if (grantResults.length == 0 || grantResults[0] != PackageManager.PERMISSION_GRANTED) {
+                Log.w(TAG, "Notification permission denied; listening without a visible notification.");
+            }
+            if (service != null && !service.isListening()) {
+                recognizeMicrophone();
+            }
         }
     }
 
+    // From Android 13 the foreground service's notification is only shown once this is granted.
+    private boolean needsNotificationPermission() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && !notificationPermissionRequested
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED;
+    }
+
     // --- Model Initialization ---
+    // The service loads the model once for its lifetime; a recreated activity gets it at once.
     private void initModel() {
+        if (service == null) {
+            Log.d(TAG, "initModel called before the service is bound; deferring.");
+            return;
+        }
+        Model model = service.getModel();
         if (model != null || (currentState != STATE_START && currentState != STATE_ERROR)) {
             Log.d(TAG, "initModel called but model exists or state is not START/ERROR. Current state: " + stateToString(currentState));
             if (model != null && currentState != STATE_MIC && currentState != STATE_CALIBRATING) {
@@ -315,18 +307,7 @@ public class VoskActivity extends Activity implements
         if (currentState != STATE_ERROR) {
             setUiState(STATE_START);
         }
-
-        StorageService.unpack(this, "vosk-model-small-fa-0.42", "model",
-                (model) -> {
-                    this.model = model;
-                    Log.i(TAG, "Model unpacked and loaded successfully.");
-                    mainHandler.post(() -> setUiState(STATE_READY));
-                },
-                (exception) -> {
-                    Log.e(TAG, "Model unpacking failed", exception);
-                    setErrorState("Failed to unpack/load the model: " + exception.getMessage());
-                    this.model = null;
-                });
+        service.loadModel();
     }
 
     // --- Microphone Recognition Control ---
@@ -336,199 +317,194 @@ public class VoskActivity extends Activity implements
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.RECORD_AUDIO}, PERMISSIONS_REQUEST_RECORD_AUDIO);
             return;
         }
+        if (service == null) {
+            Log.w(TAG, "Recognize microphone requested before the service is bound.");
+            return;
+        }
 
-        if (speechService != null) {
+        if (service.isListening()) {
             // --- Stop Listening ---
             Log.d(TAG, "Stopping microphone recognition.");
             setUiState(STATE_DONE); // Update UI first
-            speechService.stop();
-            speechService.shutdown();
-            speechService = null;
-            isPaused = false; // Reset pause state when stopping completely
+            service.stopListening();
         } else {
             // --- Start Listening ---
-            if (model == null) {
+            if (service.getModel() == null) {
                 Log.e(TAG, "Recognize microphone requested but model is not loaded.");
                 setErrorState(getString(R.string.error_model_load));
                 initModel(); // Attempt to load model if missing
                 return;
             }
-            if (calibratedVolumeRms == -1.0) {
+            if (needsNotificationPermission()) {
+                // Listening starts from the result, whatever the answer.
+                notificationPermissionRequested = true;
+                ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS}, PERMISSIONS_REQUEST_POST_NOTIFICATIONS);
+                return;
+            }
+            if (service.getCalibratedVolumeRms() == -1.0) {
                 Toast.makeText(this, R.string.calibrate_tip, Toast.LENGTH_LONG).show();
             }
-            Log.d(TAG, "Starting microphone recognition.");
+            Log.d(TAG, "Starting microphone recognition (command mode: " + service.isCommandMode() + ").");
             try {
-                Recognizer rec = new Recognizer(model, (float) AUDIO_SAMPLE_RATE);
-                speechService = new SpeechService(rec, (float) AUDIO_SAMPLE_RATE);
-                isPaused = false; // Ensure pause state is false when starting
-                speechService.startListening(this);
+                service.startListening();
                 setUiState(STATE_MIC);
                 if (jarvisResponseView != null)
                     jarvisResponseView.setText(R.string.listening_status_empty);
             } catch (Exception e) {
                 Log.e(TAG, "RecognizeMicrophone Start Error", e);
                 setErrorState(getString(R.string.error_mic_init) + e.getMessage());
-                if (speechService != null) {
-                    speechService.stop();
-                    speechService.shutdown();
-                    speechService = null;
-                }
+                service.stopListening();
                 setUiState(STATE_ERROR);
             }
         }
     }
 
-    // --- RecognitionListener Implementation ---
-    @Override
-    public void onResult(String hypothesis) {
-        // Log.v(TAG, "onResult (Partial/Intermediate): " + hypothesis);
+    private void setCommandMode(boolean enabled) {
+        if (service == null) return;
+        try {
+            service.setCommandMode(enabled);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to restart recognition in " + (enabled ? "command" : "dictation") + " mode", e);
+            setErrorState(getString(R.string.error_mic_init) + e.getMessage());
+        }
     }
 
-    @Override
-    public void onFinalResult(String hypothesis) {
-        Log.i(TAG, "onFinalResult Raw: " + hypothesis);
-        final String extractedText = extractTextFromHypothesis(hypothesis, "text");
-        Log.i(TAG, "onFinalResult Extracted: \"" + extractedText + "\"");
-
-        mainHandler.post(() -> {
-            if (currentState != STATE_MIC && currentState != STATE_DONE) {
-                Log.w(TAG, "onFinalResult received but state is not MIC or DONE. State: " + stateToString(currentState));
-                return;
-            }
-
-            if (resultView != null && !extractedText.isEmpty()) {
-                resultView.append("\n" + getString(R.string.final_result_prefix) + extractedText);
-                scrollToBottom(resultView);
-            } else if (resultView != null && extractedText.isEmpty()) {
-                Log.d(TAG, "Empty final result.");
-                // resultView.append("\n" + getString(R.string.empty_final_result));
-                // scrollToBottom(resultView);
-            }
-
-            // Continue listening unless explicitly stopped or timeout/error occurs.
-            if (currentState == STATE_DONE && speechService == null) {
-                Log.d(TAG, "Final result received after service stopped.");
-                setUiState(STATE_DONE);
-            } else if (currentState == STATE_MIC) {
-                Log.d(TAG, "Final result received, continuing listening (MIC state).");
-                // Clear Jarvis response for next utterance? Optional.
-                // if (jarvisResponseView != null) jarvisResponseView.setText(R.string.listening_status_empty);
-            }
-        });
+    // --- Model Selection ---
+    private void chooseModel() {
+        if (service == null) return;
+        final RecognitionService modelOwner = service;
+        final List<String> models = modelOwner.getAvailableModels();
+        if (models.size() < 2) {
+            Toast.makeText(this, getString(R.string.model_chooser_single, modelOwner.getModelName()), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.model_chooser_title)
+                .setSingleChoiceItems(models.toArray(new String[0]), models.indexOf(modelOwner.getModelName()), (dialog, which) -> {
+                    dialog.dismiss();
+                    Log.i(TAG, "Switching to model " + models.get(which));
+                    modelOwner.setModel(models.get(which)); // onModelLoaded follows once it is ready
+                })
+                .show();
     }
 
-    @Override
-    public void onPartialResult(String hypothesis) {
-        final String partialText = extractTextFromHypothesis(hypothesis, "partial");
-        if (partialText == null || partialText.isEmpty()) {
+    // --- Batch Transcription ---
+    private void transcribeFiles() {
+        if (service == null || service.getModel() == null || batchRunning) {
+            Log.w(TAG, "Batch transcription unavailable (model loaded: " + (service != null && service.getModel() != null)
+                    + ", running: " + batchRunning + ")");
             return;
         }
+        // Held until the batch is done, even if the service switches models meanwhile.
+        final RecognitionService modelOwner = service;
+        final Model model = modelOwner.retainModel();
+        final List<BatchTranscriber.Source> sources = new ArrayList<>();
+        sources.add(BatchTranscriber.asset(getAssets(), BATCH_SAMPLE_ASSET));
+        File batchDir = getExternalFilesDir(BATCH_DIR);
+        File[] files = batchDir != null ? batchDir.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".wav")) : null;
+        if (files != null) {
+            for (File file : files) sources.add(BatchTranscriber.file(file));
+        }
 
-        mainHandler.post(() -> {
-            if (currentState == STATE_MIC && !isPaused) { // <<< Check !isPaused here
-                String lowerHypothesis = partialText.toLowerCase().trim();
-                String resp = null;
-                boolean commandMatched = false;
-
-                // --- Command Checking Logic (Persian) ---
-                if (!commandMatched && (lowerHypothesis.contains("سلام") && lowerHypothesis.contains("ماشین"))) {
-                    Log.d(TAG, "Partial CMD Matched: Hello Machine");
-                    resp = getString(R.string.response_hello_sir);
-                    commandMatched = true;
-                }
-                if (!commandMatched && (lowerHypothesis.endsWith("ماشین")) && lowerHypothesis.length() < 10) {
-                    Log.d(TAG, "Partial CMD Matched: Machine Wake Word");
-                    resp = getString(R.string.response_yes_sir);
-                    commandMatched = true;
-                }
-                if (!commandMatched && (lowerHypothesis.contains("پخش موسیقی") || lowerHypothesis.contains("توقف موسیقی"))) {
-                    Log.d(TAG, "Partial CMD Matched: Play/Pause Music");
-                    resp = getString(R.string.response_play_music);
-                    commandMatched = true;
-                    sendMediaKeyEvent(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
-                }
-                if (!commandMatched && (lowerHypothesis.contains("آهنگ بعدی"))) {
-                    Log.d(TAG, "Partial CMD Matched: Next Song");
-                    resp = getString(R.string.response_next_song);
-                    commandMatched = true;
-                    sendMediaKeyEvent(KeyEvent.KEYCODE_MEDIA_NEXT);
-                }
-                if (!commandMatched && (lowerHypothesis.contains("آهنگ قبلی"))) {
-                    Log.d(TAG, "Partial CMD Matched: Previous Song");
-                    resp = getString(R.string.response_previous_song);
-                    commandMatched = true;
-                    sendMediaKeyEvent(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
-                }
-                // --- End Command Checking ---
+        batchRunning = true;
+        Toast.makeText(this, getString(R.string.batch_started, sources.size()), Toast.LENGTH_SHORT).show();
+        final Handler handler = mainHandler;
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (longAudioModel != model) {
+            if (longAudioTranscriber != null) longAudioTranscriber.shutdown();
+            longAudioTranscriber = new LongAudioTranscriber(model, cores);
+            longAudioModel = model;
+        }
+        final BatchTranscriber transcriber = new BatchTranscriber(model, cores, longAudioTranscriber);
+        batchExecutor.execute(() -> {
+            try {
+                transcriber.transcribe(sources, new BatchTranscriber.Listener() {
+                    @Override
+                    public void onFileTranscribed(BatchTranscriber.FileResult result) {
+                        handler.post(() -> transcriptAdapter.add(getString(R.string.batch_file_result, result.name, result.text)));
+                    }
 
-                if (commandMatched && resp != null) {
-                    Log.i(TAG, "Command Matched: \"" + partialText + "\" -> Response: \"" + resp + "\"");
-                    if (jarvisResponseView != null) {
-                        jarvisResponseView.setText(resp);
+                    @Override
+                    public void onFileFailed(String name, IOException e) {
+                        handler.post(() -> transcriptAdapter.add(getString(R.string.error_prefix) + name + ": " + e.getMessage()));
                     }
-                    // speakText(resp); // Removed speaking the response
 
-                    if (resultView != null) {
-                        resultView.append("\n" + "فرمان: " + partialText);
-                        scrollToBottom(resultView);
+                    @Override
+                    public void onBatchFinished(BatchTranscriber.BatchReport report) {
+                        handler.post(() -> {
+                            batchRunning = false;
+                            Toast.makeText(VoskActivity.this, getString(R.string.batch_finished, report.files, report.throughput()),
+                                    Toast.LENGTH_LONG).show();
+                        });
                     }
-                } else if (jarvisResponseView != null) {
-                    // Only update listening status if no command matched
-                    jarvisResponseView.setText(getString(R.string.listening_status, partialText));
-                }
-            } else if (currentState == STATE_MIC && isPaused) {
-                Log.v(TAG, "Partial result received while paused, ignoring: " + partialText);
-            } else {
-                Log.w(TAG, "onPartialResult received but state is not MIC. State: " + stateToString(currentState));
+                });
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Batch transcription interrupted.");
+                Thread.currentThread().interrupt();
+            } finally {
+                modelOwner.releaseModel(model);
             }
         });
     }
 
+    // --- RecognitionService.Client Implementation ---
     @Override
-    public void onError(final Exception e) {
-        Log.e(TAG, "Recognition Error", e);
-        mainHandler.post(() -> {
-            setErrorState(getString(R.string.error_recognizer) + e.getMessage());
-            if (speechService != null) {
-                speechService.stop();
-                speechService.shutdown();
-                speechService = null;
-                isPaused = false; // Reset pause on error
-            }
-        });
+    public void onModelLoaded() {
+        if (currentState != STATE_MIC && currentState != STATE_CALIBRATING) {
+            setUiState(STATE_READY);
+        }
+        Log.i(TAG, "Time to READY: " + (System.nanoTime() - createTimeNanos) / 1_000_000
+                + " ms, peak RSS: " + ModelCache.readPeakRssKb() + " kB");
     }
 
     @Override
-    public void onTimeout() {
-        Log.w(TAG, "Recognition Timeout (Silence Detected)");
-        mainHandler.post(() -> {
-            if (currentState == STATE_MIC && speechService != null) {
-                if (resultView != null) {
-                    resultView.append("\n" + getString(R.string.timeout_message));
-                    scrollToBottom(resultView);
-                }
-                if (jarvisResponseView != null && jarvisResponseView.getText().toString().startsWith(getString(R.string.listening_status_prefix))) {
-                    jarvisResponseView.setText(R.string.listening_status_empty);
-                }
-                Log.d(TAG, "Timeout detected, continuing listening (MIC state).");
-                // Option: Stop listening on timeout
-                // recognizeMicrophone();
-                // setUiState(STATE_DONE);
+    public void onModelError(IOException exception) {
+        setErrorState("Failed to unpack/load the model: " + exception.getMessage());
+    }
+
+    @Override
+    public void onPartialText(String partialText) {
+        if (currentState == STATE_MIC) {
+            if (jarvisResponseView != null) {
+                jarvisResponseView.setText(getString(R.string.listening_status, partialText));
             }
-        });
+        } else {
+            Log.w(TAG, "onPartialText received but state is not MIC. State: " + stateToString(currentState));
+        }
     }
 
-    // --- Media Key Control ---
-    private void sendMediaKeyEvent(int keyCode) {
-        if (audioManager == null) {
-            Log.e(TAG, "AudioManager not initialized. Cannot send media key.");
-            return;
+    @Override
+    public void onCommand(CommandMatcher.Command command, String partialText) {
+        String resp = getString(command.getResponseResId());
+        Log.i(TAG, "Command Matched: \"" + partialText + "\" -> Response: \"" + resp + "\"");
+        if (jarvisResponseView != null) {
+            jarvisResponseView.setText(resp);
         }
-        Log.d(TAG, "Dispatching media key event: " + KeyEvent.keyCodeToString(keyCode));
-        KeyEvent downEvent = new KeyEvent(KeyEvent.ACTION_DOWN, keyCode);
-        audioManager.dispatchMediaKeyEvent(downEvent);
-        KeyEvent upEvent = new KeyEvent(KeyEvent.ACTION_UP, keyCode);
-        audioManager.dispatchMediaKeyEvent(upEvent);
+    }
+
+    @Override
+    public void onFinalText(String extractedText) {
+        // The service has already added the line to the transcript.
+        if (currentState == STATE_MIC) {
+            Log.d(TAG, "Final result received, continuing listening (MIC state).");
+        } else {
+            Log.d(TAG, "Final result received after listening stopped. State: " + stateToString(currentState));
+        }
+    }
+
+    @Override
+    public void onRecognitionError(Exception e) {
+        setErrorState(getString(R.string.error_recognizer) + e.getMessage());
+    }
+
+    @Override
+    public void onListeningStopped() {
+        setUiState(STATE_DONE);
+    }
+
+    @Override
+    public void onTranscriptChanged() {
+        if (transcriptAdapter != null) transcriptAdapter.notifyDataSetChanged();
     }
 
     // --- UI State Management --- MODIFIED ---
@@ -541,6 +517,8 @@ public class VoskActivity extends Activity implements
 
         Log.d(TAG, "UI State Transition: " + stateToString(this.currentState) + " -> " + stateToString(state));
         this.currentState = state;
+        if (service != null) service.getMetrics().recordStateTransition(state);
+        boolean isPaused = service != null && service.isPaused();
 
         cB = findViewById(R.id.calibrate_button);
         rMB = findViewById(R.id.recognize_mic);
@@ -581,8 +559,9 @@ public class VoskActivity extends Activity implements
         }
 
         // --- Button Enable/Disable Logic ---
-        boolean isModelReady = (model != null);
-        boolean canCalibrate = (state == STATE_READY || state == STATE_DONE || state == STATE_ERROR) && speechService == null;
+        boolean isModelReady = service != null && service.getModel() != null;
+        boolean canCalibrate = (state == STATE_READY || state == STATE_DONE || state == STATE_ERROR)
+                && service != null && !service.isListening();
         boolean canListen = (state == STATE_READY || state == STATE_DONE || state == STATE_ERROR) && isModelReady;
         boolean isListening = (state == STATE_MIC);
         boolean canPause = isListening; // Can only pause/resume if actively listening (in MIC state)
@@ -595,9 +574,9 @@ public class VoskActivity extends Activity implements
         if (pB instanceof ToggleButton) {
             ToggleButton togglePauseButton = (ToggleButton) pB;
             togglePauseButton.setEnabled(canPause);
-            // Set checked state based on our local isPaused variable ONLY when enabled
+            // Set checked state based on the service's pause state ONLY when enabled
             if (canPause) {
-                togglePauseButton.setChecked(this.isPaused); // <<< Use local isPaused state
+                togglePauseButton.setChecked(isPaused);
             } else {
                 togglePauseButton.setChecked(false); // Ensure unchecked when disabled
             }
@@ -632,9 +611,9 @@ public class VoskActivity extends Activity implements
             return;
         }
         Log.e(TAG, "Error State Set: " + message);
-        if (resultView != null) {
-            resultView.setText(getString(R.string.recognition_log_title) + "\n" + getString(R.string.error_prefix) + message);
-            scrollToBottom(resultView);
+        if (transcriptAdapter != null) {
+            transcriptAdapter.clear();
+            transcriptAdapter.add(getString(R.string.error_prefix) + message);
         }
         setUiState(STATE_ERROR);
     }
@@ -644,32 +623,22 @@ public class VoskActivity extends Activity implements
         // This method is called by the ToggleButton's OnCheckedChangeListener
         Log.d(TAG, "Pause Toggled via Button: " + checked);
 
-        if (speechService != null && currentState == STATE_MIC) {
-            this.isPaused = checked; // <<< Update local state FIRST
-            speechService.setPause(this.isPaused); // Tell the service the new state
-            Log.i(TAG, "SpeechService pause set to: " + this.isPaused);
+        if (service != null && service.isListening() && currentState == STATE_MIC) {
+            service.setPaused(checked);
 
-            // Update UI text immediately based on the new local state
+            // Update UI text immediately based on the new state
             if (jarvisResponseView != null) {
-                jarvisResponseView.setText(this.isPaused ? R.string.paused_status : R.string.listening_status_empty);
-            }
-
-            // Ensure the button visually reflects the state (might be redundant if setUiState is called, but safe)
-            if (pauseButton != null) {
-                pauseButton.setChecked(this.isPaused);
+                jarvisResponseView.setText(checked ? R.string.paused_status : R.string.listening_status_empty);
             }
-
         } else {
-            // If service is null or not in MIC state, the button shouldn't be enabled,
-            // but if it somehow gets called, log it and potentially reset visual state.
+            // If not listening or not in MIC state, the button shouldn't be enabled,
+            // but if it somehow gets called, log it and reset visual state.
             Log.w(TAG, "Pause toggled but service not running or not in MIC state.");
-            this.isPaused = false; // Ensure local state is not paused
             if (pauseButton != null) {
                 pauseButton.setChecked(false); // Reset button visual state
             }
         }
         // We DO NOT call setUiState here because the overall *Activity* state (STATE_MIC) hasn't changed.
-        // Only the internal pause status has changed, which we handle directly.
     }
 
 
@@ -678,63 +647,44 @@ public class VoskActivity extends Activity implements
     protected void onResume() {
         super.onResume();
         Log.d(TAG, "onResume - Current State: " + stateToString(currentState));
-        if (currentState == STATE_ERROR && model != null) {
+        if (service == null) return; // onServiceBound syncs the state
+        if (currentState == STATE_ERROR && service.getModel() != null) {
             Log.d(TAG, "onResume: Recovering from error state to READY.");
             setUiState(STATE_READY);
-        } else if (currentState == STATE_START && model == null) {
+        } else if (currentState == STATE_START && service.getModel() == null) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
                 Log.d(TAG, "onResume: Permission granted, attempting model init.");
                 initModel();
             }
         }
-        // Reset pause state on resume? Optional, depends on desired behavior.
-        // isPaused = false;
-        // if (pauseButton != null) pauseButton.setChecked(false);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        // Listening carries on in the service.
         Log.d(TAG, "onPause - Current State: " + stateToString(currentState));
-        if (speechService != null) {
-            Log.i(TAG, "onPause: Stopping active speech service.");
-            speechService.stop();
-            speechService.shutdown();
-            speechService = null;
-            isPaused = false; // Reset pause state when stopping
-            // Update UI state *before* pause completes fully
-            setUiState(STATE_DONE);
-        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "onDestroy - Shutting down resources.");
+        Log.d(TAG, "onDestroy - Unbinding from the recognition service.");
 
-        if (speechService != null) {
-            Log.w(TAG, "onDestroy: SpeechService was not null, shutting down now.");
-            speechService.stop();
-            speechService.shutdown();
-            speechService = null;
-        }
+        batchExecutor.shutdownNow();
+        if (longAudioTranscriber != null) longAudioTranscriber.shutdown();
 
-        Log.d(TAG, "Shutting down calibration executor...");
-        calibrationExecutor.shutdownNow();
-        try {
-            if (!calibrationExecutor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
-                Log.w(TAG, "Calibration executor did not terminate in time.");
-            } else {
-                Log.d(TAG, "Calibration executor terminated.");
-            }
-        } catch (InterruptedException e) {
-            Log.e(TAG, "Interrupted while waiting for calibration executor termination.", e);
-            Thread.currentThread().interrupt();
+        // A session keeps the service in the foreground; otherwise leaving the app ends it.
+        boolean stopService = isFinishing() && (service == null || !service.isListening());
+        if (service != null) {
+            stopCalibration();
+            service.setClient(null);
+            service = null;
         }
-
-        if (model != null) {
-            Log.d(TAG, "Setting model reference to null.");
-            model = null;
+        unbindService(serviceConnection);
+        if (stopService) {
+            Log.d(TAG, "Finishing while idle, stopping the recognition service.");
+            stopService(new Intent(this, RecognitionService.class));
         }
 
         if (mainHandler != null) {
@@ -745,59 +695,4 @@ public class VoskActivity extends Activity implements
 
         Log.i(TAG, "onDestroy finished.");
     }
-
-
-    // --- Helper Methods ---
-    private void scrollToBottom(final TextView tv) {
-        if (tv == null || tv.getLayout() == null) return;
-        mainHandler.post(() -> {
-            final Layout layout = tv.getLayout();
-            if (layout != null) {
-                final int scrollAmount = layout.getLineTop(tv.getLineCount()) - tv.getHeight();
-                if (scrollAmount > 0) {
-                    tv.scrollTo(0, scrollAmount);
-                } else {
-                    tv.scrollTo(0, 0);
-                }
-            }
-        });
-    }
-
-    private String extractTextFromHypothesis(String hypothesis, String preferredKey) {
-        if (hypothesis == null || hypothesis.trim().isEmpty()) return "";
-        String trimmedHypothesis = hypothesis.trim();
-
-        if (trimmedHypothesis.startsWith("{") && trimmedHypothesis.endsWith("}")) {
-            try {
-                JSONObject json = new JSONObject(trimmedHypothesis);
-                if (json.has(preferredKey)) {
-                    String text = json.getString(preferredKey);
-                    if (text != null && !text.trim().isEmpty()) return text.trim();
-                }
-                String fallbackKey = preferredKey.equals("text") ? "partial" : "text";
-                if (json.has(fallbackKey)) {
-                    String fallbackText = json.getString(fallbackKey);
-                    if (fallbackText != null && !fallbackText.trim().isEmpty()) {
-                        Log.v(TAG, "Extracted text using fallback key '" + fallbackKey + "'");
-                        return fallbackText.trim();
-                    }
-                }
-                if (json.has("result")) {
-                    String resultText = json.get("result").toString();
-                    if (resultText != null && !resultText.trim().isEmpty() && !resultText.equals("[]")) {
-                        Log.v(TAG, "Extracted text using 'result' key");
-                        return resultText.trim();
-                    }
-                }
-                Log.w(TAG, "Could not find '" + preferredKey + "' or fallback key in JSON: " + trimmedHypothesis);
-                return "";
-            } catch (JSONException e) {
-                Log.e(TAG, "Failed to parse JSON hypothesis: " + trimmedHypothesis, e);
-                return "";
-            }
-        } else {
-            Log.w(TAG, "Hypothesis is not JSON, returning raw: " + trimmedHypothesis);
-            return trimmedHypothesis;
-        }
-    }
-}
\ No newline at end of file
+}
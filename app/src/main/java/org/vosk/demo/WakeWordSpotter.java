@@ -0,0 +1,166 @@
+package org.vosk.demo;
+
+import org.vosk.Recognizer;
+
+import java.util.Locale;
+
+/**
+ * First stage of the always-on pipeline: a {@link Recognizer} constrained to the wake word
+ * (see {@link #grammarJson}) listens all the time, and the full-vocabulary recognizer only
+ * gets audio once the wake word has been heard.
+ * <p>
+ * While asleep, every chunk goes to the spotter and into a pre-roll ring. When the spotter
+ * hears the wake word the spotter wakes up, replays the pre-roll to the full recognizer's
+ * sink (so the wake word and whatever was said right after it are decoded too) and passes
+ * chunks straight through from then on. The caller reports every full-recognizer hypothesis
+ * through {@link #onHypothesis}; after {@code activeTimeoutMs} of audio without any words
+ * the spotter goes back to sleep and the full recognizer should be reset.
+ * <p>
+ * This class has no Android dependencies and is not thread-safe; use it from the thread
+ * that decodes.
+ */
+public final class WakeWordSpotter {
+
+    private final Recognizer spotter;
+    private final String wakeWord;
+    private final long activeTimeoutSamples;
+    private final HypothesisParser parser = new HypothesisParser();
+
+    // Pre-roll ring of the most recent chunks seen while asleep.
+    private final short[][] preRoll;
+    private final int[] preRollLengths;
+    private int preRollStart;
+    private int preRollCount;
+
+    private boolean awake;
+    private long samplesSinceWords;
+
+    private long chunkCount;
+    private long spottedCount;
+    private long wakeCount;
+
+    /**
+     * @param spotter         recognizer built with {@link #grammarJson}({@code wakeWord})
+     * @param chunkSamples    largest chunk that will be passed to {@link #process}
+     * @param preRollMs       audio replayed to the full recognizer on waking up
+     * @param activeTimeoutMs audio without words after which the spotter goes back to sleep
+     */
+    public WakeWordSpotter(Recognizer spotter, String wakeWord, int sampleRate, int chunkSamples,
+                           int preRollMs, int activeTimeoutMs) {
+        this.spotter = spotter;
+        this.wakeWord = wakeWord;
+        this.activeTimeoutSamples = (long) sampleRate * activeTimeoutMs / 1000;
+        long preRollSamples = (long) sampleRate * preRollMs / 1000;
+        int preRollChunks = (int) ((preRollSamples + chunkSamples - 1) / chunkSamples);
+        this.preRoll = new short[preRollChunks][chunkSamples];
+        this.preRollLengths = new int[preRollChunks];
+    }
+
+    /** The Vosk grammar for a spotter recognizer: the wake word, and {@code [unk]} for the rest. */
+    public static String grammarJson(String wakeWord) {
+        return "[\"" + wakeWord + "\", \"" + CommandMatcher.UNKNOWN_WORD + "\"]";
+    }
+
+    /**
+     * Spots the wake word in {@code pcm}, or passes it to {@code full} when awake; returns
+     * whether the full recognizer got audio.
+     */
+    public boolean process(short[] pcm, int length, VoiceActivityGate.Sink full) {
+        chunkCount++;
+        if (awake) {
+            full.accept(pcm, length);
+            idle(length);
+            return true;
+        }
+
+        stashPreRoll(pcm, length);
+        spottedCount++;
+        CharSequence heard = spotter.acceptWaveForm(pcm, length)
+                ? parser.extract(spotter.getResult(), "text")
+                : parser.extract(spotter.getPartialResult(), "partial");
+        if (!containsWakeWord(heard)) return false;
+
+        awake = true;
+        wakeCount++;
+        samplesSinceWords = 0;
+        spotter.reset();
+        spottedCount -= preRollCount; // Pre-roll chunks reach the full recognizer after all
+        for (int i = 0; i < preRollCount; i++) {
+            int slot = (preRollStart + i) % preRoll.length;
+            full.accept(preRoll[slot], preRollLengths[slot]);
+        }
+        preRollStart = 0;
+        preRollCount = 0;
+        return true;
+    }
+
+    /** Reports a full-recognizer hypothesis; any words keep the spotter awake. */
+    public void onHypothesis(String json, boolean isResult) {
+        if (!awake) return;
+        CharSequence text = parser.extract(json, isResult ? "text" : "partial");
+        if (text.length() > 0) samplesSinceWords = 0;
+    }
+
+    /**
+     * Counts {@code length} samples of audio towards the active timeout without decoding
+     * them, e.g. silence skipped by a {@link VoiceActivityGate}.
+     */
+    public void idle(int length) {
+        if (!awake) return;
+        samplesSinceWords += length;
+        if (samplesSinceWords > activeTimeoutSamples) awake = false;
+    }
+
+    private boolean containsWakeWord(CharSequence heard) {
+        if (heard.length() < wakeWord.length()) return false;
+        for (String token : heard.toString().split(" ")) {
+            if (token.equals(wakeWord)) return true;
+        }
+        return false;
+    }
+
+    private void stashPreRoll(short[] pcm, int length) {
+        if (preRoll.length == 0) return;
+        int slot = (preRollStart + preRollCount) % preRoll.length;
+        if (preRollCount == preRoll.length) {
+            preRollStart = (preRollStart + 1) % preRoll.length;
+        } else {
+            preRollCount++;
+        }
+        int copied = Math.min(length, preRoll[slot].length);
+        System.arraycopy(pcm, 0, preRoll[slot], 0, copied);
+        preRollLengths[slot] = copied;
+    }
+
+    /** Goes back to sleep and forgets the pre-roll, keeping the counters. */
+    public void reset() {
+        awake = false;
+        samplesSinceWords = 0;
+        preRollStart = 0;
+        preRollCount = 0;
+        spotter.reset();
+    }
+
+    // --- Metrics ---
+    public boolean isAwake() {
+        return awake;
+    }
+
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    /** Chunks decoded by the spotter only, never by the full recognizer. */
+    public long getSpottedCount() {
+        return spottedCount;
+    }
+
+    public long getWakeCount() {
+        return wakeCount;
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT, "chunks=%d spotterOnly=%d (%.1f%%) wakeUps=%d",
+                chunkCount, spottedCount, chunkCount == 0 ? 0.0 : 100.0 * spottedCount / chunkCount, wakeCount);
+    }
+}
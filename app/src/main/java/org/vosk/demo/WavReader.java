@@ -0,0 +1,171 @@
+package org.vosk.demo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads 16-bit PCM from a RIFF/WAVE file by memory-mapping it.
+ * <p>
+ * The header is parsed in place and the {@code data} chunk is exposed as a read-only view of
+ * the mapping, so audio goes from the page cache straight into the caller's reusable buffer:
+ * no stream buffering and no intermediate copies. Headerless PCM can be read with
+ * {@link #rawPcm}. This class has no Android dependencies and is not thread-safe.
+ */
+public final class WavReader implements Closeable {
+
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746d66;
+    private static final int DATA = 0x61746164;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final ByteBuffer data;
+    private final int sampleRate;
+    private final int channels;
+    private final Closeable owner;
+
+    private WavReader(ByteBuffer data, int sampleRate, int channels, Closeable owner) {
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.owner = owner;
+    }
+
+    /** Maps and parses a WAV file. */
+    public static WavReader open(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps and parses a WAV file stored at {@code offset} inside a larger file, e.g. an
+     * uncompressed APK asset. The descriptor stays owned by the caller.
+     */
+    public static WavReader open(FileDescriptor fd, long offset, long length) throws IOException {
+        FileChannel channel = new FileInputStream(fd).getChannel();
+        return parse(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), null);
+    }
+
+    /** Parses a WAV file already in memory. */
+    public static WavReader wrap(ByteBuffer wav) throws IOException {
+        return parse(wav, null);
+    }
+
+    /** Reads headerless 16-bit little-endian PCM. */
+    public static WavReader rawPcm(ByteBuffer pcm, int sampleRate, int channels) {
+        return new WavReader(pcm, sampleRate, channels, null);
+    }
+
+    private static WavReader parse(ByteBuffer wav, Closeable owner) throws IOException {
+        wav.order(ByteOrder.LITTLE_ENDIAN);
+        int limit = wav.limit();
+        if (limit < 12 || wav.getInt(0) != RIFF || wav.getInt(8) != WAVE) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+        int sampleRate = -1;
+        int channels = -1;
+        int position = 12;
+        while (position + 8 <= limit) {
+            int id = wav.getInt(position);
+            long size = wav.getInt(position + 4) & 0xFFFFFFFFL;
+            int body = position + 8;
+            if (id == FMT) {
+                int format = wav.getShort(body) & 0xFFFF;
+                channels = wav.getShort(body + 2);
+                sampleRate = wav.getInt(body + 4);
+                int bitsPerSample = wav.getShort(body + 14);
+                if ((format != FORMAT_PCM && format != FORMAT_EXTENSIBLE) || bitsPerSample != 16) {
+                    throw new IOException("Unsupported WAV format " + format + "/" + bitsPerSample + " bit, need 16-bit PCM");
+                }
+            } else if (id == DATA) {
+                if (sampleRate <= 0) throw new IOException("WAV data before fmt chunk");
+                int end = (int) Math.min(limit, body + size); // Streams often leave the size unset
+                ByteBuffer data = wav.duplicate();
+                data.position(body).limit(end);
+                return new WavReader(data, sampleRate, channels, owner);
+            }
+            position = (int) Math.min(Integer.MAX_VALUE, body + size + (size & 1));
+        }
+        throw new IOException("No data chunk in WAV file");
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /** Total samples across all channels. */
+    public long getSampleCount() {
+        return data.limit() / 2;
+    }
+
+    public double getDurationSeconds() {
+        return getSampleCount() / (double) channels / sampleRate;
+    }
+
+    public boolean hasRemaining() {
+        return data.hasRemaining();
+    }
+
+    /** Reads up to {@code buffer.length} bytes of PCM; returns the count or -1 at the end. */
+    public int read(byte[] buffer) {
+        int count = Math.min(buffer.length & ~1, data.remaining());
+        if (count == 0 && !data.hasRemaining()) return -1;
+        data.get(buffer, 0, count);
+        return count;
+    }
+
+    /** Reads up to {@code buffer.length} samples; returns the count or -1 at the end. */
+    public int read(short[] buffer) {
+        int count = Math.min(buffer.length, data.remaining() / 2);
+        if (count == 0) return -1;
+        ShortBuffer samples = data.asShortBuffer();
+        samples.get(buffer, 0, count);
+        data.position(data.position() + count * 2);
+        return count;
+    }
+
+    /**
+     * Returns a read-only view of all samples, independent of the read position. Long files
+     * can be processed through it without copying them onto the heap.
+     */
+    public ShortBuffer samples() {
+        ByteBuffer view = data.asReadOnlyBuffer();
+        view.rewind();
+        return view.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+    }
+
+    /** Reads all remaining samples into a new array. */
+    public short[] readAll() {
+        short[] samples = new short[data.remaining() / 2];
+        read(samples);
+        return samples;
+    }
+
+    /** Rewinds to the first sample. */
+    public void rewind() {
+        data.rewind();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (owner != null) owner.close();
+    }
+}
@@ -0,0 +1,74 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AudioStatsTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static short[] constant(int length, int value) {
+        short[] samples = new short[length];
+        Arrays.fill(samples, (short) value);
+        return samples;
+    }
+
+    @Test
+    public void rmsUsesTheCalibrationScale() {
+        AudioStats stats = new AudioStats();
+        // Half of full scale is an RMS of 0.5, i.e. 500 on the calibration scale.
+        assertEquals(500.0, stats.process(constant(160, 16384), 160), DELTA);
+        assertEquals(500.0, AudioStats.rms(constant(160, -16384), 160), DELTA);
+        assertEquals(16384, stats.lastPeak());
+        assertEquals(0.0, stats.process(new short[0], 0), DELTA);
+    }
+
+    @Test
+    public void peakAndZeroCrossings() {
+        AudioStats stats = new AudioStats();
+        short[] alternating = {1000, -2000, 1000, -2000, 1000, -2000, 1000, -32768};
+        stats.process(alternating, alternating.length);
+        assertEquals(32768, stats.lastPeak());
+        assertEquals(7.0 / 8, stats.lastZeroCrossingRate(), DELTA);
+        // Only the first length samples count.
+        stats.process(alternating, 4);
+        assertEquals(2000, stats.lastPeak());
+        assertEquals(3.0 / 4, stats.lastZeroCrossingRate(), DELTA);
+        assertEquals(2, stats.bufferCount());
+        assertEquals(32768, stats.peak());
+        assertEquals(10.0 / 12, stats.zeroCrossingRate(), DELTA);
+    }
+
+    @Test
+    public void sessionTotalsSkipQuietBuffers() {
+        AudioStats stats = new AudioStats(10.0);
+        stats.process(constant(100, 33), 100); // About 1.0
+        stats.process(constant(100, 16384), 100);
+        stats.process(constant(100, 8192), 100);
+        assertEquals(2, stats.bufferCount());
+        assertEquals((500.0 + 250.0) / 2, stats.meanRms(), DELTA);
+        stats.reset();
+        assertEquals(0, stats.bufferCount());
+        assertEquals(0.0, stats.meanRms(), DELTA);
+        assertEquals(0.0, stats.rmsPercentile(50), DELTA);
+    }
+
+    @Test
+    public void percentileFindsTheNoiseFloor() {
+        AudioStats stats = new AudioStats();
+        short[] quiet = constant(100, 328); // About 10
+        short[] loud = constant(100, 16384);
+        for (int i = 0; i < 20; i++) stats.process(quiet, quiet.length);
+        for (int i = 0; i < 80; i++) stats.process(loud, loud.length);
+        double quietRms = AudioStats.rms(quiet, quiet.length);
+        double floor = stats.rmsPercentile(10);
+        // Upper edge of the quiet level's 0.5 dB bin.
+        assertTrue(floor >= quietRms && floor <= quietRms * Math.pow(10, 0.5 / 20));
+        double loudLevel = stats.rmsPercentile(90);
+        assertTrue(loudLevel >= 500.0 && loudLevel <= 500.0 * Math.pow(10, 0.5 / 20));
+    }
+}
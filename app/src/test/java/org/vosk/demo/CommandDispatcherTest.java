@@ -0,0 +1,147 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CommandDispatcherTest {
+
+    private static final String NEXT = "Next Song";
+    private static final String PREVIOUS = "Previous Song";
+    private static final String HELLO = "Hello Machine";
+
+    /** A partial or a result, and the command expected to fire on it (null for none). */
+    private static final class Event {
+        final boolean result;
+        final String text;
+        final String fires;
+
+        Event(boolean result, String text, String fires) {
+            this.result = result;
+            this.text = text;
+            this.fires = fires;
+        }
+    }
+
+    private static Event partial(String text, String fires) {
+        return new Event(false, text, fires);
+    }
+
+    private static Event result(String text, String fires) {
+        return new Event(true, text, fires);
+    }
+
+    /** Expected counters after all events: dispatched, suppressed, reconciled, retracted. */
+    private static final class Case {
+        final String name;
+        final int stablePartials;
+        final Event[] events;
+        final long[] counters;
+
+        Case(String name, int stablePartials, long[] counters, Event... events) {
+            this.name = name;
+            this.stablePartials = stablePartials;
+            this.events = events;
+            this.counters = counters;
+        }
+    }
+
+    private static long[] counters(long dispatched, long suppressed, long reconciled, long retracted) {
+        return new long[]{dispatched, suppressed, reconciled, retracted};
+    }
+
+    private static final Case[] CASES = {
+            new Case("repeated partials fire once", 2, counters(1, 0, 0, 0),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", null),
+                    result("آهنگ بعدی", null)),
+            new Case("a longer text with the same command is suppressed", 2, counters(1, 1, 0, 0),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    partial("آهنگ بعدی لطفا", null),
+                    partial("آهنگ بعدی لطفا", null),
+                    result("آهنگ بعدی لطفا", null)),
+            new Case("a flip restarts the count", 2, counters(1, 0, 0, 0),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ قبلی", null),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ", null),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    result("آهنگ بعدی", null)),
+            new Case("a flip after dispatch fires the other command, returning is suppressed", 2, counters(2, 1, 0, 1),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    partial("آهنگ قبلی", null),
+                    partial("آهنگ قبلی", PREVIOUS),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", null),
+                    result("آهنگ بعدی", null)),
+            new Case("a command only in the result fires at the end", 2, counters(1, 0, 1, 0),
+                    partial("آهنگ", null),
+                    partial("آهنگ", null),
+                    partial("آهنگ بعدی", null),
+                    result("آهنگ بعدی", NEXT)),
+            new Case("a result ranking another command first still contains the dispatched one", 2, counters(2, 0, 1, 0),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    result("سلام ماشین آهنگ بعدی", HELLO)),
+            new Case("a result without the dispatched command retracts it", 2, counters(1, 0, 0, 1),
+                    partial("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    result("", null)),
+            new Case("each utterance fires again", 1, counters(2, 0, 0, 0),
+                    partial("آهنگ بعدی", NEXT),
+                    result("آهنگ بعدی", null),
+                    partial("آهنگ بعدی", NEXT),
+                    result("آهنگ بعدی", null)),
+    };
+
+    // Same table as RecognitionService.createCommandMatcher, minus the Android resource ids.
+    private static CommandMatcher commandTable() {
+        return CommandMatcher.builder()
+                .add(CommandMatcher.Command.named(HELLO).allOf("سلام", "ماشین"))
+                .add(CommandMatcher.Command.named("Machine Wake Word").endsWith("ماشین").maxLength(10))
+                .add(CommandMatcher.Command.named("Play/Pause Music").anyOf("پخش موسیقی", "توقف موسیقی"))
+                .add(CommandMatcher.Command.named(NEXT).anyOf("آهنگ بعدی"))
+                .add(CommandMatcher.Command.named(PREVIOUS).anyOf("آهنگ قبلی"))
+                .fuzzy(true)
+                .build();
+    }
+
+    @Test
+    public void dispatchTable() {
+        CommandMatcher matcher = commandTable();
+        for (Case c : CASES) {
+            RecognitionMetrics metrics = new RecognitionMetrics();
+            CommandDispatcher dispatcher = new CommandDispatcher(matcher, c.stablePartials, metrics);
+            long now = 0;
+            for (int i = 0; i < c.events.length; i++) {
+                Event event = c.events[i];
+                now += 100_000_000L;
+                CommandMatcher.Command fired = event.result
+                        ? dispatcher.onUtteranceEnd(event.text, now) : dispatcher.onPartial(event.text, now);
+                assertEquals(c.name + ", event " + i, event.fires, fired == null ? null : fired.getName());
+            }
+            assertEquals(c.name + ": dispatched", c.counters[0], metrics.get(RecognitionMetrics.Counter.COMMANDS));
+            assertEquals(c.name + ": suppressed", c.counters[1], metrics.get(RecognitionMetrics.Counter.COMMANDS_SUPPRESSED));
+            assertEquals(c.name + ": reconciled", c.counters[2], metrics.get(RecognitionMetrics.Counter.COMMANDS_RECONCILED));
+            assertEquals(c.name + ": retracted", c.counters[3], metrics.get(RecognitionMetrics.Counter.COMMANDS_RETRACTED));
+        }
+    }
+
+    @Test
+    public void dispatchLatencyRunsFromTheFirstMatchingPartial() {
+        RecognitionMetrics metrics = new RecognitionMetrics();
+        CommandDispatcher dispatcher = new CommandDispatcher(commandTable(), 3, metrics);
+        dispatcher.onPartial("آهنگ", 1_000_000L);
+        dispatcher.onPartial("آهنگ بعدی", 2_000_000L);
+        dispatcher.onPartial("آهنگ بعدی", 3_000_000L);
+        assertEquals(NEXT, dispatcher.onPartial("آهنگ بعدی", 5_000_000L).getName());
+        LatencyHistogram latency = metrics.get(RecognitionMetrics.Timer.COMMAND_DISPATCH);
+        assertEquals(1, latency.getCount());
+        assertEquals(3000, latency.getMaxMicros(), 30);
+    }
+}
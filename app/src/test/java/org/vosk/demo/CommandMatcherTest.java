@@ -0,0 +1,101 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link CommandMatcher} against the chain of {@code contains()}/{@code endsWith()}
+ * checks it replaced in {@code VoskActivity.onPartialResult}.
+ */
+public class CommandMatcherTest {
+
+    // Same table as RecognitionService.createCommandMatcher, minus the Android resource ids.
+    private static CommandMatcher commandTable() {
+        return CommandMatcher.builder()
+                .add(CommandMatcher.Command.named("Hello Machine").allOf("سلام", "ماشین"))
+                .add(CommandMatcher.Command.named("Machine Wake Word").endsWith("ماشین").maxLength(10))
+                .add(CommandMatcher.Command.named("Play/Pause Music").anyOf("پخش موسیقی", "توقف موسیقی"))
+                .add(CommandMatcher.Command.named("Next Song").anyOf("آهنگ بعدی"))
+                .add(CommandMatcher.Command.named("Previous Song").anyOf("آهنگ قبلی"))
+                .fuzzy(true)
+                .build();
+    }
+
+    // The original cascade, first match wins.
+    private static String oldCascade(String partial) {
+        String lower = partial.toLowerCase().trim();
+        if (lower.contains("سلام") && lower.contains("ماشین")) return "Hello Machine";
+        if (lower.endsWith("ماشین") && lower.length() < 10) return "Machine Wake Word";
+        if (lower.contains("پخش موسیقی") || lower.contains("توقف موسیقی")) return "Play/Pause Music";
+        if (lower.contains("آهنگ بعدی")) return "Next Song";
+        if (lower.contains("آهنگ قبلی")) return "Previous Song";
+        return null;
+    }
+
+    private static String matchName(CommandMatcher matcher, String hypothesis) {
+        CommandMatcher.Command command = matcher.match(hypothesis);
+        return command == null ? null : command.getName();
+    }
+
+    @Test
+    public void matchesLikeTheOldCascade() {
+        CommandMatcher matcher = commandTable();
+        String[] partials = {
+                "سلام",
+                "سلام ماشین",
+                "ماشین سلام",
+                "ماشین",
+                "خب ماشین",
+                "لطفا ماشین", // Ten characters: too long for the wake word
+                "ماشین را روشن کن",
+                "پخش موسیقی",
+                "لطفا پخش موسیقی را شروع کن",
+                "توقف موسیقی",
+                "آهنگ",
+                "آهنگ بعدی",
+                "آهنگ بعدی را بزن",
+                "آهنگ قبلی",
+                "امروز هوا خیلی خوب است",
+                "",
+                "  سلام ماشین  ",
+        };
+        for (String partial : partials) {
+            assertEquals("\"" + partial + "\"", oldCascade(partial), matchName(matcher, partial));
+        }
+    }
+
+    @Test
+    public void wakeWordAloneOrAfterAShortWord() {
+        CommandMatcher matcher = commandTable();
+        assertEquals("Machine Wake Word", matchName(matcher, "ماشین"));
+        assertEquals("Machine Wake Word", matchName(matcher, "خب ماشین"));
+        // Only at the end, and greetings take priority.
+        assertNull(matchName(matcher, "ماشین کجاست"));
+        assertEquals("Hello Machine", matchName(matcher, "سلام ماشین"));
+    }
+
+    @Test
+    public void unknownWordsFromTheCommandGrammarAreIgnored() {
+        CommandMatcher matcher = commandTable();
+        assertEquals("آهنگ بعدی", CommandMatcher.stripUnknown("[unk] آهنگ بعدی [unk]"));
+        assertEquals("Next Song", matchName(matcher, CommandMatcher.stripUnknown("[unk] آهنگ بعدی [unk]")));
+        // "[unk] ماشین" is too long for the wake word until the filler is stripped.
+        assertEquals("Machine Wake Word", matchName(matcher, CommandMatcher.stripUnknown("[unk] ماشین")));
+        assertNull(matchName(matcher, CommandMatcher.stripUnknown("[unk]")));
+        assertNull(matchName(matcher, CommandMatcher.stripUnknown("[unk] [unk]")));
+        assertTrue(matcher.grammarJson().contains("\"" + CommandMatcher.UNKNOWN_WORD + "\""));
+    }
+
+    @Test
+    public void matchesChecksOneCommandRegardlessOfPriority() {
+        CommandMatcher matcher = commandTable();
+        CommandMatcher.Command music = matcher.match("پخش موسیقی");
+        assertEquals("Hello Machine", matchName(matcher, "سلام ماشین پخش موسیقی"));
+        assertTrue(matcher.matches("سلام ماشین پخش موسیقی", music));
+        assertFalse(matcher.matches("سلام ماشین", music));
+    }
+}
@@ -0,0 +1,104 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HypothesisParserTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private static String extract(HypothesisParser parser, String json, String key) {
+        return parser.extract(json, key).toString();
+    }
+
+    @Test
+    public void extractsThePreferredKeyAndFallsBack() {
+        HypothesisParser parser = new HypothesisParser();
+        assertEquals("سلام ماشین", extract(parser, "{\n  \"partial\" : \"  سلام ماشین \"\n}", "partial"));
+        assertEquals("سلام", extract(parser, "{\"text\": \"سلام\"}", "partial"));
+        assertEquals("متن", extract(parser, "{\"partial\": \"جزئی\", \"text\": \"متن\"}", "text"));
+        assertEquals("جزئی", extract(parser, "{\"partial\": \"جزئی\", \"text\": \"متن\"}", "partial"));
+        // An empty text falls back to the words of the result.
+        assertEquals("آهنگ بعدی", extract(parser,
+                "{\"result\": [{\"word\": \"آهنگ\"}, {\"word\": \"بعدی\"}], \"text\": \"\"}", "text"));
+    }
+
+    @Test
+    public void oddInputGivesPlainOrEmptyText() {
+        HypothesisParser parser = new HypothesisParser();
+        assertEquals("not json", extract(parser, "  not json \n", "text"));
+        assertEquals("", extract(parser, null, "text"));
+        assertEquals("", extract(parser, "   ", "text"));
+        assertEquals("", extract(parser, "{}", "text"));
+        assertEquals("", extract(parser, "{\"text\": \"unterminated", "text"));
+        assertEquals("", extract(parser, "{\"text\" \"no colon\"}", "text"));
+        assertEquals("", extract(parser, "{\"text\": \"a\",}", "text"));
+    }
+
+    @Test
+    public void decodesEscapes() {
+        HypothesisParser parser = new HypothesisParser();
+        assertEquals("a\"b\\c/d\te\u0633", extract(parser, "{\"text\": \"a\\\"b\\\\c\\/d\\te\\u0633\"}", "text"));
+        assertEquals("", extract(parser, "{\"text\": \"bad \\x escape\"}", "text"));
+        assertEquals("", extract(parser, "{\"text\": \"short \\u06\"}", "text"));
+    }
+
+    @Test
+    public void parsesWordsInAnyKeyOrder() {
+        HypothesisParser parser = new HypothesisParser();
+        assertTrue(parser.parse("{\"result\": [\n"
+                + "  {\"conf\": 0.5, \"end\": 1.25, \"start\": 0.75, \"word\": \"سلام\"},\n"
+                + "  {\"word\": \"ماشین\", \"start\": 1.5e0, \"end\": 2, \"extra\": {\"a\": [1, {\"b\": null}]}, \"conf\": 1}\n"
+                + "], \"spk\": [0.1, -2E-3], \"text\": \"سلام ماشین\"}"));
+        assertTrue(parser.hasText());
+        assertFalse(parser.hasPartial());
+        assertEquals("سلام ماشین", parser.text().toString());
+        assertEquals(2, parser.wordCount());
+        assertEquals("سلام", parser.word(0).toString());
+        assertEquals(0.75f, parser.wordStart(0), DELTA);
+        assertEquals(1.25f, parser.wordEnd(0), DELTA);
+        assertEquals(0.5f, parser.wordConf(0), DELTA);
+        assertEquals("ماشین", parser.word(1).toString());
+        assertEquals(1.5f, parser.wordStart(1), DELTA);
+        assertEquals(2f, parser.wordEnd(1), DELTA);
+        assertEquals(1f, parser.wordConf(1), DELTA);
+        StringBuilder out = new StringBuilder(">");
+        parser.appendWord(1, out);
+        assertEquals(">ماشین", out.toString());
+    }
+
+    @Test
+    public void emptyWordsAndNullResultsAreSkipped() {
+        HypothesisParser parser = new HypothesisParser();
+        assertTrue(parser.parse("{\"result\": [{\"word\": \"\"}, {\"word\": \"تنها\", \"conf\": 0.9}, {}], \"text\": \"تنها\"}"));
+        assertEquals(1, parser.wordCount());
+        assertEquals("تنها", parser.word(0).toString());
+        assertTrue(parser.parse("{\"result\": null, \"text\": \"\"}"));
+        assertEquals(0, parser.wordCount());
+        assertFalse(parser.parse("{\"result\": [{\"word\": \"x\", \"start\": oops}]}"));
+    }
+
+    @Test
+    public void buffersAreReusedWithoutLeaking() {
+        HypothesisParser parser = new HypothesisParser();
+        StringBuilder many = new StringBuilder("{\"result\": [");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) many.append(", ");
+            many.append("{\"word\": \"w").append(i).append("\", \"start\": ").append(i).append('}');
+        }
+        assertTrue(parser.parse(many.append("]}")));
+        assertEquals(100, parser.wordCount());
+        assertEquals("w99", parser.word(99).toString());
+        assertEquals(99f, parser.wordStart(99), DELTA);
+
+        assertTrue(parser.parse("{\"partial\": \"کوتاه\"}"));
+        assertTrue(parser.hasPartial());
+        assertFalse(parser.hasText());
+        assertEquals(0, parser.wordCount());
+        assertEquals("کوتاه", parser.partial().toString());
+        assertEquals("", parser.text().toString());
+    }
+}
@@ -0,0 +1,95 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LongAudioTranscriberTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BURST_SAMPLES = 16 * SAMPLE_RATE; // Past the segmenter's 15 s target
+    private static final int PAUSE_SAMPLES = SAMPLE_RATE;
+    private static final int BURSTS = 8;
+    private static final int THREADS = 2;
+
+    /**
+     * Reports each utterance as one word spanning its loud samples, timed the way Vosk does:
+     * from the first sample this recognizer was ever fed.
+     */
+    private static final class ClockedRecognizer implements LongAudioTranscriber.SegmentRecognizer {
+        private long clock;
+        private long firstLoud = -1;
+        private long lastLoud;
+
+        @Override
+        public boolean acceptWaveForm(short[] data, int length) {
+            for (int i = 0; i < length; i++, clock++) {
+                if (data[i] == 0) continue;
+                if (firstLoud < 0) firstLoud = clock;
+                lastLoud = clock + 1;
+            }
+            return false;
+        }
+
+        @Override
+        public String getResult() {
+            throw new AssertionError("acceptWaveForm never ends an utterance");
+        }
+
+        @Override
+        public String getFinalResult() {
+            if (firstLoud < 0) return "{\"text\": \"\"}";
+            String result = String.format(Locale.ROOT,
+                    "{\"result\": [{\"conf\": 1.0, \"end\": %.4f, \"start\": %.4f, \"word\": \"burst\"}], \"text\": \"burst\"}",
+                    lastLoud / (double) SAMPLE_RATE, firstLoud / (double) SAMPLE_RATE);
+            firstLoud = -1;
+            return result;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static WavReader bursts() {
+        ByteBuffer pcm = ByteBuffer.allocate(BURSTS * (BURST_SAMPLES + PAUSE_SAMPLES) * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int b = 0; b < BURSTS; b++) {
+            for (int i = 0; i < BURST_SAMPLES; i++) pcm.putShort((short) ((i / 80) % 2 == 0 ? 8000 : -8000));
+            for (int i = 0; i < PAUSE_SAMPLES; i++) pcm.putShort((short) 0);
+        }
+        pcm.flip();
+        return WavReader.rawPcm(pcm, SAMPLE_RATE, 1);
+    }
+
+    @Test
+    public void wordTimesReferToTheRecordingWhenRecognizersAreReused() throws IOException {
+        AtomicInteger created = new AtomicInteger();
+        LongAudioTranscriber transcriber = new LongAudioTranscriber(sampleRate -> {
+            created.incrementAndGet();
+            return new ClockedRecognizer();
+        }, THREADS);
+        try {
+            LongAudioTranscriber.Transcript transcript = transcriber.transcribe(bursts());
+            assertTrue(transcript.segments >= 2 * THREADS);
+            // Fewer recognizers than segments, so some were fed earlier segments first.
+            assertTrue(created.get() < transcript.segments);
+            assertEquals(BURSTS, transcript.words.size());
+            for (int b = 0; b < BURSTS; b++) {
+                LongAudioTranscriber.Word word = transcript.words.get(b);
+                double start = b * (BURST_SAMPLES + PAUSE_SAMPLES) / (double) SAMPLE_RATE;
+                assertEquals("burst", word.text);
+                assertEquals(start, word.start, 1e-3);
+                assertEquals(start + BURST_SAMPLES / (double) SAMPLE_RATE, word.end, 1e-3);
+            }
+        } finally {
+            transcriber.shutdown();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Test;
+
+public class LosslessAudioCodecTest {
+
+    private static final int[] LENGTHS = {1, 2, 3, 4, 5, 7, 255, 4095, 4096, 4097, LosslessAudioCodec.MAX_FRAME_SAMPLES};
+
+    private static short[] roundTrip(short[] pcm, int length) {
+        LosslessAudioCodec codec = new LosslessAudioCodec();
+        // Encode at an offset into both arrays, as the writer does with its scratch buffer.
+        byte[] encoded = new byte[3 + LosslessAudioCodec.maxEncodedBytes(length)];
+        int bytes = codec.encode(pcm, 0, length, encoded, 3);
+        assertTrue(bytes <= LosslessAudioCodec.maxEncodedBytes(length));
+        assertEquals(bytes, LosslessAudioCodec.frameBytes(encoded, 3, 3 + bytes));
+        assertEquals(-1, LosslessAudioCodec.frameBytes(encoded, 3, 3 + bytes - 1));
+        assertEquals(length, LosslessAudioCodec.frameSamples(encoded, 3));
+        short[] decoded = new short[length + 2];
+        assertEquals(length, LosslessAudioCodec.decode(encoded, 3, decoded, 2));
+        short[] out = new short[length];
+        System.arraycopy(decoded, 2, out, 0, length);
+        return out;
+    }
+
+    private static void assertRoundTrips(String name, short[] pcm) {
+        for (int length : LENGTHS) {
+            if (length > pcm.length) continue;
+            short[] expected = new short[length];
+            System.arraycopy(pcm, 0, expected, 0, length);
+            assertArrayEquals(name + " x" + length, expected, roundTrip(pcm, length));
+        }
+    }
+
+    private static short[] samples(int length, IntUnaryOperator sample) {
+        short[] pcm = new short[length];
+        for (int i = 0; i < length; i++) pcm[i] = (short) sample.applyAsInt(i);
+        return pcm;
+    }
+
+    @Test
+    public void randomNoise() {
+        Random random = new Random(42);
+        assertRoundTrips("random", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES, i -> random.nextInt(65536) - 32768));
+    }
+
+    @Test
+    public void quietNoise() {
+        Random random = new Random(7);
+        assertRoundTrips("quiet", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES, i -> random.nextInt(64) - 32));
+    }
+
+    @Test
+    public void fullScale() {
+        assertRoundTrips("max", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES, i -> Short.MAX_VALUE));
+        assertRoundTrips("min", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES, i -> Short.MIN_VALUE));
+        // A full-scale sine, smooth enough for the high-order predictors.
+        assertRoundTrips("sine", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES,
+                i -> (int) Math.round(32767 * Math.sin(i * 2 * Math.PI / 37))));
+    }
+
+    @Test
+    public void alternatingFullScale() {
+        assertRoundTrips("alternating", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES,
+                i -> i % 2 == 0 ? Short.MIN_VALUE : Short.MAX_VALUE));
+        // Order-3 residuals of a full-scale step reach 8 times the sample range.
+        assertRoundTrips("steps", samples(LosslessAudioCodec.MAX_FRAME_SAMPLES,
+                i -> i % 7 < 3 ? Short.MIN_VALUE : Short.MAX_VALUE));
+    }
+
+    @Test
+    public void silenceTakesAboutABitPerSample() {
+        short[] silence = new short[4096];
+        assertRoundTrips("silent", silence);
+        int bytes = new LosslessAudioCodec().encode(silence, 0, silence.length,
+                new byte[LosslessAudioCodec.maxEncodedBytes(silence.length)], 0);
+        assertTrue(bytes <= LosslessAudioCodec.HEADER_BYTES + silence.length / 8 + 1);
+    }
+
+    @Test
+    public void framesAtAnOffsetInThePcm() {
+        Random random = new Random(3);
+        short[] pcm = samples(10_000, i -> (int) (8000 * Math.sin(i / 5.0)) + random.nextInt(200));
+        LosslessAudioCodec codec = new LosslessAudioCodec();
+        byte[] encoded = new byte[LosslessAudioCodec.maxEncodedBytes(4097)];
+        short[] decoded = new short[4097];
+        for (int offset : new int[]{1, 333, 5903}) {
+            codec.encode(pcm, offset, 4097, encoded, 0);
+            LosslessAudioCodec.decode(encoded, 0, decoded, 0);
+            for (int i = 0; i < decoded.length; i++) assertEquals(pcm[offset + i], decoded[i]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToAPowerOfTwo() {
+        assertEquals(2, new PcmRingBuffer(1, 4).capacity());
+        assertEquals(2, new PcmRingBuffer(2, 4).capacity());
+        assertEquals(4, new PcmRingBuffer(3, 4).capacity());
+        assertEquals(4, new PcmRingBuffer(4, 4).capacity());
+        assertEquals(8, new PcmRingBuffer(5, 4).capacity());
+        assertEquals(1600, new PcmRingBuffer(8, 1600).chunkSamples());
+    }
+
+    @Test
+    public void chunksComeOutInOrderUntilFullOrEmpty() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 8);
+        assertNull(ring.peek());
+        for (int i = 0; i < 4; i++) {
+            short[] chunk = ring.claim();
+            assertNotNull(chunk);
+            chunk[0] = (short) i;
+            ring.publish(i + 1);
+        }
+        assertNull(ring.claim());
+        assertEquals(4, ring.size());
+
+        for (int i = 0; i < 4; i++) {
+            short[] chunk = ring.peek();
+            assertEquals(i, chunk[0]);
+            assertEquals(i + 1, ring.peekLength());
+            // Peeking twice gives the same chunk until it is released.
+            assertSame(chunk, ring.peek());
+            ring.release();
+        }
+        assertNull(ring.peek());
+        assertEquals(0, ring.size());
+        assertNotNull(ring.claim());
+    }
+
+    @Test
+    public void slotsAreReusedAcrossWraparounds() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, 1);
+        short[] first = ring.claim();
+        for (int i = 0; i < 1000; i++) {
+            ring.claim()[0] = (short) i;
+            ring.publish(1);
+            if (i % 2 == 1) {
+                assertEquals(i - 1, ring.peek()[0]);
+                ring.release();
+                assertEquals(i, ring.peek()[0]);
+                ring.release();
+            }
+        }
+        assertEquals(0, ring.size());
+        assertSame(first, ring.claim());
+    }
+
+    @Test
+    public void producerAndConsumerThreadsSeeEveryChunkOnce() throws InterruptedException {
+        final int chunks = 100_000;
+        PcmRingBuffer ring = new PcmRingBuffer(8, 2);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < chunks; i++) {
+                short[] chunk;
+                while ((chunk = ring.claim()) == null) Thread.yield();
+                chunk[0] = (short) i;
+                chunk[1] = (short) (i >> 16);
+                ring.publish(i % 2 + 1);
+            }
+        });
+        producer.start();
+        for (int i = 0; i < chunks; i++) {
+            short[] chunk;
+            while ((chunk = ring.peek()) == null) Thread.yield();
+            assertEquals(i, (chunk[0] & 0xffff) | (chunk[1] << 16));
+            assertEquals(i % 2 + 1, ring.peekLength());
+            ring.release();
+        }
+        producer.join();
+        assertNull(ring.peek());
+    }
+}
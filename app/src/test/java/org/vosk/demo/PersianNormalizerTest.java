@@ -0,0 +1,98 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Covers {@link PersianNormalizer} and the fuzzy matching {@link CommandMatcher} builds on it. */
+public class PersianNormalizerTest {
+
+    private static String match(CommandMatcher matcher, String hypothesis) {
+        CommandMatcher.Command command = matcher.match(hypothesis);
+        return command == null ? null : command.getName();
+    }
+
+    @Test
+    public void foldsArabicVariantsDigitsAndCase() {
+        assertEquals("علی کتاب", PersianNormalizer.normalize("علي كتاب"));
+        assertEquals("موسی", PersianNormalizer.normalize("موسى"));
+        assertEquals("مدرسه", PersianNormalizer.normalize("مدرسة"));
+        assertEquals("اا ا و", PersianNormalizer.normalize("أإ ٱ ؤ"));
+        assertEquals("123 456", PersianNormalizer.normalize("۱۲۳ ٤٥٦"));
+        assertEquals("vosk demo", PersianNormalizer.normalize("Vosk DEMO"));
+    }
+
+    @Test
+    public void dropsDiacriticsAndJoiners() {
+        assertEquals("سلام", PersianNormalizer.normalize("سَلاٰم"));
+        assertEquals("محمد", PersianNormalizer.normalize("مـحـمّد"));
+        assertEquals("می", PersianNormalizer.normalize("م‍ی"));
+        assertEquals(0, PersianNormalizer.normalize('ً'));
+        assertEquals('ی', PersianNormalizer.normalize('ي'));
+    }
+
+    @Test
+    public void separatorsCollapseAndTrim() {
+        assertTrue(PersianNormalizer.isSeparator('‌'));
+        assertTrue(PersianNormalizer.isSeparator('\t'));
+        assertFalse(PersianNormalizer.isSeparator('‍'));
+        assertEquals("می خواهم", PersianNormalizer.normalize("می‌خواهم"));
+        assertEquals("می خواهم", PersianNormalizer.normalize("  می ‌\t خواهم \n"));
+        assertEquals("", PersianNormalizer.normalize(" ‌َ "));
+    }
+
+    @Test
+    public void phoneticKeysMergeHomophonesAndDoubledLetters() {
+        assertEquals(PersianNormalizer.phoneticKey("طوطی"), PersianNormalizer.phoneticKey("توتی"));
+        assertEquals(PersianNormalizer.phoneticKey("صبح"), PersianNormalizer.phoneticKey("سبه"));
+        assertEquals(PersianNormalizer.phoneticKey("ذرت"), PersianNormalizer.phoneticKey("زرت"));
+        assertEquals(PersianNormalizer.phoneticKey("غذا"), PersianNormalizer.phoneticKey("قزا"));
+        assertEquals(PersianNormalizer.phoneticKey("عالی"), PersianNormalizer.phoneticKey("آلی"));
+        assertEquals("بادی", PersianNormalizer.phoneticKey("بعدی"));
+        assertEquals("الا", PersianNormalizer.phoneticKey("اللا"));
+
+        char[] out = new char[8];
+        char[] text = "xطوطیx".toCharArray();
+        int length = PersianNormalizer.phoneticKey(text, 1, 5, out);
+        assertEquals("توتی", new String(out, 0, length));
+        length = PersianNormalizer.phoneticKey("xصبحx", 1, 4, out);
+        assertEquals("سبه", new String(out, 0, length));
+    }
+
+    @Test
+    public void fuzzyMatchingAcceptsNearMisses() {
+        CommandMatcher fuzzy = CommandMatcher.builder()
+                .add(CommandMatcher.Command.named("Play").anyOf("پخش موسیقی"))
+                .add(CommandMatcher.Command.named("Next").anyOf("آهنگ بعدی"))
+                .add(CommandMatcher.Command.named("Bye").anyOf("خداحافظ"))
+                .add(CommandMatcher.Command.named("Short").anyOf("پخش"))
+                .fuzzy(true)
+                .build();
+        // Same phonetic key.
+        assertEquals("Next", match(fuzzy, "آهنگ بادی"));
+        assertEquals("Play", match(fuzzy, "پخش موسیغی"));
+        // One edit for a heard key of up to six letters, two beyond.
+        assertEquals("Play", match(fuzzy, "پخش موسیکی"));
+        assertEquals("Bye", match(fuzzy, "خوداحافزی"));
+        assertNull(match(fuzzy, "خدافظ"));
+        // Keys of three letters or less must match exactly; doubled letters still collapse.
+        assertNull(match(fuzzy, "پخس"));
+        assertEquals("Short", match(fuzzy, "پخشش"));
+        // Too far off.
+        assertNull(match(fuzzy, "آهنگ بد"));
+        assertNull(match(fuzzy, "خدا"));
+
+        CommandMatcher exact = CommandMatcher.builder()
+                .add(CommandMatcher.Command.named("Play").anyOf("پخش موسیقی"))
+                .add(CommandMatcher.Command.named("Next").anyOf("آهنگ بعدی"))
+                .build();
+        assertNull(match(exact, "آهنگ بادی"));
+        assertNull(match(exact, "پخش موسیکی"));
+        // Normalization applies without fuzzy matching too.
+        assertEquals("Play", match(exact, "پخش  موسيقي"));
+        assertEquals("Next", match(exact, "آهنگ‌بعدی"));
+    }
+}
@@ -0,0 +1,125 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedAudioWriterTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("recordings").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    // Speech-like: a slow sine with some noise, and a full-scale burst in the middle.
+    private static short[] audio(int length) {
+        Random random = new Random(length);
+        short[] pcm = new short[length];
+        for (int i = 0; i < length; i++) {
+            pcm[i] = (short) (6000 * Math.sin(i / 7.0) + random.nextInt(400) - 200);
+        }
+        for (int i = length / 2; i < length / 2 + 100 && i < length; i++) {
+            pcm[i] = i % 2 == 0 ? Short.MIN_VALUE : Short.MAX_VALUE;
+        }
+        return pcm;
+    }
+
+    private static void assertPrefix(short[] expected, short[] actual) {
+        assertTrue(actual.length <= expected.length);
+        assertArrayEquals(Arrays.copyOf(expected, actual.length), actual);
+    }
+
+    private void roundTrip(SegmentedAudioWriter.Format format) throws IOException {
+        short[] pcm = audio(3 * SAMPLE_RATE + 4097); // Odd tail: a full frame and one sample
+        File segment;
+        try (SegmentedAudioWriter writer = new SegmentedAudioWriter(dir, SAMPLE_RATE, format, 60_000, 8192)) {
+            // Odd write lengths, so frames and buffer flushes fall anywhere.
+            int[] chunks = {1, 1599, 4097, 3, 8191};
+            int written = 0;
+            for (int c = 0; written < pcm.length; c++) {
+                int length = Math.min(chunks[c % chunks.length], pcm.length - written);
+                short[] chunk = Arrays.copyOfRange(pcm, written, written + length);
+                writer.write(chunk, length, 1000L);
+                written += length;
+            }
+            segment = writer.getSegmentFile();
+            assertEquals(1000L, SegmentedAudioWriter.startTimeMillis(segment));
+            assertTrue(segment.getName().endsWith(format.extension));
+
+            // Mid-segment: what has been flushed so far reads back as a prefix.
+            short[] partial = SegmentedAudioWriter.readSegment(segment);
+            assertTrue(partial.length > 0 && partial.length < pcm.length);
+            assertPrefix(pcm, partial);
+        }
+        assertArrayEquals(pcm, SegmentedAudioWriter.readSegment(segment));
+    }
+
+    @Test
+    public void wavRoundTrip() throws IOException {
+        roundTrip(SegmentedAudioWriter.Format.WAV);
+    }
+
+    @Test
+    public void losslessRoundTrip() throws IOException {
+        roundTrip(SegmentedAudioWriter.Format.LOSSLESS);
+    }
+
+    @Test
+    public void segmentsSplitAtTheirLength() throws IOException {
+        short[] pcm = audio(SAMPLE_RATE / 2);
+        try (SegmentedAudioWriter writer = new SegmentedAudioWriter(dir, SAMPLE_RATE,
+                SegmentedAudioWriter.Format.LOSSLESS, 1000, 4096)) {
+            writer.write(pcm, pcm.length, 1000L);
+            writer.writeSilence(SAMPLE_RATE / 2 + 1, 1500L); // Fills the first segment
+            writer.write(pcm, 5, 2001L);
+            assertEquals(2, writer.getSegmentCount());
+            assertEquals(SAMPLE_RATE + 6, writer.getSamplesWritten());
+        }
+        short[] first = SegmentedAudioWriter.readSegment(new File(dir, "rec-1000.vla"));
+        assertEquals(SAMPLE_RATE + 1, first.length);
+        assertArrayEquals(pcm, Arrays.copyOf(first, pcm.length));
+        assertArrayEquals(new short[SAMPLE_RATE / 2 + 1], Arrays.copyOfRange(first, pcm.length, first.length));
+        assertArrayEquals(Arrays.copyOf(pcm, 5), SegmentedAudioWriter.readSegment(new File(dir, "rec-2001.vla")));
+    }
+
+    @Test
+    public void tornLosslessFrameIsIgnored() throws IOException {
+        short[] pcm = audio(3 * 4096);
+        File segment;
+        try (SegmentedAudioWriter writer = new SegmentedAudioWriter(dir, SAMPLE_RATE,
+                SegmentedAudioWriter.Format.LOSSLESS, 60_000, 4096)) {
+            writer.write(pcm, pcm.length, 1000L);
+            segment = writer.getSegmentFile();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        short[] read = SegmentedAudioWriter.readSegment(segment);
+        assertEquals(2 * 4096, read.length);
+        assertPrefix(pcm, read);
+    }
+}
@@ -0,0 +1,78 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ShortBuffer;
+
+import org.junit.Test;
+
+public class SilenceSegmenterTest {
+
+    private static final int SAMPLE_RATE = 1000;
+    private static final int FRAME = 30; // Samples per 30 ms frame
+
+    // 300 ms target, 600 ms maximum, pauses of 90 ms (three frames) or more.
+    private static SilenceSegmenter segmenter() {
+        return new SilenceSegmenter(SAMPLE_RATE, 300, 600, 90);
+    }
+
+    /** Builds a recording from runs of {@code frames} frames at {@code amplitude}, in pairs. */
+    private static ShortBuffer frames(int... framesAndAmplitude) {
+        int total = 0;
+        for (int i = 0; i < framesAndAmplitude.length; i += 2) total += framesAndAmplitude[i] * FRAME;
+        ShortBuffer samples = ShortBuffer.allocate(total);
+        for (int i = 0; i < framesAndAmplitude.length; i += 2) {
+            for (int s = 0; s < framesAndAmplitude[i] * FRAME; s++) {
+                samples.put((short) (s % 2 == 0 ? framesAndAmplitude[i + 1] : -framesAndAmplitude[i + 1]));
+            }
+        }
+        samples.flip();
+        return samples;
+    }
+
+    @Test
+    public void cutsInThePausesOnceTheTargetIsReached() {
+        // 360 ms of speech and 180 ms of silence, twice.
+        ShortBuffer samples = frames(12, 8000, 6, 0, 12, 8000, 6, 0);
+        int[] cuts = segmenter().segment(samples);
+        // Each cut falls one frame into the pause.
+        assertArrayEquals(new int[]{0, 13 * FRAME, 31 * FRAME, 36 * FRAME}, cuts);
+        assertEquals(0, samples.position());
+    }
+
+    @Test
+    public void shortPausesBeforeTheTargetAreIgnored() {
+        // A long pause before the target, then one too short to cut at after it.
+        ShortBuffer samples = frames(4, 8000, 4, 0, 4, 8000, 2, 0, 4, 8000);
+        assertArrayEquals(new int[]{0, 18 * FRAME}, segmenter().segment(samples));
+    }
+
+    @Test
+    public void longSpeechIsCutAtTheQuietestFrameAfterTheTarget() {
+        // 1.35 s of speech with a softer frame at 15, then 300 ms of silence.
+        ShortBuffer samples = frames(15, 8000, 1, 2000, 29, 8000, 10, 0);
+        int[] cuts = segmenter().segment(samples);
+        // The maximum forces cuts at 15 (softest of 10..19), 25 and 35; the silence gives 46.
+        assertArrayEquals(new int[]{0, 15 * FRAME, 25 * FRAME, 35 * FRAME, 46 * FRAME, 55 * FRAME}, cuts);
+    }
+
+    @Test
+    public void boundariesAreRelativeToThePosition() {
+        ShortBuffer samples = frames(3, 0, 12, 8000, 6, 0, 12, 8000, 6, 0);
+        samples.position(3 * FRAME);
+        int[] cuts = segmenter().segment(samples);
+        assertArrayEquals(new int[]{0, 13 * FRAME, 31 * FRAME, 36 * FRAME}, cuts);
+        assertEquals(3 * FRAME, samples.position());
+    }
+
+    @Test
+    public void shortAndEmptyRecordingsAreOneSegment() {
+        assertArrayEquals(new int[]{0, 0}, segmenter().segment(ShortBuffer.allocate(0)));
+        // A partial last frame still counts.
+        assertArrayEquals(new int[]{0, 45}, segmenter().segment(ShortBuffer.allocate(45)));
+        SilenceSegmenter defaults = new SilenceSegmenter(16000);
+        assertEquals(16000, defaults.getSampleRate());
+        assertArrayEquals(new int[]{0, 16000 * 9}, defaults.segment(frames(16000 * 9 / FRAME, 8000)));
+    }
+}
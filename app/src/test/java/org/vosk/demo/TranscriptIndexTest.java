@@ -0,0 +1,133 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TranscriptIndexTest {
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("transcripts").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    private static TranscriptIndex index(String... utterances) {
+        TranscriptIndex index = new TranscriptIndex();
+        for (String utterance : utterances) {
+            index.startUtterance();
+            for (String word : utterance.split(" ")) index.addWord(word);
+        }
+        return index;
+    }
+
+    private static String positions(List<TranscriptIndex.Hit> hits) {
+        StringBuilder out = new StringBuilder();
+        for (TranscriptIndex.Hit hit : hits) {
+            if (out.length() > 0) out.append(' ');
+            out.append(hit.utterance).append(':').append(hit.position);
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void phrasesDoNotCrossUtterances() {
+        TranscriptIndex index = index("آهنگ بعدی", "سلام ماشین", "بعدی سلام");
+        // "بعدی" ends utterance 0 and "سلام" starts utterance 1: not a phrase.
+        assertEquals("2:4", positions(index.search("بعدی سلام", 10)));
+        assertEquals("", positions(index.search("ماشین بعدی", 10)));
+        assertEquals("", positions(index.search("ماشین بعدی سلام", 10)));
+        TranscriptIndex.Hit hit = index.search("آهنگ بعدی", 10).get(0);
+        assertEquals(0, hit.utterance);
+        assertEquals(0, hit.position);
+        assertEquals(2, hit.length);
+    }
+
+    @Test
+    public void trailingStarMakesTheLastWordAPrefix() {
+        TranscriptIndex index = index("آهنگ بعدی", "آهنگ بهتر", "آهنگ قبلی", "ماشین", "ماشینی", "ماش");
+        assertEquals("1:2 0:0", positions(index.search("آهنگ ب*", 10)));
+        assertEquals("5:8 4:7 3:6", positions(index.search("ماش*", 10)));
+        assertEquals("3:6", positions(index.search("ماشین", 10)));
+        // Without the star only the whole word matches.
+        assertEquals("", positions(index.search("آهنگ ب", 10)));
+        // A bare star is dropped; on its own it finds nothing.
+        assertEquals("2:4 1:2 0:0", positions(index.search("آهنگ *", 10)));
+        assertEquals("", positions(index.search("*", 10)));
+        assertEquals("", positions(index.search("آهنگ ز*", 10)));
+    }
+
+    @Test
+    public void spellingVariantsAreFoundAlike() {
+        // Arabic yeh and kaf, a zero-width non-joiner, a diacritic and upper case.
+        TranscriptIndex index = index("علي", "مي‌خواهم", "كتاب", "سَلام", "Vosk");
+        assertEquals("0:0", positions(index.search("علی", 10)));
+        assertEquals("1:1", positions(index.search("میخواهم", 10)));
+        assertEquals("1:1", positions(index.search("می‌خواهم", 10)));
+        assertEquals("2:2", positions(index.search("کتاب", 10)));
+        assertEquals("3:3", positions(index.search("سلام", 10)));
+        assertEquals("4:4", positions(index.search("vosk", 10)));
+        assertEquals("1:1", positions(index.search("ميخو*", 10)));
+    }
+
+    @Test
+    public void incrementalWordsFollowTheSnapshot() throws IOException {
+        TranscriptIndex index = new TranscriptIndex();
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            String[] first = {"سلام", "ماشین"};
+            String[] second = {"آهنگ", "بعدی"};
+            float[] times = new float[2];
+            store.append(first, times, times, times, 2, 1000L);
+            store.append(second, times, times, times, 2, 2000L);
+            index.addAll(store.snapshot());
+            assertEquals(2, index.utteranceCount());
+            assertEquals(4, index.wordCount());
+
+            // New results are appended to the store and indexed word by word.
+            String[] third = {"سلام", "آهنگ"};
+            store.append(third, times, times, times, 2, 3000L);
+            index.startUtterance();
+            for (String word : third) index.addWord(word);
+            assertEquals("2:4 0:0", positions(index.search("سلام", 10)));
+            assertEquals("2:4", positions(index.search("سلام آهنگ", 10)));
+            assertEquals("", positions(index.search("ماشین آهنگ", 10)));
+
+            // A snapshot that holds nothing new changes nothing.
+            index.addAll(store.snapshot());
+            assertEquals(3, index.utteranceCount());
+            assertEquals(6, index.wordCount());
+            assertEquals(4, index.termCount());
+        }
+    }
+
+    @Test
+    public void hitsAreNewestFirstUpToTheLimit() {
+        TranscriptIndex index = index("سلام ماشین", "سلام", "آهنگ", "سلام سلام", "سلامتی");
+        assertEquals("3:5 3:4 1:2 0:0", positions(index.search("سلام", 10)));
+        assertEquals("3:5 3:4", positions(index.search("سلام", 2)));
+        assertEquals("", positions(index.search("سلام", 0)));
+        // Prefix hits from several terms are merged, still newest first.
+        assertEquals("4:6 3:5 3:4 1:2", positions(index.search("سلا*", 4)));
+        assertEquals("3:4", positions(index.search("سلام سلام", 10)));
+        assertTrue(index.search("  ", 10).isEmpty());
+        assertTrue(index.search("ناشناخته", 10).isEmpty());
+    }
+}
@@ -0,0 +1,247 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TranscriptStoreTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("transcripts").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    private static String result(String... wordStartEnd) {
+        StringBuilder json = new StringBuilder("{\"result\": [");
+        for (int i = 0; i < wordStartEnd.length; i += 3) {
+            if (i > 0) json.append(", ");
+            json.append("{\"conf\": 1.0, \"end\": ").append(wordStartEnd[i + 2])
+                    .append(", \"start\": ").append(wordStartEnd[i + 1])
+                    .append(", \"word\": \"").append(wordStartEnd[i]).append("\"}");
+        }
+        return json.append("], \"text\": \"\"}").toString();
+    }
+
+    @Test
+    public void timesAreRelativeToTheFirstKeptWord() throws IOException {
+        HypothesisParser parser = new HypothesisParser();
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            // A pooled recognizer's clock keeps running across utterances.
+            assertTrue(parser.parse(result("سلام", "120.5", "121.0", "ماشین", "121.25", "122.0")));
+            assertTrue(store.append(parser, 1000L, CommandMatcher.UNKNOWN_WORD));
+            assertTrue(parser.parse(result(CommandMatcher.UNKNOWN_WORD, "300.0", "300.5", "آهنگ", "301.0", "301.5")));
+            assertTrue(store.append(parser, 2000L, CommandMatcher.UNKNOWN_WORD));
+            store.append(new String[]{"بعدی"}, new float[]{42f}, new float[]{42.75f}, new float[]{0.5f}, 1, 3000L);
+
+            TranscriptStore.Snapshot snapshot = store.snapshot();
+            assertEquals(3, snapshot.utteranceCount());
+            assertEquals(0f, snapshot.wordStart(0), DELTA);
+            assertEquals(0.5f, snapshot.wordEnd(0), DELTA);
+            assertEquals(0.75f, snapshot.wordStart(1), DELTA);
+            assertEquals(1.5f, snapshot.wordEnd(1), DELTA);
+            // The unknown word is skipped, so the utterance starts at the next one.
+            assertEquals(1, snapshot.utteranceWordCount(1));
+            assertEquals(0f, snapshot.wordStart(2), DELTA);
+            assertEquals(0.5f, snapshot.wordEnd(2), DELTA);
+            assertEquals(0f, snapshot.wordStart(3), DELTA);
+            assertEquals(0.75f, snapshot.wordEnd(3), DELTA);
+            assertEquals(2000L, snapshot.utteranceTimeMillis(1));
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) out.append(c);
+        return out.toString();
+    }
+
+    private static void appendWords(TranscriptStore store, long timeMillis, String... words) throws IOException {
+        float[] times = new float[words.length];
+        for (int i = 0; i < words.length; i++) times[i] = i;
+        store.append(words, times, times, times, words.length, timeMillis);
+    }
+
+    // Two utterances: "سلام ماشین" at 1000 and "آهنگ بعدی سلام" at 2000.
+    private void writeTwoUtterances() throws IOException {
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            appendWords(store, 1000L, "سلام", "ماشین");
+            appendWords(store, 2000L, "آهنگ", "بعدی", "سلام");
+        }
+    }
+
+    private void appendBytes(String file, byte... bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(dir, file), true)) {
+            out.write(bytes);
+        }
+    }
+
+    private void truncateBy(String file, int bytes) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(new File(dir, file), "rw")) {
+            out.setLength(out.length() - bytes);
+        }
+    }
+
+    private static String text(TranscriptStore.Snapshot snapshot, int utterance) {
+        StringBuilder out = new StringBuilder();
+        snapshot.appendText(utterance, out);
+        return out.toString();
+    }
+
+    private void assertTwoUtterances(TranscriptStore.Snapshot snapshot) {
+        assertEquals(2, snapshot.utteranceCount());
+        assertEquals(5, snapshot.wordCount());
+        assertEquals("سلام ماشین", text(snapshot, 0));
+        assertEquals("آهنگ بعدی سلام", text(snapshot, 1));
+        assertEquals(1000L, snapshot.utteranceTimeMillis(0));
+        assertEquals(2000L, snapshot.utteranceTimeMillis(1));
+        assertEquals(2, snapshot.utteranceFirstWord(1));
+        assertEquals(0, snapshot.utteranceOf(1));
+        assertEquals(1, snapshot.utteranceOf(2));
+        assertEquals(1, snapshot.utteranceOf(4));
+        assertEquals(snapshot.wordId(0), snapshot.wordId(4));
+        assertEquals(2f, snapshot.wordEnd(4), DELTA);
+    }
+
+    @Test
+    public void reopenedStoreKeepsEverythingAndAppendsAfterIt() throws IOException {
+        writeTwoUtterances();
+        assertTwoUtterances(TranscriptStore.Snapshot.open(dir));
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            assertEquals(2, store.utteranceCount());
+            assertEquals(4, store.dictionarySize());
+            appendWords(store, 3000L, "ماشین", "قبلی");
+            TranscriptStore.Snapshot snapshot = store.snapshot();
+            assertEquals(3, snapshot.utteranceCount());
+            assertEquals("ماشین قبلی", text(snapshot, 2));
+            assertEquals(5, snapshot.dictionarySize());
+            assertEquals(snapshot.idOf("ماشین"), snapshot.wordId(1));
+            assertEquals(-1, snapshot.idOf("بعد"));
+        }
+    }
+
+    @Test
+    public void missingStoreGivesAnEmptySnapshot() throws IOException {
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(new File(dir, "missing"));
+        assertEquals(0, snapshot.utteranceCount());
+        assertEquals(0, snapshot.wordCount());
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            assertFalse(store.append(new String[0], new float[0], new float[0], new float[0], 0, 1000L));
+            assertEquals(0, store.snapshot().utteranceCount());
+        }
+    }
+
+    @Test
+    public void tornUtteranceRecordIsDropped() throws IOException {
+        writeTwoUtterances();
+        appendBytes(TranscriptStore.UTTERANCES_FILE, new byte[10]);
+        assertTwoUtterances(TranscriptStore.Snapshot.open(dir));
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            assertEquals(2, store.utteranceCount());
+            appendWords(store, 3000L, "قبلی");
+        }
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+        assertEquals(3, snapshot.utteranceCount());
+        assertEquals("قبلی", text(snapshot, 2));
+        assertEquals(5, snapshot.utteranceFirstWord(2));
+    }
+
+    @Test
+    public void wordsAfterTheLastUtteranceAreDropped() throws IOException {
+        writeTwoUtterances();
+        // Words of an utterance whose record never made it, in some columns only.
+        appendBytes(TranscriptStore.IDS_FILE, new byte[12]);
+        appendBytes(TranscriptStore.STARTS_FILE, new byte[8]);
+        appendBytes(TranscriptStore.ENDS_FILE, new byte[6]);
+        assertTwoUtterances(TranscriptStore.Snapshot.open(dir));
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            appendWords(store, 3000L, "ماشین");
+        }
+        for (String column : new String[]{TranscriptStore.IDS_FILE, TranscriptStore.STARTS_FILE,
+                TranscriptStore.ENDS_FILE, TranscriptStore.CONFS_FILE}) {
+            assertEquals(column, 8 + 6 * 4, new File(dir, column).length());
+        }
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+        assertEquals(3, snapshot.utteranceCount());
+        assertEquals("ماشین", text(snapshot, 2));
+    }
+
+    @Test
+    public void utteranceWithMissingWordsIsDropped() throws IOException {
+        writeTwoUtterances();
+        truncateBy(TranscriptStore.CONFS_FILE, 4); // The last word's confidence never made it
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+        assertEquals(1, snapshot.utteranceCount());
+        assertEquals(2, snapshot.wordCount());
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            assertEquals(1, store.utteranceCount());
+            appendWords(store, 3000L, "قبلی");
+        }
+        snapshot = TranscriptStore.Snapshot.open(dir);
+        assertEquals(2, snapshot.utteranceCount());
+        assertEquals("سلام ماشین", text(snapshot, 0));
+        assertEquals("قبلی", text(snapshot, 1));
+        assertEquals(2, snapshot.utteranceFirstWord(1));
+    }
+
+    @Test
+    public void dictionaryEntryWithoutItsWordIsKept() throws IOException {
+        writeTwoUtterances();
+        byte[] orphan = "قبلی".getBytes(StandardCharsets.UTF_8);
+        appendBytes(TranscriptStore.DICTIONARY_FILE, (byte) orphan.length, (byte) 0);
+        appendBytes(TranscriptStore.DICTIONARY_FILE, orphan);
+        appendBytes(TranscriptStore.DICTIONARY_FILE, (byte) 20, (byte) 0, (byte) 'x'); // Torn entry
+        assertTwoUtterances(TranscriptStore.Snapshot.open(dir));
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            assertEquals(5, store.dictionarySize());
+            appendWords(store, 3000L, "قبلی", "تازه");
+            assertEquals(6, store.dictionarySize());
+        }
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+        assertEquals(4, snapshot.idOf("قبلی"));
+        assertEquals(5, snapshot.idOf("تازه"));
+        assertEquals("قبلی تازه", text(snapshot, 2));
+    }
+
+    @Test
+    public void longWordsAreClippedOnCodePoints() throws IOException {
+        String emoji = "\uD83D\uDE00";
+        String split = repeat('a', 255) + emoji + "b"; // Clipping at 256 would split the pair
+        String whole = repeat('a', 254) + emoji + "b"; // The pair ends at 256
+        HypothesisParser parser = new HypothesisParser();
+        try (TranscriptStore store = TranscriptStore.open(dir)) {
+            appendWords(store, 1000L, split, whole);
+            assertTrue(parser.parse(result(split, "0.0", "1.0", whole, "1.0", "2.0")));
+            assertTrue(store.append(parser, 2000L, CommandMatcher.UNKNOWN_WORD));
+        }
+        TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+        for (int i = 0; i < 4; i += 2) {
+            assertEquals(repeat('a', 255), snapshot.word(snapshot.wordId(i)));
+            assertEquals(repeat('a', 254) + emoji, snapshot.word(snapshot.wordId(i + 1)));
+        }
+        assertEquals(2, snapshot.dictionarySize());
+    }
+}
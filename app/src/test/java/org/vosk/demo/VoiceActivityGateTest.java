@@ -0,0 +1,131 @@
+package org.vosk.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class VoiceActivityGateTest {
+
+    private static final double DELTA = 1e-9;
+    private static final int SAMPLE_RATE = 1000;
+    private static final int CHUNK = 100; // 100 ms
+    private static final int LOUD = 3277; // An RMS of about 100
+    private static final double NOISE_FLOOR = 10.0;
+
+    /** Records the first sample and length of each chunk it is given. */
+    private static final class Recorder implements VoiceActivityGate.Sink {
+        final List<Integer> firstSamples = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+
+        @Override
+        public void accept(short[] pcm, int length) {
+            firstSamples.add((int) pcm[0]);
+            lengths.add(length);
+        }
+    }
+
+    private static short[] chunk(int value) {
+        short[] samples = new short[CHUNK];
+        Arrays.fill(samples, (short) value);
+        return samples;
+    }
+
+    // 200 ms hangover and pre-roll, threshold twice the floor but at least 2.
+    private static VoiceActivityGate gate() {
+        VoiceActivityGate gate = new VoiceActivityGate(SAMPLE_RATE, CHUNK, 200, 200,
+                VoiceActivityGate.DEFAULT_THRESHOLD_FACTOR, VoiceActivityGate.DEFAULT_MIN_THRESHOLD);
+        gate.setNoiseFloor(NOISE_FLOOR);
+        return gate;
+    }
+
+    @Test
+    public void thresholdScalesTheFloorWithAMinimum() {
+        VoiceActivityGate gate = gate();
+        assertEquals(20.0, gate.getThreshold(), DELTA);
+        gate.setNoiseFloor(0.5);
+        assertEquals(VoiceActivityGate.DEFAULT_MIN_THRESHOLD, gate.getThreshold(), DELTA);
+        gate.setNoiseFloor(0.0);
+        assertEquals(0.0, gate.getThreshold(), DELTA);
+    }
+
+    @Test
+    public void withoutAFloorEverythingPasses() {
+        VoiceActivityGate gate = new VoiceActivityGate(SAMPLE_RATE, CHUNK, 200, 200, 2.0, 2.0);
+        Recorder sink = new Recorder();
+        assertTrue(gate.process(chunk(0), CHUNK, sink));
+        gate.setNoiseFloor(-1.0);
+        assertTrue(gate.process(chunk(1), 50, sink));
+        assertEquals(Arrays.asList(0, 1), sink.firstSamples);
+        assertEquals(Arrays.asList(CHUNK, 50), sink.lengths);
+        assertEquals(0, gate.getSkippedCount());
+    }
+
+    @Test
+    public void speechFlushesThePreRollAndHangoverKeepsTheGateOpen() {
+        VoiceActivityGate gate = gate();
+        Recorder sink = new Recorder();
+        // Quiet chunks (RMS of 3, 6 and 9) are held back; the pre-roll keeps the last two.
+        assertFalse(gate.process(chunk(100), CHUNK, sink));
+        assertFalse(gate.process(chunk(200), CHUNK, sink));
+        assertFalse(gate.process(chunk(300), 60, sink));
+        assertTrue(sink.firstSamples.isEmpty());
+        assertEquals(3, gate.getSkippedCount());
+
+        assertTrue(gate.process(chunk(LOUD), CHUNK, sink));
+        assertTrue(gate.isOpen());
+        assertEquals(Arrays.asList(200, 300, LOUD), sink.firstSamples);
+        assertEquals(Arrays.asList(CHUNK, 60, CHUNK), sink.lengths);
+        assertEquals(1, gate.getSkippedCount());
+
+        // 200 ms of hangover, then the gate closes.
+        assertTrue(gate.process(chunk(100), CHUNK, sink));
+        assertTrue(gate.process(chunk(100), CHUNK, sink));
+        assertFalse(gate.process(chunk(100), CHUNK, sink));
+        assertFalse(gate.isOpen());
+
+        assertEquals(7, gate.getChunkCount());
+        assertEquals(2, gate.getSkippedCount());
+        assertEquals(1, gate.getOpenCount());
+        assertEquals(2.0 / 7, gate.getSkippedFraction(), DELTA);
+    }
+
+    @Test
+    public void resetClosesTheGateAndDropsThePreRoll() {
+        VoiceActivityGate gate = gate();
+        Recorder sink = new Recorder();
+        gate.process(chunk(100), CHUNK, sink);
+        gate.process(chunk(LOUD), CHUNK, sink);
+        gate.process(chunk(200), CHUNK, sink);
+        gate.reset();
+        assertFalse(gate.isOpen());
+        assertFalse(gate.process(chunk(300), CHUNK, sink));
+        sink.firstSamples.clear();
+
+        assertTrue(gate.process(chunk(LOUD), CHUNK, sink));
+        assertEquals(Arrays.asList(300, LOUD), sink.firstSamples);
+        assertEquals(2, gate.getOpenCount());
+        assertEquals(5, gate.getChunkCount());
+        // Both quiet chunks were decoded as pre-roll in the end.
+        assertEquals(0, gate.getSkippedCount());
+    }
+
+    @Test
+    public void trackerMovesTheThreshold() {
+        VoiceActivityGate gate = gate();
+        NoiseFloorTracker tracker = new NoiseFloorTracker(1, 2, 0.0, 0.0);
+        gate.setNoiseFloorTracker(tracker);
+        Recorder sink = new Recorder();
+        for (int i = 0; i < 4; i++) gate.process(chunk(LOUD), CHUNK, sink);
+        // The floor followed the steady loud input, so it no longer counts as speech.
+        assertTrue(gate.getThreshold() > 100.0);
+        gate.setNoiseFloorTracker(null);
+        gate.setNoiseFloor(NOISE_FLOOR);
+        assertEquals(20.0, gate.getThreshold(), DELTA);
+    }
+}
@@ -0,0 +1,95 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.LosslessAudioCodec;
+import org.vosk.demo.SegmentedAudioWriter;
+import org.vosk.demo.WavReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Writes the bundled test recording, looped to ten minutes, through
+ * {@link SegmentedAudioWriter} in 100 ms chunks the way {@code AudioRecorder} does, once per
+ * format, and reports how much faster than real time that runs, the disk throughput and the
+ * size relative to PCM. Each recording is read back and compared. Then times the
+ * {@link LosslessAudioCodec} on single chunks.
+ */
+final class AudioRecorderBenchmark {
+
+    private static final String DEFAULT_WAV = "../app/src/main/assets/10001-90210-01803.wav";
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHUNK_SAMPLES = SAMPLE_RATE / 10;
+    private static final int RECORDING_SECONDS = 600;
+
+    static void run(Bench bench, String[] args) throws IOException {
+        String path = DEFAULT_WAV;
+        for (String arg : args) {
+            if (arg.startsWith("--wav=")) path = arg.substring(6);
+        }
+        short[] clip;
+        try (WavReader reader = WavReader.open(new File(path))) {
+            clip = reader.readAll();
+        }
+        short[] pcm = new short[RECORDING_SECONDS * SAMPLE_RATE];
+        for (int offset = 0; offset < pcm.length; offset += clip.length) {
+            System.arraycopy(clip, 0, pcm, offset, Math.min(clip.length, pcm.length - offset));
+        }
+
+        short[] chunk = new short[CHUNK_SAMPLES];
+        for (SegmentedAudioWriter.Format format : SegmentedAudioWriter.Format.values()) {
+            File dir = Files.createTempDirectory("recorder").toFile();
+            try {
+                // Same settings as RecognitionService and AudioRecorder.
+                SegmentedAudioWriter writer = new SegmentedAudioWriter(dir, SAMPLE_RATE, format, 5 * 60_000, 256 * 1024);
+                long start = System.nanoTime();
+                for (int offset = 0; offset < pcm.length; offset += CHUNK_SAMPLES) {
+                    System.arraycopy(pcm, offset, chunk, 0, CHUNK_SAMPLES);
+                    writer.write(chunk, CHUNK_SAMPLES, offset / (SAMPLE_RATE / 1000));
+                }
+                writer.close();
+                long nanos = System.nanoTime() - start;
+                System.out.println(String.format(Locale.ROOT,
+                        "SegmentedAudioWriter/%s %d s in %d segments: %.1f ms (%.0fx real time), encode %.1f ms, "
+                                + "write %.1f ms = %.0f MB/s, %.1f%% of PCM",
+                        format, RECORDING_SECONDS, writer.getSegmentCount(), nanos / 1e6, RECORDING_SECONDS / (nanos / 1e9),
+                        writer.getEncodeNanos() / 1e6, writer.getWriteNanos() / 1e6,
+                        writer.getBytesWritten() / 1e6 / (writer.getWriteNanos() / 1e9),
+                        100.0 * writer.getBytesWritten() / (2.0 * pcm.length)));
+
+                File[] segments = dir.listFiles();
+                Arrays.sort(segments, (a, b) -> Long.compare(SegmentedAudioWriter.startTimeMillis(a),
+                        SegmentedAudioWriter.startTimeMillis(b)));
+                short[] readBack = new short[0];
+                start = System.nanoTime();
+                for (File segment : segments) {
+                    short[] samples = SegmentedAudioWriter.readSegment(segment);
+                    short[] joined = Arrays.copyOf(readBack, readBack.length + samples.length);
+                    System.arraycopy(samples, 0, joined, readBack.length, samples.length);
+                    readBack = joined;
+                }
+                System.out.println(String.format(Locale.ROOT, "SegmentedAudioWriter/%s read back in %.1f ms, identical=%b",
+                        format, (System.nanoTime() - start) / 1e6, Arrays.equals(readBack, pcm)));
+            } finally {
+                File[] files = dir.listFiles();
+                if (files != null) {
+                    for (File file : files) file.delete();
+                }
+                dir.delete();
+            }
+        }
+
+        int chunkCount = clip.length / CHUNK_SAMPLES;
+        LosslessAudioCodec codec = new LosslessAudioCodec();
+        byte[][] frames = new byte[chunkCount][LosslessAudioCodec.maxEncodedBytes(CHUNK_SAMPLES)];
+        for (int c = 0; c < chunkCount; c++) codec.encode(clip, c * CHUNK_SAMPLES, CHUNK_SAMPLES, frames[c], 0);
+        byte[] out = new byte[LosslessAudioCodec.maxEncodedBytes(CHUNK_SAMPLES)];
+        short[] decoded = new short[CHUNK_SAMPLES];
+        bench.run("LosslessAudioCodec/encode 100ms chunk",
+                i -> codec.encode(clip, (i % chunkCount) * CHUNK_SAMPLES, CHUNK_SAMPLES, out, 0));
+        bench.run("LosslessAudioCodec/decode 100ms chunk",
+                i -> LosslessAudioCodec.decode(frames[i % chunkCount], 0, decoded, 0));
+    }
+}
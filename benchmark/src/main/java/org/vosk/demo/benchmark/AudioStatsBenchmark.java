@@ -0,0 +1,61 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.AudioStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Per-buffer cost of {@link AudioStats} against the calibration's previous {@code calculateRms}
+ * loop plus boxing every value into a {@code List<Double>}.
+ */
+final class AudioStatsBenchmark {
+
+    // AudioRecord.getMinBufferSize(16000, MONO, PCM_16BIT) * 2 is typically 1280-3840 bytes.
+    private static final int BUFFER_SAMPLES = 1280;
+    private static final int BUFFER_COUNT = 64;
+
+    static void run(Bench bench) {
+        short[][] buffers = syntheticSpeech();
+        AudioStats stats = new AudioStats(10.0);
+        bench.run("AudioStats/onePass rms+peak+zcr+histogram",
+                i -> stats.process(buffers[i % BUFFER_COUNT], BUFFER_SAMPLES));
+        bench.run("AudioStats/rmsOnly",
+                i -> AudioStats.rms(buffers[i % BUFFER_COUNT], BUFFER_SAMPLES));
+        List<Double> rmsValues = new ArrayList<>();
+        bench.run("AudioStats/previousCalculateRms+boxing",
+                i -> {
+                    double rms = calculateRms(buffers[i % BUFFER_COUNT], BUFFER_SAMPLES);
+                    if (rms > 10) rmsValues.add(rms);
+                    if (rmsValues.size() > 10_000) rmsValues.clear();
+                    return rms;
+                });
+    }
+
+    /** Noise with a speech-like amplitude envelope and a 200 Hz voiced component. */
+    static short[][] syntheticSpeech() {
+        Random random = new Random(7);
+        short[][] buffers = new short[BUFFER_COUNT][BUFFER_SAMPLES];
+        for (int b = 0; b < BUFFER_COUNT; b++) {
+            double envelope = (b % 16) < 6 ? 0.02 : 0.3;
+            for (int i = 0; i < BUFFER_SAMPLES; i++) {
+                double t = (b * BUFFER_SAMPLES + i) / 16000.0;
+                double value = envelope * Math.sin(2 * Math.PI * 200 * t) + 0.01 * random.nextGaussian();
+                buffers[b][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value * 32767));
+            }
+        }
+        return buffers;
+    }
+
+    /** The calibration's RMS loop before AudioStats. */
+    private static double calculateRms(short[] audioData, int length) {
+        if (length <= 0) return 0.0;
+        double sumSquare = 0.0;
+        for (int i = 0; i < length; i++) {
+            double sample = audioData[i] / 32768.0;
+            sumSquare += sample * sample;
+        }
+        return Math.sqrt(sumSquare / length) * 1000;
+    }
+}
@@ -0,0 +1,61 @@
+package org.vosk.demo.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style harness: warms up, then times each invocation individually and
+ * reports mean and tail latency. Results are fed into {@link #sink} so the JIT cannot
+ * eliminate the measured work.
+ */
+final class Bench {
+
+    interface Op {
+        Object run(int iteration);
+    }
+
+    static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+
+    Bench(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    static Bench fromArgs(String[] args) {
+        int warmup = 20_000;
+        int measured = 100_000;
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) warmup = Integer.parseInt(arg.substring(9));
+            if (arg.startsWith("--iterations=")) measured = Integer.parseInt(arg.substring(13));
+        }
+        return new Bench(warmup, measured);
+    }
+
+    void run(String name, Op op) {
+        for (int i = 0; i < warmupIterations; i++) sink = op.run(i);
+
+        long[] samples = new long[measuredIterations];
+        long total = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long start = System.nanoTime();
+            Object result = op.run(i);
+            long elapsed = System.nanoTime() - start;
+            sink = result;
+            samples[i] = elapsed;
+            total += elapsed;
+        }
+        Arrays.sort(samples);
+        System.out.println(String.format(Locale.ROOT,
+                "%-48s mean=%9.1f ns  p50=%8d ns  p99=%8d ns  max=%9d ns",
+                name, (double) total / measuredIterations,
+                percentile(samples, 0.50), percentile(samples, 0.99), samples[samples.length - 1]));
+    }
+
+    static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,42 @@
+package org.vosk.demo.benchmark;
+
+/**
+ * Entry point for the JVM benchmarks. Pass suite names to run a subset: {@code commands},
+ * {@code hypotheses}, {@code audio}, {@code vad}, {@code segment}, {@code metrics},
+ * {@code index} or {@code recorder}; with no suite names every suite runs.
+ * <p>
+ * Options: {@code --warmup=N} and {@code --iterations=N} for every timed operation,
+ * {@code --wav=path} for the suites that replay a recording, {@code --words=N} for
+ * {@code index}.
+ * <p>
+ * {@code recognition} and {@code long-audio} need the model and the native Vosk library and
+ * only run when named; see {@link RecognitionBenchmark} and {@link LongAudioBenchmark} for
+ * their options.
+ */
+public final class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Bench bench = Bench.fromArgs(args);
+        boolean all = true;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) all = false;
+        }
+        if (all || contains(args, "commands")) CommandMatcherBenchmark.run(bench);
+        if (all || contains(args, "hypotheses")) HypothesisParserBenchmark.run(bench);
+        if (all || contains(args, "audio")) AudioStatsBenchmark.run(bench);
+        if (all || contains(args, "vad")) VoiceActivityGateBenchmark.run(bench, args);
+        if (all || contains(args, "segment")) SilenceSegmenterBenchmark.run(bench, args);
+        if (all || contains(args, "metrics")) RecognitionMetricsBenchmark.run(bench);
+        if (all || contains(args, "index")) TranscriptIndexBenchmark.run(bench, args);
+        if (all || contains(args, "recorder")) AudioRecorderBenchmark.run(bench, args);
+        if (contains(args, "recognition")) RecognitionBenchmark.run(args);
+        if (contains(args, "long-audio")) LongAudioBenchmark.run(args);
+    }
+
+    private static boolean contains(String[] args, String suite) {
+        for (String arg : args) {
+            if (arg.equals(suite)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,152 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.CommandMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Per-partial latency of {@link CommandMatcher} with 10, 100 and 1,000 registered commands,
+ * next to the original linear chain of {@code contains()} checks for comparison, and of the
+ * fuzzy matcher on near-miss partials. Accuracy of exact and fuzzy matching is reported on a
+ * labeled set of partials with the spelling variants and misrecognitions seen in practice.
+ */
+final class CommandMatcherBenchmark {
+
+    // Growing partials as emitted by the recognizer during a few utterances.
+    static final String[] PARTIALS = {
+            "سلام",
+            "سلام ماشین",
+            "ماشین",
+            "لطفا",
+            "لطفا پخش",
+            "لطفا پخش موسیقی",
+            "لطفا پخش موسیقی را شروع کن",
+            "آهنگ",
+            "آهنگ بعدی",
+            "آهنگ بعدی را بزن",
+            "امروز هوا",
+            "امروز هوا خیلی خوب است و می خواهم بیرون بروم",
+            "آهنگ قبلی",
+            "توقف موسیقی",
+    };
+
+    // Partial, then the index in commandTable() it should match, or -1 for none.
+    static final Object[][] LABELED = {
+            {"سلام ماشین", 0},
+            {"سلام ماشين", 0}, // Arabic yeh
+            {"سلام ماشینی", 0}, // Trailing letter
+            {"پخش موسيقي", 1},
+            {"لطفا پخش موسیقى", 1}, // Alef maksura
+            {"پخش موسیغی", 1}, // Ghain for qaf
+            {"پخش موصیقی", 1}, // Sad for seen
+            {"توقف موسیقی", 1},
+            {"طوقف موسیقی", 1}, // Tah for teh
+            {"آهنگ بعدي", 2},
+            {"آهنگ بعدى رو بزن", 2},
+            {"اهنگ بعدی", 2}, // Missing madda
+            {"آهنگِ بعدی", 2}, // Kasra
+            {"آهنگ قبلی", 3},
+            {"آهنگ غبلی", 3}, // Ghain for qaf
+            {"آهنگ\u200cقبلی", 3}, // ZWNJ instead of a space
+            {"ماشين", 0}, // The first command also takes either word alone
+            {"امروز هوا خوب است", -1},
+            {"پخش زنده مسابقه", -1},
+            {"آهنگساز معروف", -1},
+            {"سلامتی", -1},
+            {"موسیقی سنتی", -1},
+            {"روشن کردن چراغ", -1},
+    };
+
+    // Partials whose words are not in the vocabulary as spoken, so every token goes to the BK-tree.
+    private static final String[] NEAR_MISSES = {
+            "پخش موسیغی",
+            "آهنگ غبلی",
+            "طوقف موسیقی",
+            "امروز هوا خیلی خوب است و می خواهم بیرون بروم",
+            "سلام ماشینی",
+    };
+
+    private static final String[] WORDS = {
+            "روشن", "خاموش", "چراغ", "اتاق", "آشپزخانه", "صدا", "بلند", "کم", "زیاد", "پنجره",
+            "در", "باز", "بسته", "کولر", "بخاری", "تلویزیون", "کانال", "اخبار", "هوا", "ساعت",
+            "زنگ", "تایمر", "یادآوری", "پیام", "تماس", "مادر", "پدر", "دوست", "نقشه", "مسیر",
+    };
+
+    static void run(Bench bench) {
+        for (int size : new int[]{10, 100, 1000}) {
+            List<String[]> table = commandTable(size);
+            CommandMatcher matcher = compile(table);
+            bench.run("CommandMatcher/automaton commands=" + size,
+                    i -> matcher.match(PARTIALS[i % PARTIALS.length]));
+            bench.run("CommandMatcher/containsChain commands=" + size,
+                    i -> containsChain(table, PARTIALS[i % PARTIALS.length]));
+            CommandMatcher fuzzy = compile(table, true);
+            bench.run("CommandMatcher/fuzzy commands=" + size,
+                    i -> fuzzy.match(PARTIALS[i % PARTIALS.length]));
+            bench.run("CommandMatcher/fuzzy nearMiss commands=" + size,
+                    i -> fuzzy.match(NEAR_MISSES[i % NEAR_MISSES.length]));
+        }
+        List<String[]> table = commandTable(100);
+        accuracy("exact", compile(table, false));
+        accuracy("fuzzy", compile(table, true));
+    }
+
+    private static void accuracy(String name, CommandMatcher matcher) {
+        int correct = 0;
+        int falsePositives = 0;
+        int negatives = 0;
+        for (Object[] labeled : LABELED) {
+            CommandMatcher.Command command = matcher.match((String) labeled[0]);
+            String expected = (Integer) labeled[1] < 0 ? null : "cmd" + labeled[1];
+            String actual = command == null ? null : command.getName();
+            if (expected == null) negatives++;
+            if (expected == null ? actual == null : expected.equals(actual)) {
+                correct++;
+            } else if (expected == null) {
+                falsePositives++;
+            }
+        }
+        System.out.println(String.format(Locale.ROOT, "CommandMatcher/accuracy %-5s correct=%d/%d (%.0f%%) falsePositives=%d/%d",
+                name, correct, LABELED.length, 100.0 * correct / LABELED.length, falsePositives, negatives));
+    }
+
+    /** The five built-in commands followed by synthetic two-word commands. */
+    static List<String[]> commandTable(int size) {
+        List<String[]> table = new ArrayList<>();
+        table.add(new String[]{"سلام", "ماشین"});
+        table.add(new String[]{"پخش موسیقی", "توقف موسیقی"});
+        table.add(new String[]{"آهنگ بعدی"});
+        table.add(new String[]{"آهنگ قبلی"});
+        table.add(new String[]{"ماشین"});
+        Random random = new Random(42);
+        while (table.size() < size) {
+            table.add(new String[]{WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]});
+        }
+        return table;
+    }
+
+    static CommandMatcher compile(List<String[]> table) {
+        return compile(table, false);
+    }
+
+    static CommandMatcher compile(List<String[]> table, boolean fuzzy) {
+        CommandMatcher.Builder builder = CommandMatcher.builder().fuzzy(fuzzy);
+        for (int c = 0; c < table.size(); c++) {
+            builder.add(CommandMatcher.Command.named("cmd" + c).anyOf(table.get(c)));
+        }
+        return builder.build();
+    }
+
+    private static Object containsChain(List<String[]> table, String partial) {
+        String lower = partial.toLowerCase().trim();
+        for (String[] phrases : table) {
+            for (String phrase : phrases) {
+                if (lower.contains(phrase)) return phrase;
+            }
+        }
+        return null;
+    }
+}
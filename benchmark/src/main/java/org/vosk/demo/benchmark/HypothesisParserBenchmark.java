@@ -0,0 +1,79 @@
+package org.vosk.demo.benchmark;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.vosk.demo.HypothesisParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link HypothesisParser} against the previous {@code org.json} extraction path, replaying
+ * hypotheses recorded from the recognizer (pretty-printed exactly as Vosk emits them).
+ */
+final class HypothesisParserBenchmark {
+
+    static void run(Bench bench) throws IOException {
+        String[] hypotheses = loadRecorded();
+        HypothesisParser parser = new HypothesisParser();
+        bench.run("HypothesisParser/streaming",
+                i -> parser.extract(hypotheses[i % hypotheses.length], preferredKey(hypotheses[i % hypotheses.length])).length());
+        bench.run("HypothesisParser/orgJson",
+                i -> extractWithOrgJson(hypotheses[i % hypotheses.length], preferredKey(hypotheses[i % hypotheses.length])).length());
+    }
+
+    /** Recorded results are separated by the closing brace at the start of a line. */
+    static String[] loadRecorded() throws IOException {
+        List<String> hypotheses = new ArrayList<>();
+        try (InputStream in = HypothesisParserBenchmark.class.getResourceAsStream("/hypotheses.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            StringBuilder current = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                current.append(line).append('\n');
+                if (line.equals("}")) {
+                    hypotheses.add(current.toString());
+                    current.setLength(0);
+                }
+            }
+        }
+        return hypotheses.toArray(new String[0]);
+    }
+
+    private static String preferredKey(String hypothesis) {
+        return hypothesis.contains("\"partial\"") ? "partial" : "text";
+    }
+
+    /** The extraction previously done in VoskActivity, minus logging. */
+    private static String extractWithOrgJson(String hypothesis, String preferredKey) {
+        if (hypothesis == null || hypothesis.trim().isEmpty()) return "";
+        String trimmedHypothesis = hypothesis.trim();
+        if (!trimmedHypothesis.startsWith("{") || !trimmedHypothesis.endsWith("}")) return trimmedHypothesis;
+        try {
+            JSONObject json = new JSONObject(trimmedHypothesis);
+            if (json.has(preferredKey)) {
+                String text = json.getString(preferredKey);
+                if (text != null && !text.trim().isEmpty()) return text.trim();
+            }
+            String fallbackKey = preferredKey.equals("text") ? "partial" : "text";
+            if (json.has(fallbackKey)) {
+                String fallbackText = json.getString(fallbackKey);
+                if (fallbackText != null && !fallbackText.trim().isEmpty()) return fallbackText.trim();
+            }
+            if (json.has("result")) {
+                String resultText = json.get("result").toString();
+                if (resultText != null && !resultText.trim().isEmpty() && !resultText.equals("[]")) {
+                    return resultText.trim();
+                }
+            }
+            return "";
+        } catch (JSONException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.LibVosk;
+import org.vosk.LogLevel;
+import org.vosk.Model;
+import org.vosk.demo.LongAudioTranscriber;
+import org.vosk.demo.WavReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Measures how {@link LongAudioTranscriber} scales with threads: the recording the
+ * {@code segment} suite builds is transcribed with a parallelism of 1, 2, 4, ... up to the
+ * number of cores, and each run reports its wall time, real-time factor and speedup over one
+ * thread. Near-linear scaling shows as an efficiency (speedup / threads) close to 1.
+ * <p>
+ * Options: {@code --model=dir}, {@code --wav=file}. Needs the model and the native Vosk
+ * library, so it only runs when named: {@code long-audio}.
+ */
+final class LongAudioBenchmark {
+
+    private static final String DEFAULT_MODEL = "../models/src/main/assets/vosk-model-small-fa-0.42";
+    private static final int SAMPLE_RATE = 16000;
+
+    static void run(String[] args) throws IOException {
+        String modelPath = DEFAULT_MODEL;
+        for (String arg : args) {
+            if (arg.startsWith("--model=")) modelPath = arg.substring(8);
+        }
+        short[] audio = SilenceSegmenterBenchmark.longRecording(args);
+        ByteBuffer pcm = ByteBuffer.allocateDirect(audio.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(audio);
+
+        LibVosk.setLogLevel(LogLevel.WARNINGS);
+        int cores = Runtime.getRuntime().availableProcessors();
+        Model model = new Model(modelPath);
+        try {
+            long singleThreadNanos = 0;
+            for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+                LongAudioTranscriber transcriber = new LongAudioTranscriber(model, threads);
+                LongAudioTranscriber.Transcript transcript;
+                try {
+                    transcript = transcriber.transcribe(WavReader.rawPcm(pcm.duplicate(), SAMPLE_RATE, 1));
+                } finally {
+                    transcriber.shutdown();
+                }
+                if (threads == 1) singleThreadNanos = transcript.wallNanos;
+                double speedup = singleThreadNanos / (double) transcript.wallNanos;
+                System.out.println(String.format(Locale.ROOT,
+                        "LongAudioTranscriber/%d threads: %s, speedup %.2fx, efficiency %.2f",
+                        threads, transcript, speedup, speedup / threads));
+                if (threads == cores) break;
+            }
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.LibVosk;
+import org.vosk.LogLevel;
+import org.vosk.Model;
+import org.vosk.Recognizer;
+import org.vosk.demo.CommandMatcher;
+import org.vosk.demo.HypothesisParser;
+import org.vosk.demo.LatencyHistogram;
+import org.vosk.demo.VoiceActivityGate;
+import org.vosk.demo.WakeWordSpotter;
+import org.vosk.demo.WavReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end recognition benchmark against the Vosk desktop bindings and the same model the
+ * app bundles.
+ * <p>
+ * Every WAV file (the bundled test clip plus any {@code *.wav} in {@code --corpus=dir}) is fed
+ * to a fresh recognizer in 100 ms chunks, exactly as {@code AudioCaptureEngine} delivers live
+ * audio, but as fast as the recognizer accepts it. Per run it records the real-time factor,
+ * time to the first non-empty partial (in audio time and in wall time), the audio-time cadence
+ * of partial changes, the latency of the calls that return utterance and final results, and
+ * the word error rate when a reference transcript {@code name.txt} sits next to
+ * {@code name.wav}. The report, with peak resident memory, is written as JSON to stdout or
+ * {@code --out=file} so that results can be compared between builds.
+ * <p>
+ * With {@code --compare-grammar} every file is also decoded by a recognizer constrained to the
+ * app's command grammar, and each file reports both modes side by side: real-time factor, CPU
+ * time per audio second, and when (in audio and wall time) the first command was matched.
+ * {@code --wake-word} adds the two-stage pipeline to that comparison: a {@link WakeWordSpotter}
+ * in front of the full recognizer, as the app runs dictation.
+ * <p>
+ * Options: {@code --model=dir}, {@code --corpus=dir}, {@code --wav=file}, {@code --runs=N},
+ * {@code --out=file}, {@code --compare-grammar}, {@code --wake-word}. Not part of the default
+ * suite set; run it as {@code recognition}.
+ */
+final class RecognitionBenchmark {
+
+    private static final String DEFAULT_MODEL = "../models/src/main/assets/vosk-model-small-fa-0.42";
+    private static final String DEFAULT_WAV = "../app/src/main/assets/10001-90210-01803.wav";
+    private static final int CHUNK_MS = 100;
+    private static final String WAKE_WORD = "ماشین"; // Same settings as RecognitionService
+    private static final int WAKE_PRE_ROLL_MS = 1500;
+    private static final int WAKE_ACTIVE_TIMEOUT_MS = 5000;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** Mirrors the command table in {@code RecognitionService.createCommandMatcher()}. */
+    static CommandMatcher appCommands() {
+        return CommandMatcher.builder()
+                .add(CommandMatcher.Command.named("Hello Machine").allOf("سلام", "ماشین"))
+                .add(CommandMatcher.Command.named("Machine Wake Word").endsWith("ماشین").maxLength(10))
+                .add(CommandMatcher.Command.named("Play/Pause Music").anyOf("پخش موسیقی", "توقف موسیقی"))
+                .add(CommandMatcher.Command.named("Next Song").anyOf("آهنگ بعدی"))
+                .add(CommandMatcher.Command.named("Previous Song").anyOf("آهنگ قبلی"))
+                .fuzzy(true)
+                .build();
+    }
+
+    static void run(String[] args) throws IOException {
+        String modelPath = DEFAULT_MODEL;
+        String wavPath = DEFAULT_WAV;
+        String corpusPath = null;
+        String outPath = null;
+        int runs = 3;
+        boolean compareGrammar = false;
+        boolean wakeWord = false;
+        for (String arg : args) {
+            if (arg.startsWith("--model=")) modelPath = arg.substring(8);
+            if (arg.startsWith("--wav=")) wavPath = arg.substring(6);
+            if (arg.startsWith("--corpus=")) corpusPath = arg.substring(9);
+            if (arg.startsWith("--out=")) outPath = arg.substring(6);
+            if (arg.startsWith("--runs=")) runs = Integer.parseInt(arg.substring(7));
+            if (arg.equals("--compare-grammar")) compareGrammar = true;
+            if (arg.equals("--wake-word")) wakeWord = true;
+        }
+
+        List<File> files = new ArrayList<>();
+        files.add(new File(wavPath));
+        if (corpusPath != null) {
+            File[] corpus = new File(corpusPath).listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".wav"));
+            if (corpus == null) throw new IOException("Corpus directory not found: " + corpusPath);
+            Arrays.sort(corpus);
+            files.addAll(Arrays.asList(corpus));
+        }
+
+        LibVosk.setLogLevel(LogLevel.WARNINGS);
+        long loadStart = System.nanoTime();
+        Model model = new Model(modelPath);
+        long modelLoadMs = (System.nanoTime() - loadStart) / 1_000_000;
+
+        Json json = new Json();
+        json.beginObject();
+        CommandMatcher commands = appCommands();
+        json.field("model", modelPath).field("modelLoadMs", modelLoadMs).field("chunkMs", CHUNK_MS).field("runs", runs);
+        if (compareGrammar) json.field("grammar", commands.grammarJson());
+        json.name("files").beginArray();
+        double totalAudioSeconds = 0;
+        double totalDecodeSeconds = 0;
+        long wordErrors = 0;
+        long referenceWords = 0;
+        for (File file : files) {
+            String reference = readReference(file);
+            double[] rtfs = new double[runs];
+            RunResult last = null;
+            for (int r = 0; r < runs; r++) {
+                last = decode(model, file, null, commands);
+                rtfs[r] = last.realTimeFactor();
+                totalAudioSeconds += last.audioSeconds;
+                totalDecodeSeconds += last.decodeNanos / 1e9;
+            }
+            Arrays.sort(rtfs);
+            json.beginObject().field("file", file.getName()).field("audioSeconds", last.audioSeconds)
+                    .field("rtfMedian", rtfs[runs / 2]).field("rtfMin", rtfs[0]).field("rtfMax", rtfs[runs - 1])
+                    .field("firstPartialAudioMs", last.firstPartialAudioMs)
+                    .field("firstPartialWallMs", last.firstPartialWallMs)
+                    .field("partialChanges", last.partialCadence.getCount())
+                    .field("partialCadenceMeanMs", last.partialCadence.getMeanMicros() / 1000.0)
+                    .field("partialCadenceP99Ms", last.partialCadence.getPercentileMicros(99) / 1000.0)
+                    .field("acceptP50Us", last.acceptLatency.getPercentileMicros(50))
+                    .field("acceptP99Us", last.acceptLatency.getPercentileMicros(99))
+                    .field("utterances", last.resultLatency.getCount())
+                    .field("resultLatencyP50Us", last.resultLatency.getPercentileMicros(50))
+                    .field("resultLatencyMaxUs", last.resultLatency.getMaxMicros())
+                    .field("finalResultLatencyUs", last.finalResultMicros)
+                    .field("text", last.text);
+            if (reference != null) {
+                String[] expected = words(reference);
+                int errors = editDistance(expected, words(last.text));
+                wordErrors += errors;
+                referenceWords += expected.length;
+                json.field("referenceWords", expected.length).field("wordErrors", errors)
+                        .field("wer", expected.length == 0 ? 0.0 : errors / (double) expected.length);
+            }
+            if (compareGrammar || wakeWord) {
+                json.name("modes").beginObject();
+                modeReport(json, "dictation", runs, () -> decode(model, file, null, commands));
+                if (compareGrammar) {
+                    modeReport(json, "command", runs, () -> decode(model, file, commands.grammarJson(), commands));
+                }
+                if (wakeWord) {
+                    modeReport(json, "wakeWord", runs, () -> decodeTwoStage(model, file, commands));
+                }
+                json.endObject();
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.name("summary").beginObject()
+                .field("decodedAudioSeconds", totalAudioSeconds)
+                .field("rtf", totalAudioSeconds == 0 ? 0.0 : totalDecodeSeconds / totalAudioSeconds)
+                .field("peakRssKb", readPeakRssKb())
+                .field("jvmHeapUsedKb", (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / 1024);
+        if (referenceWords > 0) json.field("wer", wordErrors / (double) referenceWords);
+        json.endObject();
+        json.endObject();
+        model.close();
+
+        if (outPath != null) {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(outPath), StandardCharsets.UTF_8)) {
+                out.write(json.toString());
+                out.write('\n');
+            }
+        } else {
+            System.out.println(json);
+        }
+    }
+
+    private interface Decoder {
+        RunResult decode() throws IOException;
+    }
+
+    /** Decodes a file {@code runs} times in one recognizer mode and reports the medians. */
+    private static void modeReport(Json json, String mode, int runs, Decoder decoder) throws IOException {
+        double[] rtfs = new double[runs];
+        double[] cpu = new double[runs];
+        RunResult last = null;
+        for (int r = 0; r < runs; r++) {
+            last = decoder.decode();
+            rtfs[r] = last.realTimeFactor();
+            cpu[r] = last.audioSeconds == 0 ? 0.0 : last.cpuNanos / 1e9 / last.audioSeconds;
+        }
+        Arrays.sort(rtfs);
+        Arrays.sort(cpu);
+        json.name(mode).beginObject()
+                .field("rtfMedian", rtfs[runs / 2])
+                .field("cpuSecondsPerAudioSecond", cpu[runs / 2])
+                .field("command", last.command != null ? last.command : "")
+                .field("commandAudioMs", last.commandAudioMs)
+                .field("commandWallMs", last.commandWallMs);
+        if (last.wakeUps >= 0) {
+            json.field("wakeUps", last.wakeUps).field("spotterOnlyFraction", last.spotterOnlyFraction);
+        }
+        json.field("text", last.text).endObject();
+    }
+
+    private static final class RunResult {
+        double audioSeconds;
+        long decodeNanos;
+        long cpuNanos; // Decoding thread CPU time, or -1 if unsupported
+        String command; // First command matched, if any
+        long commandAudioMs = -1;
+        long commandWallMs = -1;
+        long wakeUps = -1; // Two-stage runs only
+        double spotterOnlyFraction;
+        long firstPartialAudioMs = -1;
+        long firstPartialWallMs = -1;
+        long finalResultMicros;
+        final LatencyHistogram partialCadence = new LatencyHistogram(); // Audio time between partial changes
+        final LatencyHistogram acceptLatency = new LatencyHistogram();
+        final LatencyHistogram resultLatency = new LatencyHistogram(); // acceptWaveForm + getResult at endpoints
+        String text;
+
+        double realTimeFactor() {
+            return audioSeconds == 0 ? 0.0 : decodeNanos / 1e9 / audioSeconds;
+        }
+    }
+
+    /** Decodes one file with a fresh recognizer, constrained to {@code grammar} if non-null. */
+    private static RunResult decode(Model model, File file, String grammar, CommandMatcher commands) throws IOException {
+        RunResult result = new RunResult();
+        HypothesisParser parser = new HypothesisParser();
+        StringBuilder text = new StringBuilder();
+        String lastPartial = "";
+        long lastPartialSample = 0;
+        try (WavReader reader = WavReader.open(file);
+             Recognizer recognizer = grammar != null
+                     ? new Recognizer(model, reader.getSampleRate(), grammar)
+                     : new Recognizer(model, reader.getSampleRate())) {
+            int rate = reader.getSampleRate();
+            byte[] chunk = new byte[rate * CHUNK_MS / 1000 * 2];
+            long samplesFed = 0;
+            long cpuStart = threadCpuNanos();
+            long start = System.nanoTime();
+            int count;
+            while ((count = reader.read(chunk)) > 0) {
+                long acceptStart = System.nanoTime();
+                boolean endpoint = recognizer.acceptWaveForm(chunk, count);
+                samplesFed += count / 2;
+                if (endpoint) {
+                    String utterance = CommandMatcher.stripUnknown(parser.extract(recognizer.getResult(), "text").toString());
+                    result.resultLatency.recordNanos(System.nanoTime() - acceptStart);
+                    matchCommand(result, commands, utterance, samplesFed, rate, start);
+                    appendText(text, utterance);
+                    lastPartial = "";
+                    continue;
+                }
+                result.acceptLatency.recordNanos(System.nanoTime() - acceptStart);
+                CharSequence partial = parser.extract(recognizer.getPartialResult(), "partial");
+                if (partial.length() > 0 && !lastPartial.contentEquals(partial)) {
+                    if (result.firstPartialAudioMs < 0) {
+                        result.firstPartialAudioMs = samplesFed * 1000 / rate;
+                        result.firstPartialWallMs = (System.nanoTime() - start) / 1_000_000;
+                    } else {
+                        result.partialCadence.recordMicros((samplesFed - lastPartialSample) * 1_000_000 / rate);
+                    }
+                    lastPartial = partial.toString();
+                    lastPartialSample = samplesFed;
+                    matchCommand(result, commands, CommandMatcher.stripUnknown(lastPartial), samplesFed, rate, start);
+                }
+            }
+            long finalStart = System.nanoTime();
+            String last = CommandMatcher.stripUnknown(parser.extract(recognizer.getFinalResult(), "text").toString());
+            long end = System.nanoTime();
+            long cpuEnd = threadCpuNanos();
+            matchCommand(result, commands, last, samplesFed, rate, start);
+            appendText(text, last);
+            result.cpuNanos = cpuStart < 0 ? -1 : cpuEnd - cpuStart;
+            result.finalResultMicros = (end - finalStart) / 1000;
+            result.decodeNanos = end - start;
+            result.audioSeconds = reader.getDurationSeconds();
+        }
+        result.text = text.toString();
+        return result;
+    }
+
+    /**
+     * Decodes one file through a {@link WakeWordSpotter} in front of a fresh full recognizer,
+     * the way {@code RecognitionSession} runs dictation. The full recognizer is reset whenever
+     * the spotter goes back to sleep.
+     */
+    private static RunResult decodeTwoStage(Model model, File file, CommandMatcher commands) throws IOException {
+        RunResult result = new RunResult();
+        HypothesisParser parser = new HypothesisParser();
+        StringBuilder text = new StringBuilder();
+        try (WavReader reader = WavReader.open(file);
+             Recognizer full = new Recognizer(model, reader.getSampleRate());
+             Recognizer spotterRecognizer = new Recognizer(model, reader.getSampleRate(), WakeWordSpotter.grammarJson(WAKE_WORD))) {
+            int rate = reader.getSampleRate();
+            short[] chunk = new short[rate * CHUNK_MS / 1000];
+            WakeWordSpotter spotter = new WakeWordSpotter(spotterRecognizer, WAKE_WORD, rate, chunk.length,
+                    WAKE_PRE_ROLL_MS, WAKE_ACTIVE_TIMEOUT_MS);
+            long[] samplesFed = new long[1];
+            long cpuStart = threadCpuNanos();
+            long start = System.nanoTime();
+            VoiceActivityGate.Sink sink = (pcm, length) -> {
+                long acceptStart = System.nanoTime();
+                if (full.acceptWaveForm(pcm, length)) {
+                    String json = full.getResult();
+                    result.resultLatency.recordNanos(System.nanoTime() - acceptStart);
+                    spotter.onHypothesis(json, true);
+                    String utterance = CommandMatcher.stripUnknown(parser.extract(json, "text").toString());
+                    matchCommand(result, commands, utterance, samplesFed[0], rate, start);
+                    appendText(text, utterance);
+                } else {
+                    String json = full.getPartialResult();
+                    result.acceptLatency.recordNanos(System.nanoTime() - acceptStart);
+                    spotter.onHypothesis(json, false);
+                    matchCommand(result, commands, parser.extract(json, "partial").toString(), samplesFed[0], rate, start);
+                }
+            };
+            int count;
+            while ((count = reader.read(chunk)) > 0) {
+                samplesFed[0] += count;
+                boolean wasAwake = spotter.isAwake();
+                spotter.process(chunk, count, sink);
+                if (wasAwake && !spotter.isAwake()) full.reset();
+            }
+            String last = spotter.isAwake() ? parser.extract(full.getFinalResult(), "text").toString() : "";
+            long end = System.nanoTime();
+            long cpuEnd = threadCpuNanos();
+            matchCommand(result, commands, last, samplesFed[0], rate, start);
+            appendText(text, last);
+            result.cpuNanos = cpuStart < 0 ? -1 : cpuEnd - cpuStart;
+            result.decodeNanos = end - start;
+            result.audioSeconds = reader.getDurationSeconds();
+            result.wakeUps = spotter.getWakeCount();
+            result.spotterOnlyFraction = spotter.getChunkCount() == 0 ? 0.0
+                    : spotter.getSpottedCount() / (double) spotter.getChunkCount();
+        }
+        result.text = text.toString();
+        return result;
+    }
+
+    private static void matchCommand(RunResult result, CommandMatcher commands, String text,
+                                     long samplesFed, int rate, long startNanos) {
+        if (result.command != null || text.isEmpty()) return;
+        CommandMatcher.Command command = commands.match(text);
+        if (command == null) return;
+        result.command = command.getName();
+        result.commandAudioMs = samplesFed * 1000 / rate;
+        result.commandWallMs = (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static void appendText(StringBuilder text, CharSequence utterance) {
+        if (utterance.length() == 0) return;
+        if (text.length() > 0) text.append(' ');
+        text.append(utterance);
+    }
+
+    // --- Word error rate ---
+    private static String readReference(File wav) throws IOException {
+        File reference = new File(wav.getParentFile(), wav.getName().replaceAll("(?i)\\.wav$", ".txt"));
+        if (!reference.isFile()) return null;
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(reference), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) text.append(line).append(' ');
+        }
+        return text.toString();
+    }
+
+    static String[] words(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}\\u200c]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    /** Word-level Levenshtein distance: substitutions + deletions + insertions. */
+    static int editDistance(String[] expected, String[] actual) {
+        int[] previous = new int[actual.length + 1];
+        int[] current = new int[actual.length + 1];
+        for (int j = 0; j <= actual.length; j++) previous[j] = j;
+        for (int i = 1; i <= expected.length; i++) {
+            current[0] = i;
+            for (int j = 1; j <= actual.length; j++) {
+                int substitution = previous[j - 1] + (expected[i - 1].equals(actual[j - 1]) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[actual.length];
+    }
+
+    private static long readPeakRssKb() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream("/proc/self/status"), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmHWM:")) return Long.parseLong(line.replaceAll("\\D+", ""));
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Not Linux.
+        }
+        return -1;
+    }
+
+    /** Minimal ordered JSON writer; keeps the report's field order stable between builds. */
+    private static final class Json {
+        private final StringBuilder out = new StringBuilder();
+        private boolean needsComma;
+
+        Json beginObject() {
+            separate();
+            out.append('{');
+            needsComma = false;
+            return this;
+        }
+
+        Json endObject() {
+            out.append('}');
+            needsComma = true;
+            return this;
+        }
+
+        Json beginArray() {
+            separate();
+            out.append('[');
+            needsComma = false;
+            return this;
+        }
+
+        Json endArray() {
+            out.append(']');
+            needsComma = true;
+            return this;
+        }
+
+        Json name(String name) {
+            separate();
+            string(name);
+            out.append(':');
+            needsComma = false;
+            return this;
+        }
+
+        Json field(String name, String value) {
+            name(name);
+            string(value);
+            needsComma = true;
+            return this;
+        }
+
+        Json field(String name, long value) {
+            name(name);
+            out.append(value);
+            needsComma = true;
+            return this;
+        }
+
+        Json field(String name, double value) {
+            name(name);
+            out.append(Double.isFinite(value) ? String.format(Locale.ROOT, "%.4f", value) : "null");
+            needsComma = true;
+            return this;
+        }
+
+        private void separate() {
+            if (needsComma) out.append(',');
+        }
+
+        private void string(String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.RecognitionMetrics;
+
+/**
+ * Cost of the hot-path metric operations against the string concatenation they replace.
+ */
+final class RecognitionMetricsBenchmark {
+
+    static void run(Bench bench) {
+        RecognitionMetrics metrics = new RecognitionMetrics("A", "B");
+        bench.run("RecognitionMetrics/increment",
+                i -> {
+                    metrics.increment(RecognitionMetrics.Counter.PARTIALS);
+                    return null;
+                });
+        bench.run("RecognitionMetrics/recordNanos",
+                i -> {
+                    metrics.recordNanos(RecognitionMetrics.Timer.RECOGNIZER_ACCEPT, 1_000 + (i & 0xFFFF));
+                    return null;
+                });
+        String hypothesis = "{\n  \"partial\" : \"سلام ماشین پخش موسیقی\"\n}";
+        bench.run("RecognitionMetrics/previousLogConcatenation",
+                i -> "onFinalResult Raw: " + hypothesis + i);
+        bench.run("RecognitionMetrics/snapshot",
+                i -> metrics.snapshot());
+    }
+}
@@ -0,0 +1,61 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.SilenceSegmenter;
+import org.vosk.demo.WavReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Locale;
+
+/**
+ * Segments a long recording, built by repeating the bundled test clip with short pauses, and
+ * reports the segment lengths (which bound the achievable parallelism) and the time the
+ * segmentation pass takes.
+ */
+final class SilenceSegmenterBenchmark {
+
+    private static final String DEFAULT_WAV = "../app/src/main/assets/10001-90210-01803.wav";
+    private static final int SAMPLE_RATE = 16000;
+    private static final int REPEATS = 120; // About 17 minutes
+    private static final int PAUSE_SAMPLES = SAMPLE_RATE / 2;
+
+    static void run(Bench bench, String[] args) throws IOException {
+        short[] audio = longRecording(args);
+        ShortBuffer samples = ShortBuffer.wrap(audio);
+
+        SilenceSegmenter segmenter = new SilenceSegmenter(SAMPLE_RATE);
+        int[] bounds = segmenter.segment(samples);
+        double shortest = Double.MAX_VALUE;
+        double longest = 0;
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            double seconds = (bounds[i + 1] - bounds[i]) / (double) SAMPLE_RATE;
+            shortest = Math.min(shortest, seconds);
+            longest = Math.max(longest, seconds);
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "SilenceSegmenter: %.1f s audio -> %d segments, %.1f-%.1f s each",
+                audio.length / (double) SAMPLE_RATE, bounds.length - 1, shortest, longest));
+
+        Bench segmentBench = new Bench(3, 20);
+        segmentBench.run("SilenceSegmenter/segment " + (audio.length / SAMPLE_RATE) + " s",
+                i -> segmenter.segment(samples).length);
+    }
+
+    /** The test clip from {@code --wav=path}, repeated with pauses into a 16 kHz recording. */
+    static short[] longRecording(String[] args) throws IOException {
+        String path = DEFAULT_WAV;
+        for (String arg : args) {
+            if (arg.startsWith("--wav=")) path = arg.substring(6);
+        }
+        short[] clip;
+        try (WavReader reader = WavReader.open(new File(path))) {
+            clip = reader.readAll();
+        }
+        short[] audio = new short[REPEATS * (clip.length + PAUSE_SAMPLES)];
+        for (int r = 0; r < REPEATS; r++) {
+            System.arraycopy(clip, 0, audio, r * (clip.length + PAUSE_SAMPLES), clip.length);
+        }
+        return audio;
+    }
+}
@@ -0,0 +1,157 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.TranscriptIndex;
+import org.vosk.demo.TranscriptStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Transcript history at scale: appends a synthetic history (Zipf-distributed Persian-like
+ * vocabulary, 3-15 word utterances) to a {@link TranscriptStore}, maps it, builds a
+ * {@link TranscriptIndex} from the snapshot and grows it incrementally, reporting words per
+ * second for each step. Then times term, phrase and prefix queries against the full index.
+ * <p>
+ * Options: {@code --words=N} (default 2,000,000, about 200 hours of speech).
+ */
+final class TranscriptIndexBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int INCREMENTAL_UTTERANCES = 10_000;
+    private static final char[] LETTERS = "ابپتسجچحخدرزژشصطعغفقکگلمنوهی".toCharArray();
+
+    static void run(Bench bench, String[] args) throws IOException {
+        int totalWords = 2_000_000;
+        for (String arg : args) {
+            if (arg.startsWith("--words=")) totalWords = Integer.parseInt(arg.substring(8));
+        }
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random);
+        double[] zipf = zipfCumulative(vocabulary.length);
+
+        File dir = Files.createTempDirectory("transcript-store").toFile();
+        try {
+            String[] words = new String[15];
+            float[] starts = new float[15];
+            float[] ends = new float[15];
+            float[] confs = new float[15];
+            int utterances = 0;
+            long start = System.nanoTime();
+            try (TranscriptStore store = TranscriptStore.open(dir)) {
+                long time = 1_700_000_000_000L;
+                for (int written = 0; written < totalWords; ) {
+                    int count = 3 + random.nextInt(13);
+                    for (int i = 0; i < count; i++) {
+                        words[i] = vocabulary[sample(zipf, random)];
+                        starts[i] = i * 0.4f;
+                        ends[i] = i * 0.4f + 0.35f;
+                        confs[i] = 0.5f + random.nextFloat() / 2;
+                    }
+                    store.append(words, starts, ends, confs, count, time += 5_000);
+                    written += count;
+                    utterances++;
+                }
+            }
+            long appendNanos = System.nanoTime() - start;
+            long bytes = 0;
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) bytes += file.length();
+            }
+
+            start = System.nanoTime();
+            TranscriptStore.Snapshot snapshot = TranscriptStore.Snapshot.open(dir);
+            long mapNanos = System.nanoTime() - start;
+            int storedWords = snapshot.wordCount();
+            report("TranscriptStore/append", storedWords, appendNanos,
+                    String.format(Locale.ROOT, "%d utterances, %.1f MB, %.1f bytes/word", utterances,
+                            bytes / 1e6, (double) bytes / storedWords));
+            System.out.println(String.format(Locale.ROOT, "%-48s %.1f ms (dictionary of %d words)",
+                    "TranscriptStore/snapshot", mapNanos / 1e6, snapshot.dictionarySize()));
+
+            TranscriptIndex index = new TranscriptIndex();
+            start = System.nanoTime();
+            index.addAll(snapshot);
+            report("TranscriptIndex/build", storedWords, System.nanoTime() - start,
+                    index.termCount() + " terms");
+
+            start = System.nanoTime();
+            int incrementalWords = 0;
+            for (int u = 0; u < INCREMENTAL_UTTERANCES; u++) {
+                index.startUtterance();
+                int count = 3 + random.nextInt(13);
+                for (int i = 0; i < count; i++) index.addWord(vocabulary[sample(zipf, random)]);
+                incrementalWords += count;
+            }
+            report("TranscriptIndex/incremental", incrementalWords, System.nanoTime() - start,
+                    INCREMENTAL_UTTERANCES + " utterances");
+
+            // Common, mid-frequency and rare words by Zipf rank; the first stored pair as a phrase.
+            String common = vocabulary[0];
+            String mid = vocabulary[200];
+            String rare = vocabulary[VOCABULARY - 1];
+            String[] phrase2 = {snapshot.word(snapshot.wordId(0)), snapshot.word(snapshot.wordId(1))};
+            String[][] queries = {
+                    {"term common", common},
+                    {"term mid", mid},
+                    {"term rare", rare},
+                    {"phrase2", phrase2[0] + " " + phrase2[1]},
+                    {"phrase3", common + " " + mid + " " + common},
+                    {"prefix 2 chars", vocabulary[5].substring(0, 2) + "*"},
+                    {"phrase + prefix", phrase2[0] + " " + phrase2[1].substring(0, 2) + "*"},
+                    {"miss", "ناموجود"},
+            };
+            for (String[] query : queries) {
+                System.out.println(String.format(Locale.ROOT, "%-48s %d hits (limit 20)",
+                        "TranscriptIndex/" + query[0] + " \"" + query[1] + "\"", index.search(query[1], 20).size()));
+                bench.run("TranscriptIndex/search " + query[0], i -> index.search(query[1], 20));
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static void report(String name, long words, long nanos, String detail) {
+        System.out.println(String.format(Locale.ROOT, "%-48s %,d words in %.1f ms = %,.0f words/s (%s)",
+                name, words, nanos / 1e6, words / (nanos / 1e9), detail));
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        Set<String> seen = new HashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < words.length; ) {
+            word.setLength(0);
+            int length = 2 + random.nextInt(6);
+            for (int c = 0; c < length; c++) word.append(LETTERS[random.nextInt(LETTERS.length)]);
+            if (seen.add(word.toString())) words[i++] = word.toString();
+        }
+        return words;
+    }
+
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) cumulative[i] /= sum;
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+}
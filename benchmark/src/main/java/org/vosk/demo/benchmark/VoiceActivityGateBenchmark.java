@@ -0,0 +1,93 @@
+package org.vosk.demo.benchmark;
+
+import org.vosk.demo.AudioStats;
+import org.vosk.demo.NoiseFloorTracker;
+import org.vosk.demo.VoiceActivityGate;
+import org.vosk.demo.WavReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Replays the bundled test recording through {@link VoiceActivityGate} in 100 ms chunks, the
+ * way {@code AudioCaptureEngine} delivers them, and reports the fraction of chunks that would
+ * not be decoded, plus the per-chunk cost of the gate itself. The gate is run both with a fixed
+ * noise floor and following an unseeded {@link NoiseFloorTracker}.
+ */
+final class VoiceActivityGateBenchmark {
+
+    private static final String DEFAULT_WAV = "../app/src/main/assets/10001-90210-01803.wav";
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHUNK_SAMPLES = SAMPLE_RATE / 10;
+
+    static void run(Bench bench, String[] args) throws IOException {
+        String path = DEFAULT_WAV;
+        for (String arg : args) {
+            if (arg.startsWith("--wav=")) path = arg.substring(6);
+        }
+        short[] pcm;
+        try (WavReader reader = WavReader.open(new File(path))) {
+            pcm = reader.readAll();
+        }
+
+        // Calibration measures the room while the user is quiet; the quietest decile of the
+        // recording stands in for it here.
+        AudioStats stats = new AudioStats();
+        short[] chunk = new short[CHUNK_SAMPLES];
+        for (int offset = 0; offset + CHUNK_SAMPLES <= pcm.length; offset += CHUNK_SAMPLES) {
+            System.arraycopy(pcm, offset, chunk, 0, CHUNK_SAMPLES);
+            stats.process(chunk, CHUNK_SAMPLES);
+        }
+        double noiseFloor = stats.rmsPercentile(10);
+        System.out.println(String.format(Locale.ROOT, "%s: %.2f s, noise floor (p10 RMS) %.2f",
+                path, pcm.length / (double) SAMPLE_RATE, noiseFloor));
+
+        for (double factor : new double[]{1.5, 2.0, 3.0, 4.0}) {
+            VoiceActivityGate gate = newGate(noiseFloor, factor);
+            long[] decodedSamples = {0};
+            replay(pcm, chunk, gate, (buffer, length) -> decodedSamples[0] += length);
+            System.out.println(String.format(Locale.ROOT, "VoiceActivityGate/factor=%.1f %s decoded=%.2f s",
+                    factor, gate.summary(), decodedSamples[0] / (double) SAMPLE_RATE));
+        }
+
+        NoiseFloorTracker tracker = new NoiseFloorTracker();
+        VoiceActivityGate trackedGate = newGate(-1.0, VoiceActivityGate.DEFAULT_THRESHOLD_FACTOR);
+        trackedGate.setNoiseFloorTracker(tracker);
+        replay(pcm, chunk, trackedGate, (buffer, length) -> { });
+        System.out.println(String.format(Locale.ROOT, "VoiceActivityGate/tracked %s tracked floor=%.2f",
+                trackedGate.summary(), tracker.getNoiseFloor()));
+
+        VoiceActivityGate gate = newGate(noiseFloor, VoiceActivityGate.DEFAULT_THRESHOLD_FACTOR);
+        int chunkCount = pcm.length / CHUNK_SAMPLES;
+        short[][] chunks = new short[chunkCount][];
+        for (int c = 0; c < chunkCount; c++) {
+            chunks[c] = new short[CHUNK_SAMPLES];
+            System.arraycopy(pcm, c * CHUNK_SAMPLES, chunks[c], 0, CHUNK_SAMPLES);
+        }
+        VoiceActivityGate.Sink sink = (buffer, length) -> Bench.sink = buffer;
+        bench.run("VoiceActivityGate/process 100ms chunk",
+                i -> gate.process(chunks[i % chunkCount], CHUNK_SAMPLES, sink));
+        bench.run("NoiseFloorTracker/update",
+                i -> {
+                    tracker.update(1.0 + (i & 63));
+                    return tracker.getNoiseFloor();
+                });
+    }
+
+    private static VoiceActivityGate newGate(double noiseFloor, double factor) {
+        // Same settings as RecognitionService.
+        VoiceActivityGate gate = new VoiceActivityGate(SAMPLE_RATE, CHUNK_SAMPLES, 1000, 300, factor,
+                VoiceActivityGate.DEFAULT_MIN_THRESHOLD);
+        gate.setNoiseFloor(noiseFloor);
+        return gate;
+    }
+
+    private static void replay(short[] pcm, short[] chunk, VoiceActivityGate gate, VoiceActivityGate.Sink sink) {
+        for (int offset = 0; offset < pcm.length; offset += CHUNK_SAMPLES) {
+            int length = Math.min(CHUNK_SAMPLES, pcm.length - offset);
+            System.arraycopy(pcm, offset, chunk, 0, length);
+            gate.process(chunk, length, sink);
+        }
+    }
+}